@@ -1,28 +1,69 @@
 package com.demo.cogbee.config;
 
 
+import com.demo.cogbee.config.audio.AudioRingBuffer;
+import com.demo.cogbee.config.audio.AudioStreamEvent;
+import com.demo.cogbee.config.audio.DirectBufferPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Component
 public class AudioStreamHandler extends BinaryWebSocketHandler {
 
+    // 16 kHz mono, 16-bit PCM
+    private static final int BYTES_PER_SECOND = 16_000 * 2;
 
-    private final ConcurrentHashMap<String, List<byte[]>> audioBuffers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AudioRingBuffer> audioBuffers = new ConcurrentHashMap<>();
+
+    private final DirectBufferPool bufferPool;
+    private final AudioRingBuffer.OverflowPolicy overflowPolicy;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public AudioStreamHandler(
+            ApplicationEventPublisher eventPublisher,
+            @Value("${cogbee.audio.buffer-seconds:30}") int bufferSeconds,
+            @Value("${cogbee.audio.max-pooled-buffers:64}") int maxPooledBuffers,
+            @Value("${cogbee.audio.overflow-policy:DROP_OLDEST}") AudioRingBuffer.OverflowPolicy overflowPolicy) {
+        this.bufferPool = new DirectBufferPool(bufferSeconds * BYTES_PER_SECOND, maxPooledBuffers);
+        this.overflowPolicy = overflowPolicy;
+        this.eventPublisher = eventPublisher;
+    }
 
     @Override
-    public void afterConnectionEstablished(WebSocketSession session) {
-        String query = session.getUri().getQuery();
-        String sessionId = query.split("=")[1];
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Map<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+                .build().getQueryParams().toSingleValueMap();
+        String sessionId = params.get("sessionId");
+        String roomId = params.get("roomId");
 
+        if (sessionId == null || sessionId.isBlank()) {
+            session.close(CloseStatus.BAD_DATA);
+            return;
+        }
+
+        AudioRingBuffer buffer = new AudioRingBuffer(bufferPool, overflowPolicy);
         session.getAttributes().put("sessionId", sessionId);
-        audioBuffers.put(sessionId, new ArrayList<>());
+        session.getAttributes().put("roomId", roomId);
+        session.getAttributes().put("audioBuffer", buffer);
+
+        AudioRingBuffer previous = audioBuffers.put(sessionId, buffer);
+        eventPublisher.publishEvent(new AudioStreamEvent(sessionId, roomId, AudioStreamEvent.Type.OPENED, buffer));
+
+        // a reconnect: listeners have drained the old socket's audio by now
+        if (previous != null) {
+            previous.release();
+        }
 
         System.out.println("🔗 Audio stream connected: " + sessionId);
     }
@@ -32,11 +73,46 @@ public class AudioStreamHandler extends BinaryWebSocketHandler {
         int size = message.getPayloadLength();
         if (size == 1) return;
 
-        byte[] chunk = message.getPayload().array();
+        // the socket's own buffer: a stale socket must not write into its replacement's
+        AudioRingBuffer buffer = (AudioRingBuffer) session.getAttributes().get("audioBuffer");
+        if (buffer == null) return;
+        String sessionId = (String) session.getAttributes().get("sessionId");
+
+        ByteBuffer payload = message.getPayload();
+        int accepted = buffer.write(payload);
 
+        if (accepted < size) {
+            System.out.println("⚠ Audio buffer full for " + sessionId + ", dropped " + (size - accepted) + " bytes");
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String sessionId = (String) session.getAttributes().get("sessionId");
-        audioBuffers.get(sessionId).add(chunk);
+        AudioRingBuffer buffer = (AudioRingBuffer) session.getAttributes().get("audioBuffer");
+        if (sessionId == null || buffer == null) return;
+
+        // a socket replaced by a reconnect closes late; the session now belongs to the new one
+        if (!audioBuffers.remove(sessionId, buffer)) {
+            System.out.println("🔌 Stale audio stream closed: " + sessionId);
+            return;
+        }
+
+        // listeners drain what is left before the buffer goes back to the pool
+        eventPublisher.publishEvent(new AudioStreamEvent(
+                sessionId, (String) session.getAttributes().get("roomId"), AudioStreamEvent.Type.CLOSED, buffer));
+        buffer.release();
+
+        System.out.println("🔌 Audio stream closed: " + sessionId);
+    }
+
+    // Drains buffered PCM for a session; the buffers passed to the consumer are only valid during the call
+    public int drain(String sessionId, Consumer<ByteBuffer> consumer) {
+        AudioRingBuffer buffer = audioBuffers.get(sessionId);
+        return buffer == null ? 0 : buffer.drain(consumer);
+    }
 
-        System.out.println("🎤 Chunk received (" + sessionId + "): " + size + " bytes");
+    public boolean isStreaming(String sessionId) {
+        return audioBuffers.containsKey(sessionId);
     }
 }
@@ -0,0 +1,30 @@
+package com.demo.cogbee.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class HttpClientConfig {
+
+    // One keep-alive client shared by all outbound vendor calls
+    @Bean
+    public HttpClient vendorHttpClient(@Value("${cogbee.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL);
+
+        // Response stages run on this executor, and some of them block (ffmpeg exit waits),
+        // so in virtual-thread mode they get a virtual thread each instead of a pooled one
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            builder.executor(new VirtualThreadTaskExecutor("vendor-http-"));
+        }
+        return builder.build();
+    }
+}
@@ -1,40 +1,76 @@
 package com.demo.cogbee.config;
 
+import com.demo.cogbee.config.cluster.ClusterBus;
+import com.demo.cogbee.config.signaling.RoomRegistry;
+import com.demo.cogbee.config.signaling.SessionOutbox;
+import com.demo.cogbee.config.signaling.SignalMessage;
+import com.demo.cogbee.config.signaling.SignalMessageCodec;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class WebRtcSignalingHandler extends TextWebSocketHandler {
 
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
-
-
-    private final Map<String, RoomState> rooms = new ConcurrentHashMap<>();
-
-    private final Map<String, String> userRooms = new ConcurrentHashMap<>();
-
+    private static final String DELIVER_TOPIC = "deliver";
+
+    // sockets connected to this node only; rooms and remote users live in the registry
+    private final Map<String, SessionOutbox> sessions = new ConcurrentHashMap<>();
+
+    private final RoomRegistry registry;
+    private final ClusterBus clusterBus;
+
+    private final ExecutorService sendExecutor;
+    private final long sendTimeLimitMs;
+    private final int bufferSizeLimit;
+
+    public WebRtcSignalingHandler(RoomRegistry registry,
+                                  ClusterBus clusterBus,
+                                  @Value("${cogbee.signaling.send-threads:8}") int sendThreads,
+                                  @Value("${cogbee.signaling.send-time-limit-ms:5000}") long sendTimeLimitMs,
+                                  @Value("${cogbee.signaling.buffer-size-limit:524288}") int bufferSizeLimit) {
+        AtomicInteger counter = new AtomicInteger();
+        this.sendExecutor = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread t = new Thread(r, "signaling-send-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.registry = registry;
+        this.clusterBus = clusterBus;
+
+        clusterBus.subscribe(DELIVER_TOPIC, this::onRemoteDelivery);
+    }
 
-    private static class RoomState {
-        final Set<String> users = ConcurrentHashMap.newKeySet();
-        String hostId;
-        boolean interviewStarted = false;
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
     }
 
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String id = UUID.randomUUID().toString();
-        sessions.put(id, session);
+        SessionOutbox outbox = new SessionOutbox(session, sendExecutor, sendTimeLimitMs, bufferSizeLimit);
+        sessions.put(id, outbox);
+        registry.registerSession(id, clusterBus.nodeId());
         session.getAttributes().put("userId", id);
 
-        session.sendMessage(new TextMessage(
+        outbox.send(new TextMessage(
                 "{\"type\":\"id\",\"id\":\"" + id + "\"}"
         ));
 
@@ -43,21 +79,27 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
 
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        Map<String, Object> data = mapper.readValue(message.getPayload(), Map.class);
-
-        String type = (String) data.get("type");
+        SignalMessage msg = SignalMessageCodec.decode(message.getPayload());
         String userId = (String) session.getAttributes().get("userId");
 
-        if (type == null || userId == null) {
+        if (userId == null) {
             return;
         }
 
-        switch (type) {
-            case "join" -> handleJoin(userId, data, session);
-            case "offer", "answer", "candidate" -> forwardToTarget(data, userId);
-            case "meeting_event" -> handleMeetingEvent(userId, data);
-            case "subtitle" -> handleSubtitle(userId, data); // for STT / captions
-            default -> System.out.println("Unknown message type: " + type);
+        if (msg instanceof SignalMessage.Join join) {
+            handleJoin(userId, join);
+        } else if (msg instanceof SignalMessage.Routed routed) {
+            forwardToTarget(routed, userId);
+        } else if (msg instanceof SignalMessage.MeetingEvent event) {
+            handleMeetingEvent(userId, event);
+        } else if (msg instanceof SignalMessage.Subtitle subtitle) {
+            handleSubtitle(userId, subtitle); // for STT / captions
+        } else if (msg instanceof SignalMessage.Unknown unknown) {
+            if (unknown.type() != null) {
+                System.out.println("Unknown message type: " + unknown.type());
+            }
+        } else {
+            System.out.println("Unsupported signaling message: " + msg);
         }
     }
 
@@ -68,28 +110,23 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
         if (userId != null) {
             sessions.remove(userId);
 
-            String roomId = userRooms.remove(userId);
-            if (roomId != null) {
-                RoomState room = rooms.get(roomId);
-                if (room != null) {
-                    room.users.remove(userId);
-
-                    if (userId.equals(room.hostId) && !room.users.isEmpty()) {
-                        String newHost = room.users.iterator().next();
-                        room.hostId = newHost;
-
-                        broadcastToRoom(roomId, Map.of(
-                                "type", "host_changed",
-                                "hostId", newHost
-                        ));
-                    }
-
-                    if (room.users.isEmpty()) {
-                        rooms.remove(roomId);
-                    }
+            RoomRegistry.LeaveResult left;
+            try {
+                left = registry.leave(userId);
+            } finally {
+                // even when the leave timed out, the user must stop being routed to this node
+                registry.unregisterSession(userId);
+            }
 
-                    broadcastLeaveToRoom(roomId, userId);
+            if (left != null && !left.roomEmpty()) {
+                if (left.newHostId() != null) {
+                    broadcastToRoom(left.roomId(), Map.of(
+                            "type", "host_changed",
+                            "hostId", left.newHostId()
+                    ));
                 }
+
+                broadcastLeaveToRoom(left.roomId(), userId);
             }
         }
 
@@ -97,36 +134,25 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
     }
 
 
-    private void handleJoin(String userId, Map<String, Object> data, WebSocketSession session) throws Exception {
-        String roomId = (String) data.get("roomId");
+    private void handleJoin(String userId, SignalMessage.Join join) throws Exception {
+        String roomId = join.roomId();
         if (roomId == null || roomId.isBlank()) {
             System.out.println("join without roomId from user: " + userId);
             return;
         }
 
-        rooms.putIfAbsent(roomId, new RoomState());
-        RoomState room = rooms.get(roomId);
-
-        if (room.hostId == null) {
-            room.hostId = userId;
-        }
-
-        room.users.add(userId);
-        userRooms.put(userId, roomId);
-
-        List<String> peers = room.users.stream()
-                .filter(uid -> !uid.equals(userId))
-                .toList();
+        RoomRegistry.JoinResult joined = registry.join(roomId, userId);
 
         Map<String, Object> payload = new HashMap<>();
         payload.put("type", "peers");
-        payload.put("peers", peers);
-        payload.put("hostId", room.hostId);
-        payload.put("role", userId.equals(room.hostId) ? "host" : "participant");
+        payload.put("peers", joined.peers());
+        payload.put("hostId", joined.hostId());
+        payload.put("role", userId.equals(joined.hostId()) ? "host" : "participant");
 
-        session.sendMessage(new TextMessage(
-                mapper.writeValueAsString(payload)
-        ));
+        SessionOutbox outbox = sessions.get(userId);
+        if (outbox != null) {
+            outbox.send(new TextMessage(mapper.writeValueAsString(payload)));
+        }
 
         Map<String, Object> newPeerMsg = Map.of(
                 "type", "new_peer",
@@ -148,61 +174,55 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
 
 
     //  WEBRTC FORWARDING
-    private void forwardToTarget(Map<String, Object> data, String senderId) throws Exception {
-        data.put("from", senderId);
+    // the original payload is forwarded with "from" spliced in; it is never re-serialized
+    private void forwardToTarget(SignalMessage.Routed msg, String senderId) {
+        String targetId = msg.to();
+        if (targetId == null) return;
 
-        String targetId = (String) data.get("to");
-        WebSocketSession target = sessions.get(targetId);
-
-        if (target != null && target.isOpen()) {
-            target.sendMessage(new TextMessage(mapper.writeValueAsString(data)));
-        }
+        deliver(List.of(targetId), new TextMessage(SignalMessageCodec.withFrom(msg.raw(), senderId)), null);
     }
 
 
 
     //  MEETING EVENTS (START/STOP, QUESTION, MUTE, ETC.)
-    private void handleMeetingEvent(String userId, Map<String, Object> data) throws Exception {
-        String roomId = userRooms.get(userId);
+    private void handleMeetingEvent(String userId, SignalMessage.MeetingEvent data) {
+        String roomId = registry.roomOf(userId);
         if (roomId == null) return;
 
-        RoomState room = rooms.get(roomId);
-        if (room == null) return;
-
-        if (!userId.equals(room.hostId)) {
+        if (!userId.equals(registry.hostOf(roomId))) {
             System.out.println("Non-host tried to send meeting_event: " + userId);
             return;
         }
 
-        String event = (String) data.get("event");
+        String event = data.event();
         if (event == null) return;
 
         Map<String, Object> msg = new HashMap<>();
         msg.put("type", "meeting_event");
         msg.put("event", event);
 
-        if (data.containsKey("question")) {
-            msg.put("question", data.get("question"));
+        if (data.question() != null) {
+            msg.put("question", data.question());
         }
-        if (data.containsKey("targetUserId")) {
-            msg.put("targetUserId", data.get("targetUserId"));
+        if (data.targetUserId() != null) {
+            msg.put("targetUserId", data.targetUserId());
         }
 
         if ("start".equals(event)) {
-            room.interviewStarted = true;
+            registry.setInterviewStarted(roomId, true);
         } else if ("end".equals(event)) {
-            room.interviewStarted = false;
+            registry.setInterviewStarted(roomId, false);
         }
 
         broadcastToRoom(roomId, msg);
     }
 
     //  SUBTITLE / STT EVENTS
-    private void handleSubtitle(String userId, Map<String, Object> data) throws Exception {
-        String roomId = userRooms.get(userId);
+    private void handleSubtitle(String userId, SignalMessage.Subtitle data) {
+        String roomId = registry.roomOf(userId);
         if (roomId == null) return;
 
-        String text = (String) data.get("text");
+        String text = data.text();
         if (text == null) return;
 
         Map<String, Object> msg = Map.of(
@@ -211,7 +231,30 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
                 "text", text
         );
 
-        broadcastToRoom(roomId, msg);
+        // only the newest caption from a speaker matters to a lagging client
+        broadcastToRoom(roomId, msg, Collections.emptySet(), "subtitle:" + userId);
+    }
+
+    // Server-side captions (streaming ASR) pushed into a room
+    public void sendSubtitle(String roomId, String from, String text, boolean isFinal) {
+        Map<String, Object> msg = Map.of(
+                "type", "subtitle",
+                "from", from,
+                "text", text,
+                "final", isFinal
+        );
+
+        // interim hypotheses are superseded by the next one; finals are always delivered
+        broadcastToRoom(roomId, msg, Collections.emptySet(), isFinal ? null : "subtitle:" + from);
+    }
+
+    // score is a snapshot; only the latest one per speaker matters
+    public void sendLiveScore(String roomId, String from, Map<String, Object> score) {
+        Map<String, Object> msg = new HashMap<>(score);
+        msg.put("type", "live-score");
+        msg.put("from", from);
+
+        broadcastToRoom(roomId, msg, Collections.emptySet(), "score:" + from);
     }
 
     //  BROADCAST HELPERS
@@ -222,28 +265,91 @@ public class WebRtcSignalingHandler extends TextWebSocketHandler {
     private void broadcastToRoom(String roomId,
                                  Map<String, Object> payload,
                                  Set<String> excludeUserIds) {
-        RoomState room = rooms.get(roomId);
-        if (room == null) return;
+        broadcastToRoom(roomId, payload, excludeUserIds, null);
+    }
+
+    // Serializes once and queues the same immutable message on every recipient's outbox
+    private void broadcastToRoom(String roomId,
+                                 Map<String, Object> payload,
+                                 Set<String> excludeUserIds,
+                                 String coalesceKey) {
+        Set<String> members = registry.members(roomId);
+        if (members.isEmpty()) return;
 
-        String json;
+        TextMessage message;
         try {
-            json = mapper.writeValueAsString(payload);
+            message = new TextMessage(mapper.writeValueAsString(payload));
         } catch (Exception e) {
             e.printStackTrace();
             return;
         }
 
-        for (String uid : room.users) {
-            if (excludeUserIds.contains(uid)) continue;
+        List<String> recipients = new ArrayList<>(members.size());
+        for (String uid : members) {
+            if (!excludeUserIds.contains(uid)) recipients.add(uid);
+        }
+
+        deliver(recipients, message, coalesceKey);
+    }
+
+    // Local users get the message directly; users on other nodes get one bus message per node
+    private void deliver(Collection<String> userIds, TextMessage message, String coalesceKey) {
+        Map<String, List<String>> remote = null;
+
+        for (String uid : userIds) {
+            SessionOutbox outbox = sessions.get(uid);
+            if (outbox != null) {
+                sendLocal(outbox, message, coalesceKey);
+                continue;
+            }
 
-            WebSocketSession s = sessions.get(uid);
-            if (s != null && s.isOpen()) {
-                try {
-                    s.sendMessage(new TextMessage(json));
-                } catch (Exception e) {
-                    e.printStackTrace();
+            String node = registry.nodeOf(uid);
+            if (node == null || node.equals(clusterBus.nodeId())) continue;
+
+            if (remote == null) remote = new HashMap<>();
+            remote.computeIfAbsent(node, n -> new ArrayList<>()).add(uid);
+        }
+
+        if (remote == null) return;
+
+        remote.forEach((node, users) -> {
+            ObjectNode envelope = mapper.createObjectNode();
+            users.forEach(envelope.putArray("users")::add);
+            envelope.put("msg", message.getPayload());
+            envelope.put("coalesce", coalesceKey);
+            try {
+                clusterBus.publish(DELIVER_TOPIC, node, envelope.toString());
+            } catch (Exception e) {
+                System.out.println("Relay to node " + node + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void onRemoteDelivery(String payload) {
+        try {
+            JsonNode envelope = mapper.readTree(payload);
+            TextMessage message = new TextMessage(envelope.path("msg").asText());
+            JsonNode coalesce = envelope.get("coalesce");
+            String coalesceKey = coalesce == null || coalesce.isNull() ? null : coalesce.asText();
+
+            for (JsonNode uid : envelope.path("users")) {
+                SessionOutbox outbox = sessions.get(uid.asText());
+                if (outbox != null) {
+                    sendLocal(outbox, message, coalesceKey);
                 }
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sendLocal(SessionOutbox outbox, TextMessage message, String coalesceKey) {
+        if (!outbox.isOpen()) return;
+
+        if (coalesceKey == null) {
+            outbox.send(message);
+        } else {
+            outbox.sendLatest(coalesceKey, message);
         }
     }
 }
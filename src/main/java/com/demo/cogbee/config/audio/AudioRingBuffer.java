@@ -0,0 +1,175 @@
+package com.demo.cogbee.config.audio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-capacity ring of PCM bytes for one audio stream, backed by a pooled
+ * direct buffer. Writers never allocate; readers drain through read-only views
+ * of the backing buffer, which are only valid for the duration of the callback.
+ */
+public class AudioRingBuffer {
+
+    public enum OverflowPolicy {
+        /** overwrite the oldest audio to make room for the newest */
+        DROP_OLDEST,
+        /** accept only what fits and report the rest as rejected */
+        REJECT
+    }
+
+    private final DirectBufferPool pool;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ByteBuffer storage;
+    private final int capacity;
+    private int head;   // next byte to read
+    private int size;   // bytes currently buffered
+
+    private volatile long bytesWritten;
+    private volatile long bytesDropped;
+
+    public AudioRingBuffer(DirectBufferPool pool, OverflowPolicy policy) {
+        this.pool = pool;
+        this.policy = policy;
+        this.storage = pool.acquire();
+        this.capacity = storage.capacity();
+    }
+
+    /**
+     * Copies the remaining bytes of {@code src} into the ring.
+     *
+     * @return number of bytes accepted; less than {@code src.remaining()} only
+     *         under {@link OverflowPolicy#REJECT} when the ring is full
+     */
+    public int write(ByteBuffer src) {
+        lock.lock();
+        try {
+            int len = src.remaining();
+            if (storage == null) return 0;
+
+            if (len > capacity) {
+                // only the newest `capacity` bytes can ever survive
+                if (policy == OverflowPolicy.REJECT) {
+                    len = capacity - size;
+                } else {
+                    int skip = len - capacity;
+                    src.position(src.position() + skip);
+                    bytesDropped += skip;
+                    len = capacity;
+                }
+            }
+
+            int free = capacity - size;
+            if (len > free) {
+                if (policy == OverflowPolicy.REJECT) {
+                    len = free;
+                } else {
+                    int overflow = len - free;
+                    head = (head + overflow) % capacity;
+                    size -= overflow;
+                    bytesDropped += overflow;
+                }
+            }
+
+            int rejected = src.remaining() - len;
+            if (rejected > 0) {
+                bytesDropped += rejected;
+            }
+
+            int tail = (head + size) % capacity;
+            int first = Math.min(len, capacity - tail);
+            copyIn(src, tail, first);
+            copyIn(src, 0, len - first);
+
+            if (rejected > 0) {
+                src.position(src.position() + rejected);
+            }
+
+            size += len;
+            bytesWritten += len;
+            return len;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands everything currently buffered to {@code consumer} as at most two
+     * read-only slices (two when the data wraps), then marks it consumed.
+     *
+     * @return number of bytes drained
+     */
+    public int drain(Consumer<ByteBuffer> consumer) {
+        lock.lock();
+        try {
+            int len = size;
+            if (storage == null || len == 0) return 0;
+
+            int first = Math.min(len, capacity - head);
+            consumer.accept(view(head, first));
+            if (len > first) {
+                consumer.accept(view(0, len - first));
+            }
+
+            head = (head + len) % capacity;
+            size = 0;
+            return len;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int available() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    /** Returns the backing buffer to the pool; later writes and drains are no-ops. */
+    public void release() {
+        lock.lock();
+        try {
+            if (storage == null) return;
+            pool.release(storage);
+            storage = null;
+            size = 0;
+            head = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void copyIn(ByteBuffer src, int at, int len) {
+        if (len <= 0) return;
+        ByteBuffer slice = src.slice();
+        slice.limit(len);
+        ByteBuffer dst = storage.duplicate();
+        dst.position(at);
+        dst.put(slice);
+        src.position(src.position() + len);
+    }
+
+    private ByteBuffer view(int from, int len) {
+        ByteBuffer dup = storage.asReadOnlyBuffer();
+        dup.limit(from + len);
+        dup.position(from);
+        return dup.slice();
+    }
+}
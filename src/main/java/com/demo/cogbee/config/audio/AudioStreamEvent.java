@@ -0,0 +1,13 @@
+package com.demo.cogbee.config.audio;
+
+/**
+ * Published by the audio stream handler when a candidate's /audio-stream
+ * socket opens or closes. {@code buffer} is that socket's own audio, so a
+ * listener can tell a reconnected socket from the one it replaced. Listeners
+ * run synchronously, so on close they can still drain what is left before
+ * the buffer is released.
+ */
+public record AudioStreamEvent(String sessionId, String roomId, Type type, AudioRingBuffer buffer) {
+
+    public enum Type { OPENED, CLOSED }
+}
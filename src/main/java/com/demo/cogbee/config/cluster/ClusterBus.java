@@ -0,0 +1,28 @@
+package com.demo.cogbee.config.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Message bus between Cogbee nodes. Every node receives messages in the same
+ * order, including the ones it published itself, which is what lets the
+ * replicated room registry converge.
+ */
+public interface ClusterBus {
+
+    String nodeId();
+
+    /**
+     * @param targetNode node that should handle the message, or {@code null} for all nodes
+     */
+    void publish(String topic, String targetNode, String payload);
+
+    void subscribe(String topic, Consumer<String> listener);
+
+    /**
+     * Called after the node re-established its connection to the bus.
+     * Messages published while it was disconnected are lost, so state built
+     * from them has to be resynchronized.
+     */
+    default void onReconnect(Runnable listener) {
+    }
+}
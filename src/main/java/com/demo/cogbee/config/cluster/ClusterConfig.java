@@ -0,0 +1,54 @@
+package com.demo.cogbee.config.cluster;
+
+import com.demo.cogbee.config.signaling.InMemoryRoomRegistry;
+import com.demo.cogbee.config.signaling.ReplicatedRoomRegistry;
+import com.demo.cogbee.config.signaling.RoomRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/**
+ * cogbee.cluster.mode=local (default) keeps rooms in this JVM. With
+ * cogbee.cluster.mode=postgres, room state is replicated and messages for
+ * peers on other nodes are relayed over PostgreSQL LISTEN/NOTIFY, so nodes
+ * can sit behind a plain load balancer.
+ */
+@Configuration
+public class ClusterConfig {
+
+    private final String mode;
+    private final String nodeId;
+
+    public ClusterConfig(@Value("${cogbee.cluster.mode:local}") String mode,
+                         @Value("${cogbee.cluster.node-id:}") String nodeId) {
+        this.mode = mode;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @Bean
+    public ClusterBus clusterBus(ObjectProvider<DataSource> dataSource,
+                                 @Value("${cogbee.cluster.channel:cogbee_cluster}") String channel) {
+        if (isClustered()) {
+            return new PostgresClusterBus(dataSource.getObject(), channel, nodeId);
+        }
+        return new LoopbackClusterBus.Hub().node(nodeId);
+    }
+
+    @Bean
+    public RoomRegistry roomRegistry(ClusterBus clusterBus,
+                                     @Value("${cogbee.cluster.op-timeout-ms:5000}") long opTimeoutMs,
+                                     @Value("${cogbee.cluster.sync-timeout-ms:2000}") long syncTimeoutMs) {
+        if (isClustered()) {
+            return new ReplicatedRoomRegistry(clusterBus, opTimeoutMs, syncTimeoutMs);
+        }
+        return new InMemoryRoomRegistry();
+    }
+
+    private boolean isClustered() {
+        return "postgres".equalsIgnoreCase(mode);
+    }
+}
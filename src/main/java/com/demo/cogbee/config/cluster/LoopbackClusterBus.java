@@ -0,0 +1,95 @@
+package com.demo.cogbee.config.cluster;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM bus. All nodes attached to the same {@link Hub} receive messages on
+ * the hub's single delivery thread, so ordering matches a real bus. Used for
+ * single-node deployments and for tests that run several nodes in one JVM.
+ */
+public class LoopbackClusterBus implements ClusterBus {
+
+    private final Hub hub;
+    private final String nodeId;
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected = true;
+
+    private LoopbackClusterBus(Hub hub, String nodeId) {
+        this.hub = hub;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(String topic, String targetNode, String payload) {
+        hub.dispatch(topic, targetNode, payload);
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> listener) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public void onReconnect(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    // Drops everything delivered to this node until reconnect(), like a lost LISTEN connection
+    public void disconnect() {
+        connected = false;
+    }
+
+    public void reconnect() {
+        connected = true;
+        reconnectListeners.forEach(Runnable::run);
+    }
+
+    private void deliver(String topic, String payload) {
+        if (!connected) return;
+        for (Consumer<String> listener : listeners.getOrDefault(topic, List.of())) {
+            try {
+                listener.accept(payload);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static class Hub implements AutoCloseable {
+        private final Map<String, LoopbackClusterBus> nodes = new ConcurrentHashMap<>();
+        private final ExecutorService delivery = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "cluster-loopback");
+            t.setDaemon(true);
+            return t;
+        });
+
+        public LoopbackClusterBus node(String nodeId) {
+            return nodes.computeIfAbsent(nodeId, id -> new LoopbackClusterBus(this, id));
+        }
+
+        private void dispatch(String topic, String targetNode, String payload) {
+            delivery.execute(() -> {
+                if (targetNode == null) {
+                    nodes.values().forEach(n -> n.deliver(topic, payload));
+                } else {
+                    LoopbackClusterBus node = nodes.get(targetNode);
+                    if (node != null) node.deliver(topic, payload);
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            delivery.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.demo.cogbee.config.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cluster bus on PostgreSQL LISTEN/NOTIFY, so scaling out needs nothing beyond
+ * the database the app already uses. Postgres delivers notifications to every
+ * listener in commit order. Messages larger than a NOTIFY payload (8000 bytes)
+ * are split into fragments and reassembled on receipt.
+ */
+public class PostgresClusterBus implements ClusterBus, AutoCloseable {
+
+    // chars per fragment; stays under the 8000 byte limit even for 3-byte UTF-8
+    private static final int FRAGMENT_CHARS = 2500;
+    private static final long FRAGMENT_TTL_MS = 30_000;
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final String nodeId;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, Partial> partials = new ConcurrentHashMap<>();
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+
+    public PostgresClusterBus(DataSource dataSource, String channel, String nodeId) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid NOTIFY channel name: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.channel = channel;
+        this.nodeId = nodeId;
+
+        this.listenerThread = new Thread(this::listenLoop, "cluster-pg-listen");
+        this.listenerThread.setDaemon(true);
+        this.listenerThread.start();
+    }
+
+    private static class Partial {
+        final long startedAt = System.currentTimeMillis();
+        final String[] parts;
+        int received;
+
+        Partial(int count) {
+            this.parts = new String[count];
+        }
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> listener) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public void onReconnect(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    @Override
+    public void publish(String topic, String targetNode, String payload) {
+        ObjectNode envelope = mapper.createObjectNode();
+        envelope.put("t", topic);
+        envelope.put("n", targetNode);
+        envelope.put("p", payload);
+        String message = envelope.toString();
+
+        String id = UUID.randomUUID().toString();
+        int count = (message.length() + FRAGMENT_CHARS - 1) / FRAGMENT_CHARS;
+
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT pg_notify(?, ?)")) {
+            c.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                String chunk = message.substring(i * FRAGMENT_CHARS, Math.min(message.length(), (i + 1) * FRAGMENT_CHARS));
+                ps.setString(1, channel);
+                ps.setString(2, id + ":" + i + ":" + count + ":" + chunk);
+                ps.execute();
+            }
+            c.commit();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cluster publish failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void listenLoop() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection c = dataSource.getConnection()) {
+                c.setAutoCommit(true);
+                try (Statement st = c.createStatement()) {
+                    st.execute("LISTEN " + channel);
+                }
+                PGConnection pg = c.unwrap(PGConnection.class);
+
+                // notifications sent while the connection was down are gone
+                if (connectedBefore) {
+                    reconnectListeners.forEach(this::notifyReconnect);
+                }
+                connectedBefore = true;
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(500);
+                    if (notifications != null) {
+                        for (PGNotification n : notifications) {
+                            receive(n.getParameter());
+                        }
+                    }
+                    expirePartials();
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                System.out.println("Cluster LISTEN connection lost, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void notifyReconnect(Runnable listener) {
+        try {
+            listener.run();
+        } catch (Exception e) {
+            System.out.println("Cluster reconnect listener failed: " + e.getMessage());
+        }
+    }
+
+    private void receive(String fragment) {
+        // id:index:count:chunk
+        int a = fragment.indexOf(':');
+        int b = fragment.indexOf(':', a + 1);
+        int c = fragment.indexOf(':', b + 1);
+        if (a < 0 || b < 0 || c < 0) return;
+
+        String id = fragment.substring(0, a);
+        int index = Integer.parseInt(fragment.substring(a + 1, b));
+        int count = Integer.parseInt(fragment.substring(b + 1, c));
+        String chunk = fragment.substring(c + 1);
+
+        String message;
+        if (count == 1) {
+            message = chunk;
+        } else {
+            Partial partial = partials.computeIfAbsent(id, k -> new Partial(count));
+            if (partial.parts[index] == null) {
+                partial.parts[index] = chunk;
+                partial.received++;
+            }
+            if (partial.received < count) return;
+            partials.remove(id);
+            message = String.join("", partial.parts);
+        }
+
+        try {
+            JsonNode envelope = mapper.readTree(message);
+            JsonNode target = envelope.get("n");
+            if (target != null && !target.isNull() && !nodeId.equals(target.asText())) return;
+
+            String payload = envelope.path("p").asText();
+            for (Consumer<String> listener : listeners.getOrDefault(envelope.path("t").asText(), List.of())) {
+                try {
+                    listener.accept(payload);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Dropping malformed cluster message: " + e.getMessage());
+        }
+    }
+
+    private void expirePartials() {
+        long now = System.currentTimeMillis();
+        partials.values().removeIf(p -> now - p.startedAt > FRAGMENT_TTL_MS);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+    }
+}
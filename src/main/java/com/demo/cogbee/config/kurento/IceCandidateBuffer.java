@@ -0,0 +1,201 @@
+package com.demo.cogbee.config.kurento;
+
+import jakarta.annotation.PreDestroy;
+import org.kurento.client.IceCandidate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds trickled ICE candidates that arrive before their WebRtcEndpoint has
+ * processed the SDP offer. Each key ("session" or "session/publisher") queues
+ * until {@link #ready} atomically installs a sink; from then on candidates go
+ * straight to the endpoint. Keys are removed when their endpoint is released;
+ * as a safety net, keys that never become ready, and ready keys that have seen
+ * no candidate for a while, expire after a TTL.
+ */
+@Component
+public class IceCandidateBuffer {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final int maxPerKey;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ice-candidate-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public IceCandidateBuffer(@Value("${cogbee.kurento.ice.ttl-ms:60000}") long ttlMs,
+                              @Value("${cogbee.kurento.ice.max-per-endpoint:200}") int maxPerKey,
+                              @Value("${cogbee.kurento.ice.sweep-ms:15000}") long sweepMs) {
+        this.ttlMs = ttlMs;
+        this.maxPerKey = maxPerKey;
+        if (sweepMs > 0) {
+            sweeper.scheduleWithFixedDelay(() -> sweep(System.currentTimeMillis()), sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // "session" for its publisher endpoint, "session/publisher" for its subscription to that publisher
+    public static String key(String sessionId, String publisherId) {
+        return publisherId == null ? sessionId : sessionId + "/" + publisherId;
+    }
+
+    private static class Entry {
+        final long createdAt;
+        volatile long lastActiveAt;
+        final Queue<IceCandidate> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicReference<Consumer<IceCandidate>> sink = new AtomicReference<>();
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+            this.lastActiveAt = createdAt;
+        }
+    }
+
+    public void offer(String key, IceCandidate candidate) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(now));
+        entry.lastActiveAt = now;
+
+        Consumer<IceCandidate> sink = entry.sink.get();
+        if (sink != null) {
+            deliver(sink, candidate);
+            return;
+        }
+
+        if (entry.size.incrementAndGet() > maxPerKey) {
+            entry.size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        entry.pending.add(candidate);
+        queued.incrementAndGet();
+
+        // ready() may have swapped in the sink between our check and the add
+        sink = entry.sink.get();
+        if (sink != null) {
+            flush(entry, sink);
+        }
+    }
+
+    /**
+     * Switches {@code key} to direct delivery and flushes everything queued so far.
+     *
+     * @return number of queued candidates handed to the sink
+     */
+    public int ready(String key, Consumer<IceCandidate> sink) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(now));
+        entry.lastActiveAt = now;
+        entry.sink.set(sink);
+        return flush(entry, sink);
+    }
+
+    /**
+     * Goes back to queueing for {@code key} without dropping anything, for
+     * when its endpoint is replaced and the new one is not ready yet.
+     */
+    public void detach(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.sink.set(null);
+        }
+    }
+
+    public void remove(String key) {
+        discard(entries.remove(key));
+    }
+
+    public void removeSession(String sessionId) {
+        entries.keySet().removeIf(key -> {
+            if (key.equals(sessionId) || key.startsWith(sessionId + "/")) {
+                discard(entries.get(key));
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /*
+     * Drops keys that queued candidates but never got an endpoint within the
+     * TTL, and ready keys idle for the TTL: trickling is over by then, and a
+     * renegotiation calls ready() again.
+     */
+    void sweep(long now) {
+        entries.entrySet().removeIf(e -> {
+            Entry entry = e.getValue();
+            boolean expired = entry.sink.get() == null
+                    ? now - entry.createdAt > ttlMs
+                    : now - entry.lastActiveAt > ttlMs;
+            if (expired) {
+                discard(entry);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getPendingKeys() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private int flush(Entry entry, Consumer<IceCandidate> sink) {
+        int flushed = 0;
+        IceCandidate c;
+        while ((c = entry.pending.poll()) != null) {
+            entry.size.decrementAndGet();
+            deliver(sink, c);
+            flushed++;
+        }
+        return flushed;
+    }
+
+    private void deliver(Consumer<IceCandidate> sink, IceCandidate candidate) {
+        try {
+            sink.accept(candidate);
+            delivered.incrementAndGet();
+        } catch (Exception e) {
+            dropped.incrementAndGet();
+            System.out.println("Failed to add ICE candidate: " + e.getMessage());
+        }
+    }
+
+    private void discard(Entry entry) {
+        if (entry == null) return;
+        int n = 0;
+        while (entry.pending.poll() != null) n++;
+        entry.size.addAndGet(-n);
+        dropped.addAndGet(n);
+    }
+}
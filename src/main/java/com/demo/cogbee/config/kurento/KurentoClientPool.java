@@ -0,0 +1,222 @@
+package com.demo.cogbee.config.kurento;
+
+import jakarta.annotation.PreDestroy;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.ServerManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Long-lived KurentoClient connections, one per media server, shared by all
+ * rooms. New pipelines go to the healthy server with the fewest live
+ * pipelines and are created on a worker pool, never on the caller's thread.
+ * <p>
+ * A server that fails a health check only stops getting new pipelines; its
+ * connection is dropped once it has failed several checks in a row and no
+ * room of ours is left on it, so a short hiccup never cuts live rooms off.
+ */
+@Component
+public class KurentoClientPool {
+
+    private final List<MediaServerNode> nodes;
+    private final Function<String, KurentoClient> connector;
+    private final ExecutorService workers;
+    private final int disconnectAfterFailures;
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "kurento-health");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public KurentoClientPool(@Value("${cogbee.kurento.uris:ws://localhost:8888/kurento}") List<String> uris,
+                             @Value("${cogbee.kurento.workers:4}") int workers,
+                             @Value("${cogbee.kurento.health-check-ms:10000}") long healthCheckMs,
+                             @Value("${cogbee.kurento.disconnect-after-failures:3}") int disconnectAfterFailures) {
+        this(uris, KurentoClient::create, workers, healthCheckMs, disconnectAfterFailures);
+    }
+
+    KurentoClientPool(List<String> uris, Function<String, KurentoClient> connector, int workers, long healthCheckMs,
+                      int disconnectAfterFailures) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("At least one Kurento media server uri is required");
+        }
+        this.nodes = uris.stream().map(MediaServerNode::new).toList();
+        this.connector = connector;
+        this.disconnectAfterFailures = Math.max(1, disconnectAfterFailures);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "kurento-pool-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (healthCheckMs > 0) {
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckMs, healthCheckMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public CompletableFuture<PooledPipeline> createPipeline(String roomId) {
+        MediaServerNode node = pickNode();
+        // reserve the slot now so a burst of joins spreads across servers
+        node.pipelines.incrementAndGet();
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                MediaPipeline pipeline = node.client().createMediaPipeline();
+                System.out.println("Created pipeline for room " + roomId + " on " + node.uri);
+                return new PooledPipeline(node, pipeline);
+            } catch (RuntimeException e) {
+                node.pipelines.decrementAndGet();
+                // keep the connection for the rooms already on it; the health check decides
+                node.healthy = false;
+                throw e;
+            }
+        }, workers);
+    }
+
+    public void release(PooledPipeline pooled) {
+        if (!pooled.released.compareAndSet(false, true)) return;
+
+        try {
+            pooled.pipeline.release();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            pooled.node.pipelines.decrementAndGet();
+        }
+    }
+
+    public int pipelineCount(String uri) {
+        return nodes.stream()
+                .filter(n -> n.uri.equals(uri))
+                .mapToInt(n -> n.pipelines.get())
+                .sum();
+    }
+
+    public boolean isHealthy(String uri) {
+        return nodes.stream().anyMatch(n -> n.uri.equals(uri) && n.healthy);
+    }
+
+    private MediaServerNode pickNode() {
+        Comparator<MediaServerNode> byLoad = Comparator.comparingInt(MediaServerNode::load);
+
+        return nodes.stream()
+                .filter(n -> n.healthy)
+                .min(byLoad)
+                // nothing is healthy: try anyway, the server may be back before the next check
+                .orElseGet(() -> nodes.stream().min(byLoad).orElseThrow());
+    }
+
+    void checkHealth() {
+        for (MediaServerNode node : nodes) {
+            try {
+                ServerManager manager = node.client().getServerManager();
+                manager.getInfo();
+                // pipelines left behind by crashed rooms or other app nodes count as load too
+                node.reportedPipelines = manager.getPipelines().size();
+                node.failures = 0;
+                node.healthy = true;
+            } catch (Exception e) {
+                if (node.healthy) {
+                    System.out.println("Kurento media server unhealthy: " + node.uri + " (" + e.getMessage() + ")");
+                }
+                node.healthy = false;
+                node.failures++;
+                // drop the broken connection so the next use reconnects, unless rooms still depend on it
+                if (node.failures >= disconnectAfterFailures && node.pipelines.get() == 0) {
+                    node.disconnect();
+                    node.reportedPipelines = 0;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthChecker.shutdownNow();
+        workers.shutdownNow();
+        nodes.forEach(MediaServerNode::disconnect);
+    }
+
+    public static class PooledPipeline {
+        private final MediaServerNode node;
+        private final MediaPipeline pipeline;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PooledPipeline(MediaServerNode node, MediaPipeline pipeline) {
+            this.node = node;
+            this.pipeline = pipeline;
+        }
+
+        public MediaPipeline getPipeline() {
+            return pipeline;
+        }
+
+        public String getServerUri() {
+            return node.uri;
+        }
+    }
+
+    private class MediaServerNode {
+        final String uri;
+        final AtomicInteger pipelines = new AtomicInteger();
+        final ReentrantLock connectLock = new ReentrantLock();
+        volatile KurentoClient client;
+        volatile boolean healthy = true;
+        volatile int reportedPipelines;
+        // consecutive failed health checks, only touched by the health checker
+        int failures;
+
+        MediaServerNode(String uri) {
+            this.uri = uri;
+        }
+
+        int load() {
+            return Math.max(pipelines.get(), reportedPipelines);
+        }
+
+        KurentoClient client() {
+            KurentoClient current = client;
+            if (current != null && !current.isClosed()) {
+                return current;
+            }
+
+            connectLock.lock();
+            try {
+                if (client == null || client.isClosed()) {
+                    client = connector.apply(uri);
+                }
+                return client;
+            } finally {
+                connectLock.unlock();
+            }
+        }
+
+        void disconnect() {
+            connectLock.lock();
+            try {
+                if (client != null) {
+                    try {
+                        client.destroy();
+                    } catch (Exception ignored) {
+                    }
+                    client = null;
+                }
+            } finally {
+                connectLock.unlock();
+            }
+        }
+    }
+}
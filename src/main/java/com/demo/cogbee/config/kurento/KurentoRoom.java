@@ -1,23 +1,48 @@
 package com.demo.cogbee.config.kurento;
 
-import org.kurento.client.KurentoClient;
 import org.kurento.client.MediaPipeline;
+import org.kurento.client.MediaType;
 import org.kurento.client.WebRtcEndpoint;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * SFU-style room: each participant sends media once to its publisher endpoint,
+ * and every viewer gets its own subscriber endpoint per publisher it asked
+ * for. Media only flows publisher -> subscriber, so the media server forwards
+ * exactly the streams viewers subscribed to instead of a full mesh.
+ * Whenever an endpoint is released, its ICE candidate queue goes with it.
+ * Once closed, a room can't be joined again, so a join racing with the last
+ * participant's leave finds out and sets up a new room instead.
+ */
 public class KurentoRoom {
 
     private final String roomId;
-    private final KurentoClient kurentoClient;
+    private final KurentoClientPool clientPool;
+    private final IceCandidateBuffer candidateBuffer;
+    private final KurentoClientPool.PooledPipeline pooledPipeline;
     private final MediaPipeline pipeline;
-    private final Map<String, WebRtcEndpoint> participants = new ConcurrentHashMap<>();
+    private final Map<String, Participant> participants = new ConcurrentHashMap<>();
+    // guards joins against the empty check and close
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean closed;
 
-    public KurentoRoom(String roomId, KurentoClient kurentoClient, MediaPipeline pipeline) {
+    public KurentoRoom(String roomId, KurentoClientPool clientPool, KurentoClientPool.PooledPipeline pooledPipeline,
+                       IceCandidateBuffer candidateBuffer) {
         this.roomId = roomId;
-        this.kurentoClient = kurentoClient;
-        this.pipeline = pipeline;
+        this.clientPool = clientPool;
+        this.candidateBuffer = candidateBuffer;
+        this.pooledPipeline = pooledPipeline;
+        this.pipeline = pooledPipeline.getPipeline();
+    }
+
+    private static class Participant {
+        volatile WebRtcEndpoint publisher;
+        // publisherId -> this participant's receiving endpoint for that publisher
+        final Map<String, WebRtcEndpoint> subscriptions = new ConcurrentHashMap<>();
     }
 
     public String getRoomId() {
@@ -28,54 +53,145 @@ public class KurentoRoom {
         return pipeline;
     }
 
-    public Map<String, WebRtcEndpoint> getParticipants() {
-        return participants;
+    /** @return false when the room has been closed and can't be joined */
+    public boolean join(String sessionId) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            participants.putIfAbsent(sessionId, new Participant());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Set<String> getParticipantIds() {
+        return participants.keySet();
+    }
+
+    public boolean isEmpty() {
+        return participants.isEmpty();
+    }
+
+    public WebRtcEndpoint getPublisher(String sessionId) {
+        Participant p = participants.get(sessionId);
+        return p == null ? null : p.publisher;
+    }
+
+    public Set<String> getPublisherIds() {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        participants.forEach((id, p) -> {
+            if (p.publisher != null) ids.add(id);
+        });
+        return ids;
     }
 
-    public WebRtcEndpoint getEndpoint(String sessionId) {
-        return participants.get(sessionId);
+    public void setPublisher(String sessionId, WebRtcEndpoint endpoint) {
+        participants.computeIfAbsent(sessionId, id -> new Participant()).publisher = endpoint;
     }
 
-    public void addParticipant(String sessionId, WebRtcEndpoint endpoint) {
-        participants.put(sessionId, endpoint);
+    public WebRtcEndpoint getSubscriber(String viewerId, String publisherId) {
+        Participant viewer = participants.get(viewerId);
+        return viewer == null ? null : viewer.subscriptions.get(publisherId);
+    }
+
+    /**
+     * Wires {@code publisherId}'s stream into the viewer's subscriber endpoint.
+     * With {@code audioOnly} only the audio track is forwarded.
+     *
+     * @return false if the publisher or viewer is not (or no longer) in the room
+     */
+    public boolean addSubscriber(String viewerId, String publisherId, WebRtcEndpoint subscriber, boolean audioOnly) {
+        Participant viewer = participants.get(viewerId);
+        WebRtcEndpoint publisher = getPublisher(publisherId);
+        if (viewer == null || publisher == null) {
+            return false;
+        }
+
+        if (audioOnly) {
+            publisher.connect(subscriber, MediaType.AUDIO);
+        } else {
+            publisher.connect(subscriber);
+        }
+
+        // the key now belongs to the new endpoint: keep its queue, just stop delivering to the old one
+        WebRtcEndpoint previous = viewer.subscriptions.put(publisherId, subscriber);
+        if (previous != null) {
+            candidateBuffer.detach(IceCandidateBuffer.key(viewerId, publisherId));
+            release(previous);
+        }
+        return true;
+    }
+
+    public void removeSubscriber(String viewerId, String publisherId) {
+        Participant viewer = participants.get(viewerId);
+        if (viewer != null) {
+            releaseSubscription(viewerId, publisherId, viewer.subscriptions.remove(publisherId));
+        }
     }
 
     public void removeParticipant(String sessionId) {
-        WebRtcEndpoint ep = participants.remove(sessionId);
-        if (ep != null) {
-            try {
-                ep.release();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        Participant p = participants.remove(sessionId);
+        if (p == null) return;
+        releaseAll(sessionId, p);
+
+        // everyone watching this participant loses that subscription
+        participants.forEach((viewerId, viewer) ->
+                releaseSubscription(viewerId, sessionId, viewer.subscriptions.remove(sessionId)));
+    }
+
+    /**
+     * Closes the room to joins if nobody is in it, atomically with respect
+     * to {@link #join}. The caller then releases it with {@link #close}.
+     */
+    public boolean closeIfEmpty() {
+        lock.lock();
+        try {
+            if (closed || !participants.isEmpty()) return false;
+            closed = true;
+            return true;
+        } finally {
+            lock.unlock();
         }
     }
 
     public void close() {
-        // release endpoints
-        participants.values().forEach(ep -> {
-            try {
-                ep.release();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-        participants.clear();
-
-        // release pipeline
+        lock.lock();
         try {
-            pipeline.release();
-        } catch (Exception e) {
-            e.printStackTrace();
+            closed = true;
+        } finally {
+            lock.unlock();
         }
 
-        // destroy KurentoClient
+        participants.forEach(this::releaseAll);
+        participants.clear();
+
+        // release pipeline; the client connection stays in the pool
+        clientPool.release(pooledPipeline);
+
+        System.out.println("KurentoRoom " + roomId + " closed (pipeline released on " + pooledPipeline.getServerUri() + ")");
+    }
+
+    private void releaseAll(String sessionId, Participant p) {
+        p.subscriptions.forEach((publisherId, ep) -> releaseSubscription(sessionId, publisherId, ep));
+        p.subscriptions.clear();
+
+        candidateBuffer.remove(IceCandidateBuffer.key(sessionId, null));
+        release(p.publisher);
+    }
+
+    private void releaseSubscription(String viewerId, String publisherId, WebRtcEndpoint ep) {
+        if (ep == null) return;
+        candidateBuffer.remove(IceCandidateBuffer.key(viewerId, publisherId));
+        release(ep);
+    }
+
+    private void release(WebRtcEndpoint ep) {
+        if (ep == null) return;
         try {
-            kurentoClient.destroy();
+            ep.release();
         } catch (Exception e) {
             e.printStackTrace();
         }
-
-        System.out.println("KurentoRoom " + roomId + " closed (pipeline + client destroyed)");
     }
 }
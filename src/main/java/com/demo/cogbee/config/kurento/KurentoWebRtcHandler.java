@@ -1,57 +1,117 @@
 package com.demo.cogbee.config.kurento;
 
+import com.demo.cogbee.config.signaling.SessionOutbox;
+import com.demo.cogbee.config.signaling.SignalMessage;
+import com.demo.cogbee.config.signaling.SignalMessageCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.kurento.client.IceCandidate;
-import org.kurento.client.KurentoClient;
-import org.kurento.client.WebRtcEndpoint;
 import org.kurento.client.MediaPipeline;
+import org.kurento.client.WebRtcEndpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Signaling for SFU rooms on Kurento. Messages to a client are written by
+ * its {@link SessionOutbox}, never directly: answers, room notices and the
+ * media server's ICE callbacks come from different threads, and a
+ * WebSocketSession allows one send at a time.
+ */
 @Component
 public class KurentoWebRtcHandler extends TextWebSocketHandler {
 
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
-    private final Map<String, KurentoRoom> rooms = new ConcurrentHashMap<>();
+    private final Map<String, SessionOutbox> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<KurentoRoom>> rooms = new ConcurrentHashMap<>();
     private final Map<String, String> userRooms = new ConcurrentHashMap<>();
-    private final Map<String, List<IceCandidate>> candidateQueue = new ConcurrentHashMap<>();
 
-    private KurentoClient createClient() {
-        return KurentoClient.create("ws://localhost:8888/kurento");
+    private final KurentoClientPool clientPool;
+    private final IceCandidateBuffer candidateBuffer;
+    private final long roomSetupTimeoutMs;
+    private final Function<MediaPipeline, WebRtcEndpoint> endpointFactory;
+
+    private final ExecutorService sendExecutor;
+    private final long sendTimeLimitMs;
+    private final int bufferSizeLimit;
+
+    @Autowired
+    public KurentoWebRtcHandler(KurentoClientPool clientPool,
+                                IceCandidateBuffer candidateBuffer,
+                                @Value("${cogbee.kurento.room-setup-timeout-ms:10000}") long roomSetupTimeoutMs,
+                                @Value("${cogbee.signaling.send-threads:8}") int sendThreads,
+                                @Value("${cogbee.signaling.send-time-limit-ms:5000}") long sendTimeLimitMs,
+                                @Value("${cogbee.signaling.buffer-size-limit:524288}") int bufferSizeLimit) {
+        this(clientPool, candidateBuffer, roomSetupTimeoutMs,
+                pipeline -> new WebRtcEndpoint.Builder(pipeline).build(),
+                sendExecutor(sendThreads), sendTimeLimitMs, bufferSizeLimit);
+    }
+
+    KurentoWebRtcHandler(KurentoClientPool clientPool, IceCandidateBuffer candidateBuffer, long roomSetupTimeoutMs,
+                         Function<MediaPipeline, WebRtcEndpoint> endpointFactory,
+                         ExecutorService sendExecutor, long sendTimeLimitMs, int bufferSizeLimit) {
+        this.clientPool = clientPool;
+        this.candidateBuffer = candidateBuffer;
+        this.roomSetupTimeoutMs = roomSetupTimeoutMs;
+        this.endpointFactory = endpointFactory;
+        this.sendExecutor = sendExecutor;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    private static ExecutorService sendExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "kurento-send-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String id = session.getId();
-        sessions.put(id, session);
+        SessionOutbox outbox = new SessionOutbox(session, sendExecutor, sendTimeLimitMs, bufferSizeLimit);
+        sessions.put(id, outbox);
 
-        session.sendMessage(new TextMessage("{\"type\":\"id\",\"id\":\"" + id + "\"}"));
+        outbox.send(new TextMessage("{\"type\":\"id\",\"id\":\"" + id + "\"}"));
         System.out.println("Kurento WS client connected: " + id);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        System.out.println(">>> RAW MESSAGE FROM CLIENT: " + message.getPayload());
-
-        Map<String, Object> data = mapper.readValue(message.getPayload(), Map.class);
-
-        String type = (String) data.get("type");
+        SignalMessage msg = SignalMessageCodec.decode(message.getPayload());
         String sessionId = session.getId();
 
-        if (type == null) return;
-
-        switch (type) {
-            case "join" -> handleJoin(session, data);
-            case "offer" -> handleOffer(session, data);
-            case "candidate" -> handleCandidate(session, data);
-            case "leave" -> handleLeave(sessionId);
-            default -> System.out.println("Unknown Kurento message type: " + type);
+        if (msg instanceof SignalMessage.Join join) {
+            handleJoin(session, join);
+        } else if (msg instanceof SignalMessage.Offer offer) {
+            handleOffer(session, offer);
+        } else if (msg instanceof SignalMessage.Subscribe subscribe) {
+            handleSubscribe(session, subscribe);
+        } else if (msg instanceof SignalMessage.Unsubscribe unsubscribe) {
+            handleUnsubscribe(session, unsubscribe);
+        } else if (msg instanceof SignalMessage.Candidate candidate) {
+            handleCandidate(session, candidate);
+        } else if (msg instanceof SignalMessage.Leave) {
+            handleLeave(sessionId);
+        } else if (msg instanceof SignalMessage.Unknown unknown && unknown.type() == null) {
+            return;
+        } else {
+            System.out.println("Unknown Kurento message type: " + msg);
         }
     }
 
@@ -63,34 +123,66 @@ public class KurentoWebRtcHandler extends TextWebSocketHandler {
         System.out.println("Kurento WS client disconnected: " + sessionId);
     }
 
-    private void handleJoin(WebSocketSession session, Map<String, Object> data) throws Exception {
+    private void handleJoin(WebSocketSession session, SignalMessage.Join data) throws Exception {
         String sessionId = session.getId();
-        String roomId = (String) data.get("roomId");
+        String roomId = data.roomId();
         if (roomId == null || roomId.isBlank()) {
             System.out.println("join without roomId from " + sessionId);
             return;
         }
 
-        KurentoRoom room = rooms.computeIfAbsent(roomId, id -> {
-            KurentoClient kc = createClient();
-            MediaPipeline pipeline = kc.createMediaPipeline();
-            System.out.println("Created new Kurento room " + id + " with dedicated KurentoClient & pipeline");
-            return new KurentoRoom(id, kc, pipeline);
-        });
+        KurentoRoom room;
+        while (true) {
+            // only the future is created under the map lock; the pipeline RPC runs on the pool's workers
+            CompletableFuture<KurentoRoom> roomFuture = rooms.computeIfAbsent(roomId, id ->
+                    clientPool.createPipeline(id).thenApply(pooled -> {
+                        System.out.println("Created new Kurento room " + id + " on " + pooled.getServerUri());
+                        return new KurentoRoom(id, clientPool, pooled, candidateBuffer);
+                    }));
+
+            try {
+                room = roomFuture.get(roomSetupTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // a pipeline that still arrives later is released rather than leaked
+                if (rooms.remove(roomId, roomFuture)) {
+                    roomFuture.thenAccept(late -> {
+                        if (late.closeIfEmpty()) late.close();
+                    });
+                }
+                System.out.println("Could not set up Kurento room " + roomId + ": " + e.getMessage());
+                send(sessionId, Map.of(
+                        "type", "error",
+                        "message", "Media server unavailable"
+                ));
+                return;
+            }
+
+            if (!room.join(sessionId)) {
+                // the last participant left and closed it meanwhile: set up a new one
+                rooms.remove(roomId, roomFuture);
+                continue;
+            }
+            if (rooms.get(roomId) == roomFuture) break;
+
+            // another joiner gave up on this room while we were joining it
+            room.removeParticipant(sessionId);
+            if (room.closeIfEmpty()) room.close();
+        }
 
         userRooms.put(sessionId, roomId);
 
-        session.sendMessage(new TextMessage(
-                mapper.writeValueAsString(Map.of(
-                        "type", "joined",
-                        "roomId", roomId
-                ))
+        // the client subscribes to whichever of these it wants to see or hear
+        send(sessionId, Map.of(
+                "type", "joined",
+                "roomId", roomId,
+                "publishers", room.getPublisherIds()
         ));
 
         System.out.println("User " + sessionId + " joined Kurento room " + roomId);
     }
 
-    private void handleOffer(WebSocketSession session, Map<String, Object> data) throws Exception {
+    // Participant publishes its own camera/mic into the room
+    private void handleOffer(WebSocketSession session, SignalMessage.Offer data) throws Exception {
         String sessionId = session.getId();
         String roomId = userRooms.get(sessionId);
         if (roomId == null) {
@@ -98,129 +190,210 @@ public class KurentoWebRtcHandler extends TextWebSocketHandler {
             return;
         }
 
-        String sdpOffer = (String) data.get("offer");
+        String sdpOffer = data.sdp();
         if (sdpOffer == null) {
             System.out.println("Missing sdp offer from " + sessionId);
             return;
         }
 
-        KurentoRoom room = rooms.get(roomId);
+        KurentoRoom room = readyRoom(roomId);
         if (room == null) {
             System.out.println("No room for offer: " + roomId);
             return;
         }
 
-        WebRtcEndpoint endpoint = room.getEndpoint(sessionId);
+        WebRtcEndpoint endpoint = room.getPublisher(sessionId);
         boolean isNew = false;
 
         if (endpoint == null) {
-            endpoint = new WebRtcEndpoint.Builder(room.getPipeline()).build();
-            room.addParticipant(sessionId, endpoint);
+            endpoint = createEndpoint(room, sessionId, null);
+            room.setPublisher(sessionId, endpoint);
             isNew = true;
 
-            System.out.println("Created new WebRtcEndpoint for: " + sessionId);
-
-            WebRtcEndpoint finalEndpoint = endpoint;
-            endpoint.addIceCandidateFoundListener(event -> {
-                try {
-                    Map<String, Object> candidateMsg = Map.of(
-                            "type", "candidate",
-                            "candidate", Map.of(
-                                    "candidate", event.getCandidate().getCandidate(),
-                                    "sdpMid", event.getCandidate().getSdpMid(),
-                                    "sdpMLineIndex", event.getCandidate().getSdpMLineIndex()
-                            )
-                    );
-
-                    session.sendMessage(new TextMessage(mapper.writeValueAsString(candidateMsg)));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    try {
-                        finalEndpoint.release();
-                    } catch (Exception ignored) {
-                    }
-                }
-            });
+            System.out.println("Created publisher endpoint for: " + sessionId);
         }
 
+        negotiate(session, endpoint, sdpOffer, null);
+
         if (isNew) {
-            for (Map.Entry<String, WebRtcEndpoint> entry : room.getParticipants().entrySet()) {
-                String otherId = entry.getKey();
-                WebRtcEndpoint otherEp = entry.getValue();
+            sendToRoom(room, sessionId, Map.of(
+                    "type", "publisher_joined",
+                    "publisherId", sessionId
+            ));
+        }
+    }
+
+    // Viewer asks for one publisher's stream; audioOnly suits interviewer panels
+    private void handleSubscribe(WebSocketSession session, SignalMessage.Subscribe data) throws Exception {
+        String sessionId = session.getId();
+        String roomId = userRooms.get(sessionId);
+        if (roomId == null) return;
 
-                if (otherId.equals(sessionId)) continue;
+        KurentoRoom room = readyRoom(roomId);
+        if (room == null) return;
 
-                System.out.println("Connecting " + sessionId + " <--> " + otherId);
+        String publisherId = data.publisherId();
+        String sdpOffer = data.sdp();
+        if (publisherId == null || sdpOffer == null || publisherId.equals(sessionId)) {
+            System.out.println("Invalid subscribe from " + sessionId);
+            return;
+        }
+
+        boolean audioOnly = data.audioOnly();
 
-                endpoint.connect(otherEp);
-                otherEp.connect(endpoint);
+        WebRtcEndpoint endpoint = room.getSubscriber(sessionId, publisherId);
+        if (endpoint == null) {
+            endpoint = createEndpoint(room, sessionId, publisherId);
+            if (!room.addSubscriber(sessionId, publisherId, endpoint, audioOnly)) {
+                endpoint.release();
+                candidateBuffer.remove(IceCandidateBuffer.key(sessionId, publisherId));
+                System.out.println("Subscribe to unknown publisher " + publisherId + " from " + sessionId);
+                return;
             }
+            System.out.println("Subscribed " + sessionId + " -> " + publisherId + (audioOnly ? " (audio only)" : ""));
         }
 
+        negotiate(session, endpoint, sdpOffer, publisherId);
+    }
+
+    private void handleUnsubscribe(WebSocketSession session, SignalMessage.Unsubscribe data) {
+        String sessionId = session.getId();
+        String roomId = userRooms.get(sessionId);
+        if (roomId == null) return;
+
+        KurentoRoom room = readyRoom(roomId);
+        String publisherId = data.publisherId();
+        if (room == null || publisherId == null) return;
+
+        room.removeSubscriber(sessionId, publisherId);
+    }
+
+    private WebRtcEndpoint createEndpoint(KurentoRoom room, String sessionId, String publisherId) {
+        WebRtcEndpoint endpoint = endpointFactory.apply(room.getPipeline());
+
+        // called on the Kurento client's event thread
+        endpoint.addIceCandidateFoundListener(event -> {
+            Map<String, Object> candidateMsg = new HashMap<>();
+            candidateMsg.put("type", "candidate");
+            candidateMsg.put("candidate", Map.of(
+                    "candidate", event.getCandidate().getCandidate(),
+                    "sdpMid", event.getCandidate().getSdpMid(),
+                    "sdpMLineIndex", event.getCandidate().getSdpMLineIndex()
+            ));
+            if (publisherId != null) {
+                candidateMsg.put("publisherId", publisherId);
+            }
+            send(sessionId, candidateMsg);
+        });
+
+        return endpoint;
+    }
+
+    private void negotiate(WebSocketSession session, WebRtcEndpoint endpoint,
+                           String sdpOffer, String publisherId) throws Exception {
         String sdpAnswer = endpoint.processOffer(sdpOffer);
 
-        session.sendMessage(new TextMessage(mapper.writeValueAsString(
-                Map.of("type", "answer", "answer", sdpAnswer)
-        )));
+        Map<String, Object> answer = new HashMap<>();
+        answer.put("type", "answer");
+        answer.put("answer", sdpAnswer);
+        if (publisherId != null) {
+            answer.put("publisherId", publisherId);
+        }
+        send(session.getId(), answer);
 
-        List<IceCandidate> queued = candidateQueue.get(sessionId);
-        if (queued != null) {
-            System.out.println("Flushing " + queued.size() + " queued ICE candidates for " + sessionId);
-            queued.forEach(endpoint::addIceCandidate);
-            candidateQueue.remove(sessionId);
+        String key = IceCandidateBuffer.key(session.getId(), publisherId);
+        int flushed = candidateBuffer.ready(key, endpoint::addIceCandidate);
+        if (flushed > 0) {
+            System.out.println("Flushed " + flushed + " queued ICE candidates for " + key);
         }
 
         endpoint.gatherCandidates();
     }
 
-    @SuppressWarnings("unchecked")
-    private void handleCandidate(WebSocketSession session, Map<String, Object> data) {
+    private void handleCandidate(WebSocketSession session, SignalMessage.Candidate data) {
         String sessionId = session.getId();
         String roomId = userRooms.get(sessionId);
         if (roomId == null) return;
 
-        KurentoRoom room = rooms.get(roomId);
+        KurentoRoom room = readyRoom(roomId);
         if (room == null) return;
 
-        WebRtcEndpoint endpoint = room.getEndpoint(sessionId);
+        // candidates tagged with a publisherId belong to that subscription, otherwise to the publisher
+        String publisherId = data.publisherId();
 
-        Map<String, Object> cand = (Map<String, Object>) data.get("candidate");
-        if (cand == null) return;
+        if (data.candidate() == null) return;
 
-        IceCandidate candidate = new IceCandidate(
-                (String) cand.get("candidate"),
-                (String) cand.get("sdpMid"),
-                (Integer) cand.get("sdpMLineIndex")
-        );
-
-        // ---------------- IF ENDPOINT NOT READY → QUEUE ----------------
-        if (endpoint == null) {
-            System.out.println("Queueing ICE candidate for " + sessionId);
-
-            candidateQueue.putIfAbsent(sessionId, new ArrayList<>());
-            candidateQueue.get(sessionId).add(candidate);
-            return;
-        }
+        IceCandidate candidate = new IceCandidate(data.candidate(), data.sdpMid(), data.sdpMLineIndex());
 
-        // ---------------- ENDPOINT READY → ADD DIRECTLY ----------------
-        endpoint.addIceCandidate(candidate);
+        // queued until the endpoint has processed the offer, then added directly
+        candidateBuffer.offer(IceCandidateBuffer.key(sessionId, publisherId), candidate);
     }
 
     private void handleLeave(String sessionId) {
+        candidateBuffer.removeSession(sessionId);
+
         String roomId = userRooms.remove(sessionId);
         if (roomId == null) return;
 
-        KurentoRoom room = rooms.get(roomId);
+        CompletableFuture<KurentoRoom> roomFuture = rooms.get(roomId);
+        KurentoRoom room = readyRoom(roomId);
         if (room == null) return;
 
+        boolean wasPublishing = room.getPublisher(sessionId) != null;
         room.removeParticipant(sessionId);
 
-        if (room.getParticipants().isEmpty()) {
+        // closed to joins first, so a concurrent join can't land in it after the check
+        if (room.closeIfEmpty()) {
+            rooms.remove(roomId, roomFuture);
             room.close();
-            rooms.remove(roomId);
             System.out.println("Room " + roomId + " destroyed (empty)");
         } else {
+            if (wasPublishing) {
+                sendToRoom(room, sessionId, Map.of(
+                        "type", "publisher_left",
+                        "publisherId", sessionId
+                ));
+            }
             System.out.println("User " + sessionId + " left room " + roomId);
         }
     }
+
+    private void sendToRoom(KurentoRoom room, String excludeId, Map<String, Object> payload) {
+        TextMessage message = toMessage(payload);
+        if (message == null) return;
+
+        for (String id : room.getParticipantIds()) {
+            if (id.equals(excludeId)) continue;
+
+            SessionOutbox outbox = sessions.get(id);
+            if (outbox != null) {
+                outbox.send(message);
+            }
+        }
+    }
+
+    private void send(String sessionId, Map<String, Object> payload) {
+        SessionOutbox outbox = sessions.get(sessionId);
+        TextMessage message = outbox == null ? null : toMessage(payload);
+        if (message != null) {
+            outbox.send(message);
+        }
+    }
+
+    private TextMessage toMessage(Map<String, Object> payload) {
+        try {
+            return new TextMessage(mapper.writeValueAsString(payload));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private KurentoRoom readyRoom(String roomId) {
+        CompletableFuture<KurentoRoom> roomFuture = rooms.get(roomId);
+        if (roomFuture == null || !roomFuture.isDone() || roomFuture.isCompletedExceptionally()) {
+            return null;
+        }
+        return roomFuture.join();
+    }
 }
@@ -0,0 +1,190 @@
+package com.demo.cogbee.config.signaling;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single-JVM registry. Members are kept in join order so host hand-over is
+ * deterministic, which the replicated registry relies on when every node
+ * applies the same operations.
+ */
+public class InMemoryRoomRegistry implements RoomRegistry {
+
+    private static class RoomState {
+        final Set<String> users = new LinkedHashSet<>();
+        String hostId;
+        boolean interviewStarted = false;
+    }
+
+    /** Full registry state, members in join order; used to bring a replica up to date. */
+    public record Snapshot(List<RoomSnapshot> rooms, Map<String, String> userNodes) {
+    }
+
+    public record RoomSnapshot(String roomId, String hostId, boolean interviewStarted, List<String> users) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, RoomState> rooms = new HashMap<>();
+    private final Map<String, String> userRooms = new HashMap<>();
+    private final Map<String, String> userNodes = new HashMap<>();
+
+    @Override
+    public void registerSession(String userId, String nodeId) {
+        lock.lock();
+        try {
+            userNodes.put(userId, nodeId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void unregisterSession(String userId) {
+        lock.lock();
+        try {
+            userNodes.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String nodeOf(String userId) {
+        lock.lock();
+        try {
+            return userNodes.get(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public JoinResult join(String roomId, String userId) {
+        lock.lock();
+        try {
+            RoomState room = rooms.computeIfAbsent(roomId, id -> new RoomState());
+
+            if (room.hostId == null) {
+                room.hostId = userId;
+            }
+
+            room.users.add(userId);
+            userRooms.put(userId, roomId);
+
+            List<String> peers = room.users.stream()
+                    .filter(uid -> !uid.equals(userId))
+                    .toList();
+
+            return new JoinResult(roomId, room.hostId, peers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LeaveResult leave(String userId) {
+        lock.lock();
+        try {
+            String roomId = userRooms.remove(userId);
+            if (roomId == null) return null;
+
+            RoomState room = rooms.get(roomId);
+            if (room == null) return null;
+
+            room.users.remove(userId);
+
+            String newHost = null;
+            if (userId.equals(room.hostId) && !room.users.isEmpty()) {
+                newHost = room.users.iterator().next();
+                room.hostId = newHost;
+            }
+
+            if (room.users.isEmpty()) {
+                rooms.remove(roomId);
+            }
+
+            return new LeaveResult(roomId, newHost, room.users.isEmpty());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String roomOf(String userId) {
+        lock.lock();
+        try {
+            return userRooms.get(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String hostOf(String roomId) {
+        lock.lock();
+        try {
+            RoomState room = rooms.get(roomId);
+            return room == null ? null : room.hostId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> members(String roomId) {
+        lock.lock();
+        try {
+            RoomState room = rooms.get(roomId);
+            return room == null ? Set.of() : new LinkedHashSet<>(room.users);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setInterviewStarted(String roomId, boolean started) {
+        lock.lock();
+        try {
+            RoomState room = rooms.get(roomId);
+            if (room != null) {
+                room.interviewStarted = started;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            List<RoomSnapshot> copy = new ArrayList<>();
+            rooms.forEach((id, room) -> copy.add(
+                    new RoomSnapshot(id, room.hostId, room.interviewStarted, List.copyOf(room.users))));
+            return new Snapshot(copy, Map.copyOf(userNodes));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Replaces the whole state with the snapshot's
+    public void restore(Snapshot snapshot) {
+        lock.lock();
+        try {
+            rooms.clear();
+            userRooms.clear();
+            userNodes.clear();
+
+            for (RoomSnapshot saved : snapshot.rooms()) {
+                RoomState room = new RoomState();
+                room.hostId = saved.hostId();
+                room.interviewStarted = saved.interviewStarted();
+                room.users.addAll(saved.users());
+                rooms.put(saved.roomId(), room);
+                saved.users().forEach(user -> userRooms.put(user, saved.roomId()));
+            }
+            userNodes.putAll(snapshot.userNodes());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
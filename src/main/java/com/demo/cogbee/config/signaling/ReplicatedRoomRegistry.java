@@ -0,0 +1,264 @@
+package com.demo.cogbee.config.signaling;
+
+import com.demo.cogbee.config.cluster.ClusterBus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registry replicated to every node through the cluster bus. Writes are
+ * published as operations and applied by each node, the writer included,
+ * in bus order. Join and leave wait for their own operation to come back so
+ * the caller sees the agreed host and peer list. Reads are served from the
+ * local copy.
+ * <p>
+ * A node that starts late, or that missed operations while its bus
+ * connection was down, resynchronizes: it publishes a sync request, and the
+ * first up-to-date node to apply it answers with a snapshot of its copy at
+ * that point in the order. Operations after the request are held back until
+ * the snapshot is in and then applied on top of it, so the copies converge
+ * again. When nobody answers within the sync timeout (the first node of a
+ * cluster), the node keeps its own copy.
+ */
+public class ReplicatedRoomRegistry implements RoomRegistry {
+
+    static final String TOPIC = "registry";
+
+    private final ClusterBus bus;
+    private final long opTimeoutMs;
+    private final long syncTimeoutMs;
+    private final InMemoryRoomRegistry replica = new InMemoryRoomRegistry();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+
+    // sync state, guarded by syncLock; ops are applied under it too so they don't interleave with a restore
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private String syncId;
+    private boolean holding;
+    private final List<JsonNode> held = new ArrayList<>();
+    private ScheduledFuture<?> syncDeadline;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "registry-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ReplicatedRoomRegistry(ClusterBus bus, long opTimeoutMs, long syncTimeoutMs) {
+        this.bus = bus;
+        this.opTimeoutMs = opTimeoutMs;
+        this.syncTimeoutMs = syncTimeoutMs;
+        bus.subscribe(TOPIC, this::apply);
+        bus.onReconnect(this::resync);
+        resync();
+    }
+
+    @Override
+    public void registerSession(String userId, String nodeId) {
+        publish(op("session_up").put("user", userId).put("node", nodeId));
+    }
+
+    @Override
+    public void unregisterSession(String userId) {
+        publish(op("session_down").put("user", userId));
+    }
+
+    @Override
+    public String nodeOf(String userId) {
+        return replica.nodeOf(userId);
+    }
+
+    @Override
+    public JoinResult join(String roomId, String userId) {
+        return (JoinResult) await(op("join").put("room", roomId).put("user", userId));
+    }
+
+    @Override
+    public LeaveResult leave(String userId) {
+        return (LeaveResult) await(op("leave").put("user", userId));
+    }
+
+    @Override
+    public String roomOf(String userId) {
+        return replica.roomOf(userId);
+    }
+
+    @Override
+    public String hostOf(String roomId) {
+        return replica.hostOf(roomId);
+    }
+
+    @Override
+    public Set<String> members(String roomId) {
+        return replica.members(roomId);
+    }
+
+    @Override
+    public void setInterviewStarted(String roomId, boolean started) {
+        publish(op("interview").put("room", roomId).put("started", started));
+    }
+
+    // Asks the other nodes for their state; called on start and after every bus reconnect
+    void resync() {
+        ObjectNode request = op("sync_request");
+        String id = request.get("id").asText();
+
+        syncLock.lock();
+        try {
+            // a sync still in progress is superseded; what it held back is applied first
+            finishSync(null);
+            syncId = id;
+            syncDeadline = timer.schedule(() -> syncTimedOut(id), syncTimeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            syncLock.unlock();
+        }
+
+        try {
+            publish(request);
+        } catch (Exception e) {
+            System.out.println("Room registry sync request failed: " + e.getMessage());
+            syncTimedOut(id);
+        }
+    }
+
+    private ObjectNode op(String name) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("op", name);
+        node.put("id", UUID.randomUUID().toString());
+        node.put("origin", bus.nodeId());
+        return node;
+    }
+
+    private void publish(ObjectNode op) {
+        bus.publish(TOPIC, null, op.toString());
+    }
+
+    private Object await(ObjectNode op) {
+        String id = op.get("id").asText();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        pending.put(id, result);
+        try {
+            publish(op);
+            return result.get(opTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException("Room registry operation " + op.get("op").asText() + " failed", e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private void apply(String payload) {
+        JsonNode op;
+        try {
+            op = mapper.readTree(payload);
+        } catch (Exception e) {
+            System.out.println("Ignoring malformed registry op: " + e.getMessage());
+            return;
+        }
+
+        String origin = op.path("origin").asText();
+        boolean mine = bus.nodeId().equals(origin);
+
+        syncLock.lock();
+        try {
+            switch (op.path("op").asText()) {
+                case "sync_request" -> {
+                    if (mine) {
+                        // everything before this point is in the snapshot that answers it
+                        if (op.path("id").asText().equals(syncId)) holding = true;
+                    } else if (syncId == null) {
+                        answerSync(origin, op.path("id").asText());
+                    }
+                }
+                case "sync_state" -> {
+                    if (syncId != null && syncId.equals(op.path("request").asText())) {
+                        finishSync(mapper.treeToValue(op.get("state"), InMemoryRoomRegistry.Snapshot.class));
+                    }
+                }
+                default -> {
+                    if (holding) {
+                        held.add(op);
+                    } else {
+                        applyOp(op, mine);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Failed to apply registry op: " + e.getMessage());
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void answerSync(String requester, String requestId) {
+        ObjectNode state = op("sync_state");
+        state.put("request", requestId);
+        state.set("state", mapper.valueToTree(replica.snapshot()));
+        bus.publish(TOPIC, requester, state.toString());
+    }
+
+    private void syncTimedOut(String id) {
+        syncLock.lock();
+        try {
+            if (!id.equals(syncId)) return;
+            System.out.println("No room registry snapshot received, keeping the local copy");
+            finishSync(null);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // With a null snapshot, only releases the ops held back
+    private void finishSync(InMemoryRoomRegistry.Snapshot snapshot) {
+        if (snapshot != null) {
+            replica.restore(snapshot);
+        }
+        if (syncDeadline != null) {
+            syncDeadline.cancel(false);
+            syncDeadline = null;
+        }
+        syncId = null;
+        holding = false;
+
+        List<JsonNode> ops = new ArrayList<>(held);
+        held.clear();
+        for (JsonNode op : ops) {
+            applyOp(op, bus.nodeId().equals(op.path("origin").asText()));
+        }
+    }
+
+    private void applyOp(JsonNode op, boolean mine) {
+        Object result = switch (op.path("op").asText()) {
+            case "session_up" -> {
+                replica.registerSession(op.path("user").asText(), op.path("node").asText());
+                yield null;
+            }
+            case "session_down" -> {
+                replica.unregisterSession(op.path("user").asText());
+                yield null;
+            }
+            case "join" -> replica.join(op.path("room").asText(), op.path("user").asText());
+            case "leave" -> replica.leave(op.path("user").asText());
+            case "interview" -> {
+                replica.setInterviewStarted(op.path("room").asText(), op.path("started").asBoolean());
+                yield null;
+            }
+            default -> null;
+        };
+
+        if (mine) {
+            CompletableFuture<Object> waiter = pending.get(op.path("id").asText());
+            if (waiter != null) {
+                waiter.complete(result);
+            }
+        }
+    }
+}
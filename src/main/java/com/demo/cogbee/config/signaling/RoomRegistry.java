@@ -0,0 +1,40 @@
+package com.demo.cogbee.config.signaling;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Who is in which room, who hosts it, and which node holds each user's
+ * socket. The in-memory implementation serves a single node; the replicated
+ * one keeps every node's copy in sync over the cluster bus.
+ */
+public interface RoomRegistry {
+
+    void registerSession(String userId, String nodeId);
+
+    void unregisterSession(String userId);
+
+    /** Node holding the user's socket, or {@code null} if the user is gone. */
+    String nodeOf(String userId);
+
+    /** The first user to join a room becomes its host. */
+    JoinResult join(String roomId, String userId);
+
+    /** Removes the user from their room; {@code null} if they were not in one. */
+    LeaveResult leave(String userId);
+
+    String roomOf(String userId);
+
+    String hostOf(String roomId);
+
+    Set<String> members(String roomId);
+
+    void setInterviewStarted(String roomId, boolean started);
+
+    record JoinResult(String roomId, String hostId, List<String> peers) {
+    }
+
+    // newHostId is set only when the leaving user was the host and someone remains
+    record LeaveResult(String roomId, String newHostId, boolean roomEmpty) {
+    }
+}
@@ -0,0 +1,149 @@
+package com.demo.cogbee.config.signaling;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-session outbound queue. Callers only enqueue; a shared executor writes
+ * to the socket, so a slow client delays nobody but itself. A session whose
+ * current send exceeds the time limit, or whose backlog exceeds the buffer
+ * limit, is closed as not reliable, like ConcurrentWebSocketSessionDecorator.
+ */
+public class SessionOutbox {
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final long sendTimeLimitMs;
+    private final int bufferSizeLimit;
+
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    // latest pending message per coalescing key; the queue holds a CoalescedSlot placeholder
+    private final Map<String, AtomicReference<TextMessage>> coalesced = new ConcurrentHashMap<>();
+    private final AtomicInteger bufferedBytes = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long sendStartedAt;
+    private volatile boolean closed;
+
+    public SessionOutbox(WebSocketSession session, Executor executor, long sendTimeLimitMs, int bufferSizeLimit) {
+        this.session = session;
+        this.executor = executor;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    private record CoalescedSlot(String key) {
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public boolean isOpen() {
+        return !closed && session.isOpen();
+    }
+
+    public void send(TextMessage message) {
+        if (!isOpen()) return;
+
+        bufferedBytes.addAndGet(message.getPayloadLength());
+        queue.add(message);
+        afterEnqueue();
+    }
+
+    /**
+     * Like {@link #send} but a message still waiting under the same key is
+     * replaced rather than sent, e.g. interim captions from one speaker.
+     */
+    public void sendLatest(String key, TextMessage message) {
+        if (!isOpen()) return;
+
+        AtomicReference<TextMessage> slot = coalesced.computeIfAbsent(key, k -> new AtomicReference<>());
+        TextMessage previous = slot.getAndSet(message);
+        bufferedBytes.addAndGet(message.getPayloadLength() - (previous == null ? 0 : previous.getPayloadLength()));
+
+        if (previous == null) {
+            queue.add(new CoalescedSlot(key));
+        }
+        afterEnqueue();
+    }
+
+    public void close(CloseStatus status) {
+        closed = true;
+        queue.clear();
+        coalesced.clear();
+        try {
+            session.close(status);
+        } catch (Exception ignored) {
+        }
+    }
+
+    private void afterEnqueue() {
+        long started = sendStartedAt;
+        if (started != 0 && System.currentTimeMillis() - started > sendTimeLimitMs) {
+            System.out.println("Closing slow signaling session " + session.getId() + " (send time limit)");
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        if (bufferedBytes.get() > bufferSizeLimit) {
+            System.out.println("Closing slow signaling session " + session.getId() + " (buffer limit)");
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Object next;
+            while (!closed && (next = queue.poll()) != null) {
+                TextMessage message = next instanceof CoalescedSlot slot
+                        ? takeCoalesced(slot.key())
+                        : (TextMessage) next;
+                if (message == null) continue;
+
+                bufferedBytes.addAndGet(-message.getPayloadLength());
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    session.sendMessage(message);
+                } catch (Exception e) {
+                    System.out.println("Send failed for " + session.getId() + ": " + e.getMessage());
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // a message may have been queued after the last poll but before we cleared the flag
+        if (!closed && !queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private TextMessage takeCoalesced(String key) {
+        AtomicReference<TextMessage> slot = coalesced.get(key);
+        return slot == null ? null : slot.getAndSet(null);
+    }
+}
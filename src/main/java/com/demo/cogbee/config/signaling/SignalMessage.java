@@ -0,0 +1,49 @@
+package com.demo.cogbee.config.signaling;
+
+/**
+ * Decoded signaling message, one record per {@code type}. Messages that are
+ * relayed peer-to-peer keep their original JSON so they can be forwarded
+ * without being re-serialized.
+ */
+public sealed interface SignalMessage {
+
+    /** Messages addressed to another peer and forwarded as-is. */
+    sealed interface Routed extends SignalMessage {
+        String to();
+
+        String raw();
+    }
+
+    record Join(String roomId) implements SignalMessage {
+    }
+
+    // sdp is only set when the offer is a plain string (Kurento); browsers relaying an object leave it null
+    record Offer(String to, String sdp, String raw) implements Routed {
+    }
+
+    record Answer(String to, String raw) implements Routed {
+    }
+
+    record Candidate(String to, String publisherId,
+                     String candidate, String sdpMid, int sdpMLineIndex,
+                     String raw) implements Routed {
+    }
+
+    record Subscribe(String publisherId, String sdp, boolean audioOnly) implements SignalMessage {
+    }
+
+    record Unsubscribe(String publisherId) implements SignalMessage {
+    }
+
+    record MeetingEvent(String event, Object question, String targetUserId) implements SignalMessage {
+    }
+
+    record Subtitle(String text) implements SignalMessage {
+    }
+
+    record Leave() implements SignalMessage {
+    }
+
+    record Unknown(String type) implements SignalMessage {
+    }
+}
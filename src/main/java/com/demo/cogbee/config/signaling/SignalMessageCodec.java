@@ -0,0 +1,131 @@
+package com.demo.cogbee.config.signaling;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Single-pass streaming decoder for signaling messages. Only the fields the
+ * handlers read are materialized; everything else (SDP objects, unknown keys)
+ * is skipped without building a map.
+ */
+public final class SignalMessageCodec {
+
+    private static final JsonFactory FACTORY = new ObjectMapper().getFactory();
+
+    private SignalMessageCodec() {
+    }
+
+    public static SignalMessage decode(String payload) throws IOException {
+        String type = null, roomId = null, to = null, publisherId = null;
+        String sdp = null, event = null, text = null, targetUserId = null;
+        String candidate = null, sdpMid = null;
+        int sdpMLineIndex = 0;
+        boolean audioOnly = false;
+        Object question = null;
+
+        try (JsonParser p = FACTORY.createParser(payload)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Signaling message must be a JSON object");
+            }
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+
+                switch (field) {
+                    case "type" -> type = text(p, value);
+                    case "roomId" -> roomId = text(p, value);
+                    case "to" -> to = text(p, value);
+                    case "publisherId" -> publisherId = text(p, value);
+                    case "offer" -> sdp = text(p, value);
+                    case "event" -> event = text(p, value);
+                    case "text" -> text = text(p, value);
+                    case "targetUserId" -> targetUserId = text(p, value);
+                    case "audioOnly" -> audioOnly = value == JsonToken.VALUE_TRUE;
+                    case "question" -> question = value == JsonToken.VALUE_STRING ? p.getText() : p.readValueAsTree();
+                    case "candidate" -> {
+                        if (value == JsonToken.START_OBJECT) {
+                            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                                String inner = p.currentName();
+                                JsonToken v = p.nextToken();
+                                switch (inner) {
+                                    case "candidate" -> candidate = text(p, v);
+                                    case "sdpMid" -> sdpMid = text(p, v);
+                                    case "sdpMLineIndex" -> sdpMLineIndex = v == JsonToken.VALUE_NUMBER_INT ? p.getIntValue() : 0;
+                                    default -> p.skipChildren();
+                                }
+                            }
+                        } else {
+                            candidate = text(p, value);
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+
+            // withFrom splices at the last '}', which is only the root's if nothing follows it
+            if (p.nextToken() != null) {
+                throw new IOException("Unexpected content after the signaling message");
+            }
+        }
+
+        if (type == null) {
+            return new SignalMessage.Unknown(null);
+        }
+
+        return switch (type) {
+            case "join" -> new SignalMessage.Join(roomId);
+            case "offer" -> new SignalMessage.Offer(to, sdp, payload);
+            case "answer" -> new SignalMessage.Answer(to, payload);
+            case "candidate" -> new SignalMessage.Candidate(to, publisherId, candidate, sdpMid, sdpMLineIndex, payload);
+            case "subscribe" -> new SignalMessage.Subscribe(publisherId, sdp, audioOnly);
+            case "unsubscribe" -> new SignalMessage.Unsubscribe(publisherId);
+            case "meeting_event" -> new SignalMessage.MeetingEvent(event, question, targetUserId);
+            case "subtitle" -> new SignalMessage.Subtitle(text);
+            case "leave" -> new SignalMessage.Leave();
+            default -> new SignalMessage.Unknown(type);
+        };
+    }
+
+    /**
+     * Appends {@code "from":sender} to the original JSON object instead of
+     * parsing and re-serializing it. Appending last means it overrides any
+     * "from" the client put in the message itself. Expects a payload that
+     * {@link #decode} accepted, so the last '}' closes the root object.
+     */
+    public static String withFrom(String raw, String from) {
+        int end = raw.lastIndexOf('}');
+        if (end < 0) {
+            throw new IllegalArgumentException("Not a JSON object");
+        }
+
+        boolean empty = true;
+        for (int i = raw.indexOf('{') + 1; i < end; i++) {
+            if (!Character.isWhitespace(raw.charAt(i))) {
+                empty = false;
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(end + from.length() + 12);
+        sb.append(raw, 0, end);
+        if (!empty) sb.append(',');
+        sb.append("\"from\":\"");
+        sb.append(JsonStringEncoder.getInstance().quoteAsString(from));
+        sb.append("\"}");
+        return sb.toString();
+    }
+
+    private static String text(JsonParser p, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        p.skipChildren();
+        return null;
+    }
+}
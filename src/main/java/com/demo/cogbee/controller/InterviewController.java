@@ -1,17 +1,28 @@
 package com.demo.cogbee.controller;
 
 import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.model.request.AnswerEvaluationRequest;
 import com.demo.cogbee.model.request.FaceCheckRequest;
+import com.demo.cogbee.model.response.AnswerJobUpdate;
 import com.demo.cogbee.model.response.InterviewFeedbackResponse;
-import com.demo.cogbee.service.FaceVerificationService;
+import com.demo.cogbee.service.AnswerEvaluationService;
+import com.demo.cogbee.service.AnswerJobService;
 import com.demo.cogbee.service.InterviewService;
+import com.demo.cogbee.service.QuestionBank;
 import com.demo.cogbee.service.SpeechToTextService;
+import com.demo.cogbee.service.face.FaceVerifier;
+import com.demo.cogbee.service.face.FrameDecoder;
+import com.demo.cogbee.service.face.ProctoringScheduler;
 import com.demo.cogbee.service.live.AsrService;
+import com.demo.cogbee.service.media.AnswerRecorder;
+import com.demo.cogbee.service.resilience.ProviderUnavailableException;
 import com.demo.cogbee.service.live.EvaluationService;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,9 +30,10 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Base64;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/interview")
@@ -40,14 +52,30 @@ public class InterviewController {
     private SpeechToTextService speechToTextService;
 
     @Autowired
-    private FaceVerificationService faceVerificationService;
+    private FaceVerifier faceVerifier;
+
+    @Autowired
+    private FrameDecoder frameDecoder;
+
+    @Autowired
+    private AnswerEvaluationService answerEvaluationService;
 
     private String candidateProfilePath = "/Users/apple/IdeaProjects/Live-Cogbee/debug_videos/me.jpg";
 
-    private static final long VERIFY_INTERVAL = 20_000;
-    private final Map<String, Long> lastVerifyMap = new ConcurrentHashMap<>();
+    @Autowired
+    private ProctoringScheduler proctoringScheduler;
+
+    @Autowired
+    private AnswerRecorder answerRecorder;
 
-    private static final String SESSION_DIR = "/Users/apple/IdeaProjects/Live-Cogbee/debug_videos/";
+    @Autowired
+    private AnswerJobService answerJobService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private QuestionBank questionBank;
 
 
 	@PostMapping(value = "/analyze", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -62,6 +90,18 @@ public class InterviewController {
 		return ResponseEntity.ok(response);
 	}
 
+    // End-of-interview scoring: all answers in one call, results in request order
+    @PostMapping("/evaluate-batch")
+    public CompletableFuture<ResponseEntity<List<EvaluationResult>>> evaluateBatch(
+            @RequestBody List<AnswerEvaluationRequest> answers) {
+
+        if (answers == null || answers.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        return answerEvaluationService.evaluateBatchAsync(answers).thenApply(ResponseEntity::ok);
+    }
+
     @GetMapping("/test")
     public String test() {
         return "testing";
@@ -69,6 +109,7 @@ public class InterviewController {
 
 	@PostMapping("/upload")
 	public ResponseEntity<?> uploadAnswer(@RequestParam("sessionId") String sessionId,
+										  @RequestParam(value = "questionId", required = false) Long questionId,
 										  @RequestParam("file") MultipartFile file) throws IOException {
 
 		Path tmpDir = Files.createTempDirectory("answers");
@@ -77,10 +118,11 @@ public class InterviewController {
 
 		String transcript = asrService.transcribeFile(filePath.toFile());
 
-		EvaluationResult result = evaluationService.evaluateTranscript(transcript);
+		EvaluationResult result = evaluationService.evaluateTranscript(
+				questionId != null ? questionId : questionBank.current(sessionId).id(), transcript);
 
 		String topic = "/topic/feedback/" + sessionId;
-//		messagingTemplate.convertAndSend(topic, new FeedbackPayload(result.getCorrectness(), result.getFeedback()));
+		messagingTemplate.convertAndSend(topic, new FeedbackPayload(result.getCorrectness(), result.getFeedback()));
 
 		return ResponseEntity.ok().build();
 	}
@@ -92,37 +134,52 @@ public class InterviewController {
             InputStream body
     ) throws IOException {
 
-        File dir = new File(SESSION_DIR + sessionId);
-        dir.mkdirs();
-
-        File wavFile = new File(dir, "recording.wav");
-
-        try (OutputStream out = new FileOutputStream(wavFile, true)) {
-            body.transferTo(out); // APPEND
+        // RIFF headers are stripped, so the chunks add up to one well-formed WAV
+        try {
+            answerRecorder.append(sessionId, body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
 
         System.out.println("⬆ WAV chunk stored for: " + sessionId);
         return ResponseEntity.ok("Chunk OK");
     }
 
+    // Returns a job id at once; progress and the result arrive on /topic/answer-job/<sessionId>
     @PostMapping("/answer-finish")
-    public ResponseEntity<InterviewFeedbackResponse> finish(
+    public ResponseEntity<?> finish(
             @RequestParam String sessionId
     ) throws Exception {
 
-        File wavFile = new File(SESSION_DIR + sessionId + "/recording.wav");
+        AnswerRecorder.Recording recording = answerRecorder.finish(sessionId);
 
-        if (!wavFile.exists()) {
+        if (recording == null) {
             return ResponseEntity.badRequest()
                     .body(new InterviewFeedbackResponse(false, 0, 0, "No WAV found", "", ""));
         }
 
-        System.out.println("📁 Finalizing WAV session: " + sessionId);
+        System.out.println("📁 Finalizing WAV session: " + sessionId + " (" + recording.dataBytes() + " bytes of audio)");
+
+        // taken now: by the time the job runs, /question may have moved the session on to the next answer
+        String question = questionBank.current(sessionId).text();
+        ProctoringScheduler.Summary faces = proctoringScheduler.summary(sessionId);
 
-        InterviewFeedbackResponse response =
-                interviewService.analyzeCandidate(wavFile);
+        try {
+            String jobId = answerJobService.submit(sessionId, recording.file(), question, faces);
+            return ResponseEntity.accepted().body(Map.of(
+                    "jobId", jobId,
+                    "topic", AnswerJobService.TOPIC + sessionId));
+        } catch (RejectedExecutionException e) {
+            // kept, so the retry scores this same answer
+            answerRecorder.giveBack(sessionId, recording);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many answers being scored, retry shortly");
+        }
+    }
 
-        return ResponseEntity.ok(response);
+    @GetMapping("/answer-status/{jobId}")
+    public ResponseEntity<AnswerJobUpdate> answerStatus(@PathVariable String jobId) {
+        AnswerJobUpdate status = answerJobService.status(jobId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
     }
 
 
@@ -137,36 +194,66 @@ public class InterviewController {
                 return ResponseEntity.badRequest().body("Invalid request");
             }
 
-            long now = System.currentTimeMillis();
-            long lastTime = lastVerifyMap.getOrDefault(sessionId, 0L);
-
-            if (now - lastTime < VERIFY_INTERVAL) {
-                return ResponseEntity.ok("{\"skipped\": true, \"reason\": \"rate_limited\"}");
+            ProctoringScheduler.Decision decision = proctoringScheduler.tryAcquire(sessionId);
+            if (!decision.verify()) {
+                String reason = decision.outcome() == ProctoringScheduler.Outcome.NOT_DUE ? "rate_limited" : "budget_exhausted";
+                return ResponseEntity.ok("{\"skipped\": true, \"reason\": \"" + reason
+                        + "\", \"retryAfterMs\": " + decision.retryAfterMs() + "}");
             }
 
-            lastVerifyMap.put(sessionId, now);
-
-            String pureBase64 = frameBase64.split(",")[1];
-            byte[] decodedBytes = Base64.getDecoder().decode(pureBase64);
-
-            File tempDir = new File("sessions/" + sessionId);
-            tempDir.mkdirs();
-            File frameFile = new File(tempDir, "frame.jpg");
+            try {
+                // decoded into a pooled buffer and verified from memory; nothing is written to disk
+                FaceVerifier.FaceMatch match = frameDecoder.decode(frameBase64,
+                        frame -> faceVerifier.verify(candidateProfilePath, frame));
+                proctoringScheduler.record(sessionId, match);
 
-            try (FileOutputStream fos = new FileOutputStream(frameFile)) {
-                fos.write(decodedBytes);
+                return ResponseEntity.ok("{\"samePerson\": " + match.samePerson() + ", \"score\": " + match.score() + "}");
+            } catch (RuntimeException e) {
+                proctoringScheduler.recordFailure(sessionId);
+                throw e;
             }
 
-            boolean isSamePerson = faceVerificationService.verify(candidateProfilePath, frameFile.getAbsolutePath());
-
-            return ResponseEntity.ok("{\"samePerson\": " + isSamePerson + "}");
-
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Invalid frame: " + e.getMessage());
+        } catch (ProviderUnavailableException e) {
+            // the check is periodic, so a skipped frame is better than an error while Face++ is down
+            return ResponseEntity.ok("{\"skipped\": true, \"reason\": \"face_service_unavailable\"}");
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("Error: " + e.getMessage());
         }
     }
 
+    // The question the candidate answers next; live scores and answer jobs use its rubric
+    @PostMapping("/question")
+    public ResponseEntity<?> askQuestion(@RequestParam String sessionId, @RequestParam Long questionId) {
+        QuestionBank.Profile profile = questionBank.ask(sessionId, questionId);
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        proctoringScheduler.startAnswer(sessionId);
+        return ResponseEntity.ok(Map.of("questionId", profile.id(), "text", profile.text()));
+    }
+
+    // Picks up question bank edits without a restart
+    @PostMapping("/questions/reload")
+    public ResponseEntity<?> reloadQuestions() {
+        try {
+            return ResponseEntity.ok(Map.of("compiled", questionBank.reload()));
+        } catch (IllegalStateException e) {
+            // the previous questions stay in use
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Error: " + e.getMessage());
+        }
+    }
+
+    // Interview over: stop proctoring the session
+    @PostMapping("/end")
+    public ResponseEntity<String> endInterview(@RequestParam String sessionId) {
+        proctoringScheduler.endSession(sessionId);
+        questionBank.endSession(sessionId);
+        return ResponseEntity.ok("Ended");
+    }
+
     public static class FeedbackPayload {
 		private double score;
 		private String feedback;
@@ -0,0 +1,31 @@
+package com.demo.cogbee.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "cached_evaluation")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedEvaluation {
+
+	// SHA-256 of the question plus the normalized answer
+	@Id
+	@Column(length = 64)
+	private String fingerprint;
+
+	private double correctness;
+
+	@Column(columnDefinition = "TEXT")
+	private String feedback;
+
+	@Column(columnDefinition = "TEXT")
+	private String improvement;
+
+	private Instant createdAt;
+}
@@ -0,0 +1,31 @@
+package com.demo.cogbee.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "interview_question")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterviewQuestion {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(columnDefinition = "TEXT", nullable = false)
+	private String text;
+
+	private boolean active = true;
+
+	// eager: the bank compiles a question's matcher outside any transaction
+	@ElementCollection(fetch = FetchType.EAGER)
+	@CollectionTable(name = "question_keyword", joinColumns = @JoinColumn(name = "question_id"))
+	private List<QuestionKeyword> keywords = new ArrayList<>();
+}
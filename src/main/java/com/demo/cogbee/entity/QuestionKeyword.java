@@ -0,0 +1,23 @@
+package com.demo.cogbee.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionKeyword {
+
+	@Column(nullable = false)
+	private String keyword;
+
+	// comma-separated phrases that count as the keyword, e.g. "polymorphic, overriding"
+	@Column(columnDefinition = "TEXT")
+	private String synonyms;
+
+	private double weight = 1.0;
+}
@@ -0,0 +1,13 @@
+package com.demo.cogbee.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerEvaluationRequest {
+	private String question;
+	private String answer;
+}
@@ -0,0 +1,23 @@
+package com.demo.cogbee.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerJobUpdate {
+
+	public enum Stage { QUEUED, TRANSCRIBING, EVALUATING, FACE_SCORE, DONE, FAILED }
+
+	private String jobId;
+	private String sessionId;
+	private Stage stage;
+	private InterviewFeedbackResponse result;
+	private String error;
+
+	public boolean isFinished() {
+		return stage == Stage.DONE || stage == Stage.FAILED;
+	}
+}
@@ -3,6 +3,8 @@ package com.demo.cogbee.model.response;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 public class InterviewFeedbackResponse {
@@ -12,4 +14,11 @@ public class InterviewFeedbackResponse {
 	private String feedback;
 	private String improvement;
 	private String transcript;
+	// parts that timed out or failed and hold placeholder values ("transcript", "evaluation", "face")
+	private List<String> degraded;
+
+	public InterviewFeedbackResponse(boolean isSamePersonThroughout, double averageFaceMatchScore, double correctness,
+									 String feedback, String improvement, String transcript) {
+		this(isSamePersonThroughout, averageFaceMatchScore, correctness, feedback, improvement, transcript, List.of());
+	}
 }
\ No newline at end of file
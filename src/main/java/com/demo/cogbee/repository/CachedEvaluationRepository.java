@@ -0,0 +1,7 @@
+package com.demo.cogbee.repository;
+
+import com.demo.cogbee.entity.CachedEvaluation;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CachedEvaluationRepository extends JpaRepository<CachedEvaluation, String> {
+}
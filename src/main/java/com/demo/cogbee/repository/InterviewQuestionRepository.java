@@ -0,0 +1,11 @@
+package com.demo.cogbee.repository;
+
+import com.demo.cogbee.entity.InterviewQuestion;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface InterviewQuestionRepository extends JpaRepository<InterviewQuestion, Long> {
+
+	List<InterviewQuestion> findByActiveTrue();
+}
@@ -0,0 +1,126 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.model.response.AnswerJobUpdate;
+import com.demo.cogbee.model.response.AnswerJobUpdate.Stage;
+import com.demo.cogbee.model.response.InterviewFeedbackResponse;
+import com.demo.cogbee.service.face.ProctoringScheduler;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs answer scoring off the request thread. A finished answer becomes a job
+ * on a bounded worker pool; every stage change and the final result are
+ * pushed to /topic/answer-job/&lt;sessionId&gt; and kept for polling until
+ * they expire. When the pool and its queue are full, submission fails with
+ * {@link RejectedExecutionException} instead of piling up more work, and the
+ * job's QUEUED update is followed by FAILED.
+ */
+@Service
+public class AnswerJobService {
+
+	public static final String TOPIC = "/topic/answer-job/";
+
+	private record Tracked(AnswerJobUpdate update, long finishedAt) {
+	}
+
+	private final InterviewService interviewService;
+	private final SimpMessagingTemplate messagingTemplate;
+	private final ThreadPoolExecutor executor;
+	private final long retainMs;
+	private final Map<String, Tracked> jobs = new ConcurrentHashMap<>();
+
+	public AnswerJobService(InterviewService interviewService,
+							SimpMessagingTemplate messagingTemplate,
+							@Value("${cogbee.answer-jobs.workers:8}") int workers,
+							@Value("${cogbee.answer-jobs.max-queued:100}") int maxQueued,
+							@Value("${cogbee.answer-jobs.retain-ms:600000}") long retainMs) {
+		this.interviewService = interviewService;
+		this.messagingTemplate = messagingTemplate;
+		this.retainMs = retainMs;
+
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, maxQueued)), r -> {
+			Thread t = new Thread(r, "answer-job-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Queues scoring of a finished recording and returns the job id at once.
+	 * The job owns the file from then on and deletes it when it is done.
+	 *
+	 * @param question the question that was answered
+	 * @param faces    the answer's frame checks, null when none completed
+	 */
+	public String submit(String sessionId, File recording, String question, ProctoringScheduler.Summary faces) {
+		evictExpired();
+
+		String jobId = UUID.randomUUID().toString();
+		// published first so it never arrives after the worker's own stage updates
+		publish(new AnswerJobUpdate(jobId, sessionId, Stage.QUEUED, null, null));
+
+		try {
+			executor.execute(() -> run(jobId, sessionId, recording, question, faces));
+		} catch (RejectedExecutionException e) {
+			// the client already heard QUEUED for this job, so it is told the job will not run
+			publish(new AnswerJobUpdate(jobId, sessionId, Stage.FAILED, null, "Too many answers being scored"));
+			throw e;
+		}
+		return jobId;
+	}
+
+	// null when the job is unknown or its result has expired
+	public AnswerJobUpdate status(String jobId) {
+		Tracked tracked = jobs.get(jobId);
+		return tracked == null ? null : tracked.update();
+	}
+
+	private void run(String jobId, String sessionId, File recording, String question, ProctoringScheduler.Summary faces) {
+		try {
+			InterviewFeedbackResponse result = interviewService.analyzeCandidate(question, faces, recording,
+					stage -> publish(new AnswerJobUpdate(jobId, sessionId, stage, null, null)));
+			publish(new AnswerJobUpdate(jobId, sessionId, Stage.DONE, result, null));
+		} catch (Exception e) {
+			System.out.println("Answer job " + jobId + " failed: " + e.getMessage());
+			publish(new AnswerJobUpdate(jobId, sessionId, Stage.FAILED, null, e.getMessage()));
+		} finally {
+			try {
+				Files.deleteIfExists(recording.toPath());
+			} catch (IOException e) {
+				System.out.println("Could not delete " + recording + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void publish(AnswerJobUpdate update) {
+		jobs.put(update.getJobId(), new Tracked(update, update.isFinished() ? System.currentTimeMillis() : 0));
+		try {
+			messagingTemplate.convertAndSend(TOPIC + update.getSessionId(), update);
+		} catch (Exception e) {
+			// the client can still poll the status
+			System.out.println("Could not push answer job update: " + e.getMessage());
+		}
+	}
+
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		jobs.values().removeIf(t -> t.finishedAt() > 0 && now - t.finishedAt() > retainMs);
+	}
+}
@@ -0,0 +1,250 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.entity.CachedEvaluation;
+import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.repository.CachedEvaluationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches evaluations by question plus a normalized answer fingerprint, so
+ * answers that differ only in case, spacing, fillers or the punctuation that
+ * ends a word share one LLM call. Lookups go memory (LRU, size and TTL bounded), then the optional
+ * database tier, then the loader. Concurrent lookups for the same key while
+ * the loader is running share its future. Failed loads are not cached.
+ */
+@Component
+public class EvaluationCache {
+
+	// sentence punctuation closing a word; symbols inside or between words (c++, a < b, i--) are kept
+	private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("(?<=\\S)[.,;:?!]+(?!\\S)");
+	private static final Pattern FILLERS = Pattern.compile("(?<!\\S)(?:um+|uh+|erm+|er|hmm+|ah+)(?!\\S)");
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	private record Entry(EvaluationResult result, long expiresAt) {
+	}
+
+	record Lookup(CompletableFuture<EvaluationResult> result, boolean owner) {
+	}
+
+	public record Stats(long hits, long persistentHits, long misses, long deduplicated, long evictions, int size) {
+	}
+
+	private final int maxEntries;
+	private final long ttlMs;
+	private final Duration persistentTtl;
+	private final CachedEvaluationRepository repository;
+	private final ExecutorService persistenceExecutor;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CompletableFuture<EvaluationResult>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder persistentHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder deduplicated = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	@Autowired
+	public EvaluationCache(ObjectProvider<CachedEvaluationRepository> repository,
+						   @Value("${cogbee.evaluation-cache.max-entries:10000}") int maxEntries,
+						   @Value("${cogbee.evaluation-cache.ttl-ms:3600000}") long ttlMs,
+						   @Value("${cogbee.evaluation-cache.persistent:false}") boolean persistent,
+						   @Value("${cogbee.evaluation-cache.persistent-ttl-hours:720}") long persistentTtlHours) {
+		this(persistent ? repository.getIfAvailable() : null, maxEntries, ttlMs, Duration.ofHours(persistentTtlHours));
+	}
+
+	EvaluationCache(CachedEvaluationRepository repository, int maxEntries, long ttlMs, Duration persistentTtl) {
+		this.repository = repository;
+		this.maxEntries = maxEntries;
+		this.ttlMs = ttlMs;
+		this.persistentTtl = persistentTtl;
+		// JPA calls block, so they stay off the HTTP client's threads
+		this.persistenceExecutor = repository == null ? null : Executors.newFixedThreadPool(2, r -> {
+			Thread t = new Thread(r, "evaluation-cache-db");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (persistenceExecutor != null) {
+			persistenceExecutor.shutdown();
+		}
+	}
+
+	public CompletableFuture<EvaluationResult> getOrLoad(String question, String answer,
+														 Supplier<CompletableFuture<EvaluationResult>> loader) {
+		return lookup(question, answer, loader).result();
+	}
+
+	/**
+	 * Like {@link #getOrLoad}, but also tells whether this call started the
+	 * load. Only an owning lookup can have its loader run; one that hit memory
+	 * or joined a load already in flight depends on whoever started it.
+	 */
+	Lookup lookup(String question, String answer, Supplier<CompletableFuture<EvaluationResult>> loader) {
+		String key = fingerprint(question, answer);
+
+		EvaluationResult cached = getFresh(key);
+		if (cached != null) {
+			hits.increment();
+			return new Lookup(CompletableFuture.completedFuture(cached), false);
+		}
+
+		CompletableFuture<EvaluationResult> created = new CompletableFuture<>();
+		CompletableFuture<EvaluationResult> existing = inFlight.putIfAbsent(key, created);
+		if (existing != null) {
+			deduplicated.increment();
+			return new Lookup(existing, false);
+		}
+
+		loadThroughTiers(key, loader).whenComplete((result, error) -> {
+			inFlight.remove(key, created);
+			if (error != null) {
+				created.completeExceptionally(error);
+			} else {
+				created.complete(result);
+			}
+		});
+
+		return new Lookup(created, true);
+	}
+
+	public Stats stats() {
+		lock.lock();
+		try {
+			return new Stats(hits.sum(), persistentHits.sum(), misses.sum(), deduplicated.sum(),
+					evictions.sum(), entries.size());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private CompletableFuture<EvaluationResult> loadThroughTiers(String key,
+																 Supplier<CompletableFuture<EvaluationResult>> loader) {
+		CompletableFuture<EvaluationResult> stored = repository == null
+				? CompletableFuture.completedFuture(null)
+				: CompletableFuture.supplyAsync(() -> readPersistent(key), persistenceExecutor);
+
+		return stored.thenCompose(hit -> {
+			if (hit != null) {
+				persistentHits.increment();
+				put(key, hit);
+				return CompletableFuture.completedFuture(hit);
+			}
+
+			misses.increment();
+			CompletableFuture<EvaluationResult> loaded;
+			try {
+				loaded = loader.get();
+			} catch (Throwable t) {
+				loaded = CompletableFuture.failedFuture(t);
+			}
+
+			return loaded.thenApply(result -> {
+				put(key, result);
+				if (repository != null) {
+					persistenceExecutor.execute(() -> writePersistent(key, result));
+				}
+				return result;
+			});
+		});
+	}
+
+	private EvaluationResult getFresh(String key) {
+		lock.lock();
+		try {
+			Entry entry = entries.get(key);
+			if (entry == null) return null;
+
+			if (entry.expiresAt() <= System.currentTimeMillis()) {
+				entries.remove(key);
+				evictions.increment();
+				return null;
+			}
+			return entry.result();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void put(String key, EvaluationResult result) {
+		lock.lock();
+		try {
+			entries.put(key, new Entry(result, System.currentTimeMillis() + ttlMs));
+
+			var eldest = entries.entrySet().iterator();
+			while (entries.size() > maxEntries && eldest.hasNext()) {
+				eldest.next();
+				eldest.remove();
+				evictions.increment();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private EvaluationResult readPersistent(String key) {
+		try {
+			return repository.findById(key)
+					.filter(row -> row.getCreatedAt() != null
+							&& row.getCreatedAt().plus(persistentTtl).isAfter(Instant.now()))
+					.map(row -> new EvaluationResult(row.getCorrectness(), row.getFeedback(), row.getImprovement()))
+					.orElse(null);
+		} catch (Exception e) {
+			System.out.println("Evaluation cache lookup failed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void writePersistent(String key, EvaluationResult result) {
+		try {
+			repository.save(new CachedEvaluation(key, result.getCorrectness(), result.getFeedback(),
+					result.getImprovement(), Instant.now()));
+		} catch (Exception e) {
+			System.out.println("Evaluation cache write failed: " + e.getMessage());
+		}
+	}
+
+	static String fingerprint(String question, String answer) {
+		String normalized = normalize(question) + "\n" + normalizeAnswer(answer);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String normalizeAnswer(String answer) {
+		String text = normalize(answer);
+		text = FILLERS.matcher(text).replaceAll(" ");
+		return SPACES.matcher(text).replaceAll(" ").trim();
+	}
+
+	private static String normalize(String text) {
+		if (text == null) return "";
+		String lower = text.toLowerCase(Locale.ROOT);
+		return SPACES.matcher(TRAILING_PUNCTUATION.matcher(lower).replaceAll("")).replaceAll(" ").trim();
+	}
+}
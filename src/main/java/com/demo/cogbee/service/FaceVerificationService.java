@@ -1,62 +1,132 @@
 package com.demo.cogbee.service;
 
+import com.demo.cogbee.service.face.FaceVerifier;
+import com.demo.cogbee.service.resilience.ResilientExecutor;
 import org.json.JSONObject;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
-public class FaceVerificationService {
+public class FaceVerificationService implements FaceVerifier {
 
 
-    private static final String API_URL = "https://api-us.faceplusplus.com/facepp/v3/compare";
+    private static final String COMPARE_PATH = "/facepp/v3/compare";
 
     private static final String API_KEY = "hLM38cSz9H4GKi_nUrc_pVcWfk1Rkxqr";
     private static final String API_SECRET = "S_D3jfrUOxp9-tyXuYWM-Ou-smFUxzZI";
 
-    private final RestTemplate restTemplate = new RestTemplate();
-
-    public boolean verify(String imagePath1, String imagePath2) {
-
-        File file1 = new File(imagePath1);
-        File file2 = new File(imagePath2);
+    private final HttpClient httpClient;
+    private final ResilientExecutor faceApi;
+    private final URI compareUri;
+    private final Duration requestTimeout;
+
+    public FaceVerificationService(HttpClient httpClient,
+                                   @Qualifier("faceResilience") ResilientExecutor faceApi,
+                                   @Value("${cogbee.faceplusplus.base-url:https://api-us.faceplusplus.com}") String baseUrl,
+                                   @Value("${cogbee.faceplusplus.request-timeout-ms:8000}") long requestTimeoutMs) {
+        this.httpClient = httpClient;
+        this.faceApi = faceApi;
+        this.compareUri = URI.create(baseUrl + COMPARE_PATH);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    }
 
-        if (!file1.exists() || !file2.exists()) {
-            throw new RuntimeException("Image file not found!");
+    // Blocks for at most the provider timeout; fails fast with ProviderUnavailableException while Face++ is down
+    @Override
+    public FaceMatch verify(String referenceImagePath, ByteBuffer frameImage) {
+        // the caller's buffer may be reused once we return, even if the upload is still running
+        byte[] frame = new byte[frameImage.remaining()];
+        frameImage.duplicate().get(frame);
+
+        try {
+            return verifyAsync(referenceImagePath, frame).join();
+        } catch (CompletionException e) {
+            Throwable cause = ResilientExecutor.unwrap(e);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Face verification failed: " + cause.getMessage(), cause);
         }
+    }
 
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("api_key", API_KEY);
-        body.add("api_secret", API_SECRET);
-        body.add("image_file1", new FileSystemResource(file1));
-        body.add("image_file2", new FileSystemResource(file2));
+    public CompletableFuture<FaceMatch> verifyAsync(String referenceImagePath, byte[] frameImage) {
+        File reference = new File(referenceImagePath);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        if (!reference.exists()) {
+            return CompletableFuture.failedFuture(new RuntimeException("Image file not found!"));
+        }
 
-        HttpEntity<MultiValueMap<String, Object>> requestEntity =
-                new HttpEntity<>(body, headers);
+        HttpRequest request;
+        try {
+            request = buildCompareRequest(reference, frameImage);
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Image file not found!", e));
+        }
 
-        ResponseEntity<String> response =
-                restTemplate.exchange(API_URL, HttpMethod.POST, requestEntity, String.class);
+        return faceApi.execute(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    // rate limiting and server errors count against the circuit
+                    if (response.statusCode() == 429 || response.statusCode() >= 500) {
+                        throw new IllegalStateException("Face++ returned HTTP " + response.statusCode());
+                    }
+                    return response.body();
+                }))
+                .thenApply(this::toMatch);
+    }
 
-        String responseBody = response.getBody();
+    private FaceMatch toMatch(String responseBody) {
         System.out.println("Face++ Response: " + responseBody);
 
         JSONObject json = new JSONObject(responseBody);
         if (!json.has("confidence")) {
-            return false;
+            return new FaceMatch(false, 0);
         }
 
         double confidence = json.getDouble("confidence");
         System.out.println("Confidence = " + confidence);
 
-        return confidence > 85;
+        return new FaceMatch(confidence > 85, confidence / 100.0);
+    }
+
+    private HttpRequest buildCompareRequest(File reference, byte[] frame) throws FileNotFoundException {
+        String boundary = "----" + System.nanoTime();
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.concat(
+                field(boundary, "api_key", API_KEY),
+                field(boundary, "api_secret", API_SECRET),
+                fileHead(boundary, "image_file1", reference.getName()),
+                HttpRequest.BodyPublishers.ofFile(reference.toPath()),
+                HttpRequest.BodyPublishers.ofString("\r\n", StandardCharsets.UTF_8),
+                fileHead(boundary, "image_file2", "frame.jpg"),
+                HttpRequest.BodyPublishers.ofByteArray(frame),
+                HttpRequest.BodyPublishers.ofString("\r\n--" + boundary + "--\r\n", StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder(compareUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(body)
+                .build();
     }
-}
 
+    private static HttpRequest.BodyPublisher field(String boundary, String name, String value) {
+        return HttpRequest.BodyPublishers.ofString("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n", StandardCharsets.UTF_8);
+    }
+
+    private static HttpRequest.BodyPublisher fileHead(String boundary, String name, String filename) {
+        return HttpRequest.BodyPublishers.ofString("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n", StandardCharsets.UTF_8);
+    }
+}
@@ -1,75 +1,217 @@
 package com.demo.cogbee.service;
 
 import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.model.response.AnswerJobUpdate.Stage;
 import com.demo.cogbee.model.response.InterviewFeedbackResponse;
+import com.demo.cogbee.service.face.ProctoringScheduler;
+import com.demo.cogbee.service.face.VideoIdentityVerifier;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * Scores an answer as a small pipeline: identity and transcription start
+ * together, evaluation starts as soon as the transcript is ready, and the
+ * response is assembled when both sides are done. Each stage has its own
+ * timeout; a stage that times out or fails leaves a placeholder in its part
+ * of the response and is listed in {@code degraded}, the rest is unaffected.
+ * The identity check fails closed: without a face result the candidate is
+ * reported as not verified.
+ */
 @Service
 public class InterviewService {
 
+	private static final EvaluationResult UNAVAILABLE =
+			new EvaluationResult(0, "Evaluation unavailable, please retry", "");
+
+	private record Identity(boolean samePerson, double score) {
+	}
+
 	private final FaceVerificationService faceVerificationService;
 	private final SpeechToTextService speechToTextService;
 	private final AnswerEvaluationService answerEvaluationService;
+	private final VideoIdentityVerifier videoIdentityVerifier;
+	private final ExecutorService pipelineExecutor;
+	private final long transcribeTimeoutMs;
+	private final long evaluateTimeoutMs;
+	private final long faceTimeoutMs;
 
 	public InterviewService(FaceVerificationService faceVerificationService,
 							SpeechToTextService speechToTextService,
-							AnswerEvaluationService answerEvaluationService) {
+							AnswerEvaluationService answerEvaluationService,
+							VideoIdentityVerifier videoIdentityVerifier,
+							@Value("${cogbee.pipeline.workers:8}") int workers,
+							@Value("${cogbee.pipeline.transcribe-timeout-ms:300000}") long transcribeTimeoutMs,
+							@Value("${cogbee.pipeline.evaluate-timeout-ms:45000}") long evaluateTimeoutMs,
+							@Value("${cogbee.pipeline.face-timeout-ms:120000}") long faceTimeoutMs) {
 		this.faceVerificationService = faceVerificationService;
 		this.speechToTextService = speechToTextService;
 		this.answerEvaluationService = answerEvaluationService;
+		this.videoIdentityVerifier = videoIdentityVerifier;
+		this.transcribeTimeoutMs = transcribeTimeoutMs;
+		this.evaluateTimeoutMs = evaluateTimeoutMs;
+		this.faceTimeoutMs = faceTimeoutMs;
+
+		// video identity checks block while they read frames, so they get their own threads
+		AtomicInteger counter = new AtomicInteger();
+		this.pipelineExecutor = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r, "interview-pipeline-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pipelineExecutor.shutdownNow();
 	}
 
 	public InterviewFeedbackResponse analyzeCandidate(String question,
 													  MultipartFile photo,
 													  MultipartFile video) throws IOException {
-		// 1️⃣ Verify same candidate throughout
-//		double faceMatchScore = faceVerificationService.verifyThroughoutVideo(photo, video);
-//		boolean isSamePerson = faceMatchScore > 0.8;
-
-		// 2️⃣ Convert speech to text
-//		String transcript = speechToTextService.transcribeChunk(video.getBytes());
-
-		// 3️⃣ Evaluate correctness using AI model
-		EvaluationResult evaluation = answerEvaluationService.evaluateAnswer(question, null);
-
-		// 4️⃣ Combine everything
-		return new InterviewFeedbackResponse(
-				true,
-				80,
-				evaluation.getCorrectness(),
-				evaluation.getFeedback(),
-				evaluation.getImprovement(),
-				null
-		);
+		Path dir = Files.createTempDirectory("identity");
+		try {
+			Path photoFile = dir.resolve("reference" + extension(photo.getOriginalFilename(), ".jpg"));
+			Path videoFile = dir.resolve("answer" + extension(video.getOriginalFilename(), ".webm"));
+			photo.transferTo(photoFile);
+			video.transferTo(videoFile);
+
+			// 1️⃣ Verify same candidate throughout and 2️⃣ convert speech to text, side by side
+			CompletableFuture<Identity> identity = interruptible(() -> {
+				VideoIdentityVerifier.Result result = videoIdentityVerifier.verify(photoFile.toString(), videoFile.toFile());
+				return new Identity(result.samePersonThroughout(), result.averageScore() * 100);
+			}, faceTimeoutMs);
+			CompletableFuture<String> transcription = speechToTextService.extractTextAsync(videoFile.toFile());
+
+			// the files go once both readers are done, even if a stage timed out before that
+			CompletableFuture.allOf(identity, transcription).whenComplete((v, e) -> deleteQuietly(dir));
+
+			// 3️⃣ Evaluate as soon as the transcript is in, 4️⃣ combine everything
+			return pipeline(question, transcription, identity, stage -> { }).join();
+		} catch (RuntimeException | IOException e) {
+			deleteQuietly(dir);
+			throw e;
+		}
 	}
 
     public InterviewFeedbackResponse analyzeCandidate(
           File video
     ) throws IOException {
+        return analyzeCandidate(QuestionBank.DEFAULT.text(), null, video, stage -> { });
+    }
+
+    /**
+     * Scores a recorded answer, reporting each stage to {@code progress}
+     * when it starts. The face score is the tally of the session's live
+     * frame checks during this answer, since the recording itself is audio
+     * only; the caller takes it, and the question, when the answer finishes.
+     *
+     * @param faces null when no frame check completed during the answer
+     */
+    public InterviewFeedbackResponse analyzeCandidate(String question, ProctoringScheduler.Summary faces,
+                                                      File video, Consumer<Stage> progress) {
+        // 1️⃣ Convert candidate audio → text (transcode only when the WAV isn't 16 kHz mono already)
+        progress.accept(Stage.TRANSCRIBING);
+        CompletableFuture<String> transcription = speechToTextService.extractTextAsync(video);
 
-        // 1️⃣ Optional: Verify candidate identity
-        boolean isSamePerson = true;
-        // double score = faceVerificationService.verifyThroughoutVideo(photo, video);
-        // isSamePerson = score > 0.80;
-
-        // 2️⃣ Convert candidate video → text
-        String transcript = speechToTextService.extractText(video);
-
-        // 3️⃣ Evaluate correctness using AI
-        EvaluationResult evaluation = answerEvaluationService.evaluateAnswer("what is Inheritance in java?", transcript);
-
-        return new InterviewFeedbackResponse(
-                isSamePerson,
-                80,
-                evaluation.getCorrectness(),
-                evaluation.getFeedback(),
-                evaluation.getImprovement(),
-                transcript
-        );
+        // 2️⃣ Identity from the proctoring checks made while the candidate answered
+        progress.accept(Stage.FACE_SCORE);
+        // no checks during this answer: the candidate was not verified
+        CompletableFuture<Identity> identity = faces == null
+                ? CompletableFuture.failedFuture(new IllegalStateException("no face checks recorded for this answer"))
+                : CompletableFuture.completedFuture(new Identity(faces.samePerson(), faces.averageScore() * 100));
+
+        // 3️⃣ Evaluate correctness using AI once the transcript is ready, against the question the session was asked
+        return pipeline(question, transcription, identity, progress).join();
     }
 
-}
\ No newline at end of file
+	private CompletableFuture<InterviewFeedbackResponse> pipeline(String question,
+																  CompletableFuture<String> transcription,
+																  CompletableFuture<Identity> identity,
+																  Consumer<Stage> progress) {
+		List<String> degraded = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<String> transcript = within(transcription, transcribeTimeoutMs)
+				.exceptionally(e -> degrade(degraded, "transcript", e, null));
+
+		CompletableFuture<EvaluationResult> evaluation = transcript.thenCompose(text -> {
+			if (text == null) {
+				degraded.add("evaluation");
+				return CompletableFuture.completedFuture(UNAVAILABLE);
+			}
+			progress.accept(Stage.EVALUATING);
+			return within(answerEvaluationService.evaluateAnswerAsync(question, text), evaluateTimeoutMs)
+					.exceptionally(e -> degrade(degraded, "evaluation", e, UNAVAILABLE));
+		});
+
+		CompletableFuture<Identity> face = within(identity, faceTimeoutMs)
+				.exceptionally(e -> degrade(degraded, "face", e, null));
+
+		// no face result means the identity was not verified, never that it passed
+		return evaluation.thenCombine(face, (result, id) -> new InterviewFeedbackResponse(
+				id != null && id.samePerson(),
+				id == null ? 0 : id.score(),
+				result.getCorrectness(),
+				result.getFeedback(),
+				result.getImprovement(),
+				transcript.join(),
+				List.copyOf(degraded)));
+	}
+
+	/**
+	 * Runs blocking work on the pipeline's threads and interrupts it once it
+	 * runs past the timeout (queue wait included), so a stuck stage gives back
+	 * its thread and whatever ffmpeg or vendor slots it holds.
+	 */
+	private <T> CompletableFuture<T> interruptible(Callable<T> work, long timeoutMs) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Future<?> task = pipelineExecutor.submit(() -> {
+			try {
+				result.complete(work.call());
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+		result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((v, e) -> {
+			if (e != null) task.cancel(true);
+		});
+		return result;
+	}
+
+	// Times out a copy, so the source (possibly shared through a cache) is left alone
+	private static <T> CompletableFuture<T> within(CompletableFuture<T> stage, long timeoutMs) {
+		return stage.copy().orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+	}
+
+	private static <T> T degrade(List<String> degraded, String part, Throwable error, T placeholder) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		String reason = cause instanceof TimeoutException ? "timed out" : cause.getMessage();
+		System.out.println("Answer " + part + " unavailable: " + reason);
+		degraded.add(part);
+		return placeholder;
+	}
+
+	private static void deleteQuietly(Path dir) {
+		try (var files = Files.list(dir)) {
+			files.forEach(f -> f.toFile().delete());
+			Files.deleteIfExists(dir);
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static String extension(String filename, String fallback) {
+		if (filename == null) return fallback;
+		int dot = filename.lastIndexOf('.');
+		return dot < 0 ? fallback : filename.substring(dot);
+	}
+}
@@ -0,0 +1,217 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.entity.InterviewQuestion;
+import com.demo.cogbee.entity.QuestionKeyword;
+import com.demo.cogbee.repository.InterviewQuestionRepository;
+import com.demo.cogbee.service.live.ScoringRubric;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Interview questions and the rubric each answer is scored against, loaded
+ * from the interview_question table. A question's keywords and synonyms are
+ * compiled into a matcher once and kept in an LRU cache, so scoring a hot
+ * question does no setup at all. {@link #reload()} drops every compiled
+ * matcher and recompiles the active questions, picking up edits to the bank
+ * without a restart. When a question is unknown or the database is not
+ * reachable, the built-in default question is used.
+ */
+@Service
+public class QuestionBank {
+
+	private static final List<String> FILLERS = List.of("um", "uh", "like");
+
+	public static final Profile DEFAULT = new Profile(null, "what is Inheritance in java?", new ScoringRubric(List.of(
+			ScoringRubric.Keyword.of("design", "designs", "designed", "designing"),
+			ScoringRubric.Keyword.of("architecture", "architectures", "architectural"),
+			ScoringRubric.Keyword.of("scalability", "scalable", "scale", "scales", "scaling"),
+			ScoringRubric.Keyword.of("database", "databases"),
+			ScoringRubric.Keyword.of("latency", "latencies")), FILLERS));
+
+	/** @param id null for the built-in default */
+	public record Profile(Long id, String text, ScoringRubric rubric) {
+	}
+
+	public record Stats(long hits, long misses, long evictions, int size, long reloads) {
+	}
+
+	private final InterviewQuestionRepository repository;
+	private final int maxEntries;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<Long, Profile> compiled = new LinkedHashMap<>(16, 0.75f, true);
+	// bumped by reload, so a load that started before it is not cached after it
+	private long generation;
+	private final Map<String, Long> askedQuestion = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder reloads = new LongAdder();
+
+	@Autowired
+	public QuestionBank(ObjectProvider<InterviewQuestionRepository> repository,
+						@Value("${cogbee.question-bank.cache-size:256}") int maxEntries) {
+		this(repository.getIfAvailable(), maxEntries);
+	}
+
+	QuestionBank(InterviewQuestionRepository repository, int maxEntries) {
+		this.repository = repository;
+		this.maxEntries = maxEntries;
+	}
+
+	/** The question's profile, or null when it doesn't exist or is inactive. */
+	public Profile profile(Long questionId) {
+		if (questionId == null) return null;
+
+		long loadGeneration;
+		lock.lock();
+		try {
+			Profile cached = compiled.get(questionId);
+			if (cached != null) {
+				hits.increment();
+				return cached;
+			}
+			loadGeneration = generation;
+		} finally {
+			lock.unlock();
+		}
+
+		misses.increment();
+		Profile loaded = load(questionId);
+		if (loaded != null) put(loaded, loadGeneration);
+		return loaded;
+	}
+
+	/** Like {@link #profile} but falls back to the default question. */
+	public Profile profileOrDefault(Long questionId) {
+		Profile profile = profile(questionId);
+		return profile != null ? profile : DEFAULT;
+	}
+
+	/**
+	 * Records the question the session is answering now and compiles its
+	 * matcher ahead of the answer.
+	 *
+	 * @return null when the question doesn't exist
+	 */
+	public Profile ask(String sessionId, Long questionId) {
+		Profile profile = profile(questionId);
+		if (profile != null) askedQuestion.put(sessionId, questionId);
+		return profile;
+	}
+
+	// The question the session was last asked, or the default
+	public Profile current(String sessionId) {
+		Long questionId = sessionId == null ? null : askedQuestion.get(sessionId);
+		return profileOrDefault(questionId);
+	}
+
+	public void endSession(String sessionId) {
+		askedQuestion.remove(sessionId);
+	}
+
+	/**
+	 * Drops every compiled matcher and recompiles the active questions, up
+	 * to the cache size. When the questions can't be read, the cache is
+	 * left as it was.
+	 *
+	 * @return how many questions were compiled
+	 * @throws IllegalStateException when the database could not be read
+	 */
+	public int reload() {
+		List<InterviewQuestion> active = List.of();
+		if (repository != null) {
+			try {
+				active = repository.findByActiveTrue();
+			} catch (Exception e) {
+				System.out.println("Question bank reload failed: " + e.getMessage());
+				throw new IllegalStateException("Question bank unavailable: " + e.getMessage(), e);
+			}
+		}
+
+		long loadGeneration;
+		lock.lock();
+		try {
+			compiled.clear();
+			loadGeneration = ++generation;
+		} finally {
+			lock.unlock();
+		}
+		reloads.increment();
+
+		int count = 0;
+		for (InterviewQuestion question : active) {
+			if (count >= maxEntries) break;
+			put(compile(question), loadGeneration);
+			count++;
+		}
+		System.out.println("Question bank reloaded: " + count + " of " + active.size() + " active questions compiled");
+		return count;
+	}
+
+	public Stats stats() {
+		lock.lock();
+		try {
+			return new Stats(hits.sum(), misses.sum(), evictions.sum(), compiled.size(), reloads.sum());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Profile load(Long questionId) {
+		if (repository == null) return null;
+		try {
+			return repository.findById(questionId)
+					.filter(InterviewQuestion::isActive)
+					.map(QuestionBank::compile)
+					.orElse(null);
+		} catch (Exception e) {
+			System.out.println("Question bank lookup failed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void put(Profile profile, long loadGeneration) {
+		lock.lock();
+		try {
+			if (loadGeneration != generation) return;
+			compiled.put(profile.id(), profile);
+
+			var eldest = compiled.entrySet().iterator();
+			while (compiled.size() > maxEntries && eldest.hasNext()) {
+				eldest.next();
+				eldest.remove();
+				evictions.increment();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	static Profile compile(InterviewQuestion question) {
+		List<ScoringRubric.Keyword> keywords = new ArrayList<>();
+		for (QuestionKeyword keyword : question.getKeywords()) {
+			List<String> phrases = new ArrayList<>();
+			phrases.add(keyword.getKeyword());
+			if (keyword.getSynonyms() != null) {
+				for (String synonym : keyword.getSynonyms().split(",")) {
+					if (!synonym.isBlank()) phrases.add(synonym.trim());
+				}
+			}
+			keywords.add(new ScoringRubric.Keyword(keyword.getKeyword(), phrases,
+					keyword.getWeight() > 0 ? keyword.getWeight() : 1.0));
+		}
+		return new Profile(question.getId(), question.getText(), new ScoringRubric(keywords, FILLERS));
+	}
+}
@@ -0,0 +1,176 @@
+package com.demo.cogbee.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Polls SpeechFlow for every outstanding transcription task from one scheduler
+ * thread. Requests go out asynchronously on the shared HTTP client, the delay
+ * between polls grows while a task is still running, and each task's result is
+ * delivered through its own {@link CompletableFuture}.
+ */
+public class SpeechFlowTaskPoller implements AutoCloseable {
+
+    private static final int CODE_DONE = 11000;
+    private static final int CODE_RUNNING = 11001;
+    private static final int MAX_CONSECUTIVE_ERRORS = 5;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final String queryUrl;
+    private final String keyId;
+    private final String keySecret;
+    private final int resultType;
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final double backoffMultiplier;
+    private final Duration taskTimeout;
+    private final Duration requestTimeout;
+
+    private final Map<String, PendingTask> outstanding = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "speechflow-poller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SpeechFlowTaskPoller(HttpClient httpClient, ObjectMapper mapper,
+                                String baseUrl, String keyId, String keySecret, int resultType,
+                                long initialDelayMs, long maxDelayMs, double backoffMultiplier,
+                                Duration taskTimeout, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.mapper = mapper;
+        this.queryUrl = baseUrl + "/asr/file/v1/query";
+        this.keyId = keyId;
+        this.keySecret = keySecret;
+        this.resultType = resultType;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.backoffMultiplier = backoffMultiplier;
+        this.taskTimeout = taskTimeout;
+        this.requestTimeout = requestTimeout;
+    }
+
+    // Returns the shared future when the same task is awaited twice
+    public CompletableFuture<String> await(String taskId) {
+        PendingTask fresh = new PendingTask(taskId, System.nanoTime() + taskTimeout.toNanos());
+        PendingTask existing = outstanding.putIfAbsent(taskId, fresh);
+        if (existing != null) {
+            return existing.future;
+        }
+
+        schedule(fresh, initialDelayMs);
+        return fresh.future;
+    }
+
+    public int outstandingCount() {
+        return outstanding.size();
+    }
+
+    private void schedule(PendingTask task, long delayMs) {
+        task.delayMs = delayMs;
+        try {
+            scheduler.schedule(() -> poll(task), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(task, new IllegalStateException("SpeechFlow poller is shut down"));
+        }
+    }
+
+    private void poll(PendingTask task) {
+        if (task.future.isDone()) {
+            // cancelled by the caller
+            outstanding.remove(task.taskId, task);
+            return;
+        }
+        if (System.nanoTime() > task.deadlineNanos) {
+            fail(task, new TimeoutException("SpeechFlow task " + task.taskId + " did not finish in " + taskTimeout));
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(
+                        queryUrl + "?taskId=" + task.taskId + "&resultType=" + resultType))
+                .timeout(requestTimeout)
+                .header("keyId", keyId)
+                .header("keySecret", keySecret)
+                .GET()
+                .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        retryAfterError(task, error);
+                    } else {
+                        handle(task, response.body());
+                    }
+                });
+    }
+
+    private void handle(PendingTask task, String body) {
+        JsonNode json;
+        try {
+            json = mapper.readTree(body);
+        } catch (Exception e) {
+            retryAfterError(task, e);
+            return;
+        }
+
+        task.consecutiveErrors = 0;
+        int code = json.path("code").asInt();
+
+        if (code == CODE_DONE) {
+            outstanding.remove(task.taskId, task);
+            task.future.complete(json.path("result").asText());
+        } else if (code == CODE_RUNNING) {
+            schedule(task, nextDelay(task.delayMs));
+        } else {
+            fail(task, new RuntimeException("Query failed: " + json.path("msg").asText()));
+        }
+    }
+
+    private void retryAfterError(PendingTask task, Throwable error) {
+        if (++task.consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+            fail(task, error);
+            return;
+        }
+        schedule(task, nextDelay(task.delayMs));
+    }
+
+    private long nextDelay(long current) {
+        return Math.min(maxDelayMs, Math.max(1, (long) (current * backoffMultiplier)));
+    }
+
+    private void fail(PendingTask task, Throwable error) {
+        outstanding.remove(task.taskId, task);
+        task.future.completeExceptionally(error);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        outstanding.values().forEach(t -> t.future.completeExceptionally(
+                new CancellationException("SpeechFlow poller closed")));
+        outstanding.clear();
+    }
+
+    private static class PendingTask {
+        final String taskId;
+        final long deadlineNanos;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        volatile long delayMs;
+        volatile int consecutiveErrors;
+
+        PendingTask(String taskId, long deadlineNanos) {
+            this.taskId = taskId;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
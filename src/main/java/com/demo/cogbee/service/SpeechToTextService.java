@@ -1,13 +1,30 @@
 package com.demo.cogbee.service;
 
+import com.demo.cogbee.service.media.MediaProcessingService;
+import com.demo.cogbee.service.media.MediaProcessingService.Priority;
+import com.demo.cogbee.service.resilience.ResilientExecutor;
+import com.demo.cogbee.util.FFmpegPipe;
+import com.demo.cogbee.util.WavChunkWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class SpeechToTextService {
@@ -16,66 +33,175 @@ public class SpeechToTextService {
     private static final String API_KEY_SECRET = "V6sTL9ix794v9eKt";
     private static final String LANG = "en";
     private static final int RESULT_TYPE = 4;
+    private static final long MIN_AUDIO_BYTES = 2000;
+    private static final long FFMPEG_TIMEOUT_SECONDS = 120;
+
+    // 16 kHz mono PCM in a WAV container, written to stdout
+    private static final List<String> WAV_PIPE_ARGS = List.of(
+            "-vn",
+            "-ac", "1",
+            "-ar", "16000",
+            "-acodec", "pcm_s16le",
+            "-f", "wav",
+            "pipe:1"
+    );
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final SpeechFlowTaskPoller poller;
+    private final ResilientExecutor speechFlow;
+    private final MediaProcessingService media;
+
+    public SpeechToTextService(HttpClient httpClient,
+                               @Qualifier("speechFlowResilience") ResilientExecutor speechFlow,
+                               MediaProcessingService media,
+                               @Value("${cogbee.speechflow.base-url:https://api.speechflow.io}") String baseUrl,
+                               @Value("${cogbee.speechflow.request-timeout-ms:30000}") long requestTimeoutMs,
+                               @Value("${cogbee.speechflow.poll.initial-delay-ms:500}") long initialDelayMs,
+                               @Value("${cogbee.speechflow.poll.max-delay-ms:5000}") long maxDelayMs,
+                               @Value("${cogbee.speechflow.poll.multiplier:1.5}") double multiplier,
+                               @Value("${cogbee.speechflow.poll.task-timeout-ms:300000}") long taskTimeoutMs) {
+        this.httpClient = httpClient;
+        this.speechFlow = speechFlow;
+        this.media = media;
+        this.baseUrl = baseUrl;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.poller = new SpeechFlowTaskPoller(httpClient, mapper, baseUrl, API_KEY_ID, API_KEY_SECRET, RESULT_TYPE,
+                initialDelayMs, maxDelayMs, multiplier, Duration.ofMillis(taskTimeoutMs), requestTimeout);
+    }
 
     public String extractText(File inputFile) {
+        try {
+            return extractTextAsync(inputFile).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("STT failed: " + cause.getMessage(), cause);
+        }
+    }
 
-        File wavFile = null;
-
+    public CompletableFuture<String> extractTextAsync(File inputFile) {
+        WavChunkWriter.Header wav = null;
         try {
-            wavFile = File.createTempFile("converted_", ".wav");
+            wav = WavChunkWriter.probe(inputFile.toPath());
+        } catch (IOException ignored) {
+            // unreadable here, let ffmpeg report it
+        }
+
+        // already 16 kHz mono PCM: upload the file as is, no transcode
+        if (wav != null && wav.format() != null && wav.format().isSpeechReady()) {
+            return uploadWav(inputFile, wav).thenCompose(poller::await);
+        }
+        return transcribe(List.of("-i", inputFile.getAbsolutePath()), null);
+    }
 
-            convertToWav(inputFile, wavFile);
+    // Same as above for non-seekable sources (uploads, sockets): the bytes are fed to ffmpeg's stdin
+    public CompletableFuture<String> extractTextAsync(InputStream input) {
+        return transcribe(List.of("-i", "pipe:0"), input);
+    }
 
-            if (wavFile.length() < 2000) {
-                throw new RuntimeException("WAV file too small = invalid audio");
-            }
+    /**
+     * Streams ffmpeg's WAV output straight into the upload body. The
+     * SpeechFlow permit is taken before ffmpeg is started, so a transcode
+     * slot is never held while the upload waits in the SpeechFlow bulkhead.
+     */
+    private CompletableFuture<String> transcribe(List<String> inputArgs, InputStream stdin) {
+        List<String> args = new ArrayList<>(inputArgs);
+        args.addAll(WAV_PIPE_ARGS);
+
+        // a candidate is waiting on this answer, so it starts ahead of batch transcodes
+        return speechFlow.execute(() -> media.open(Priority.LIVE, "stt-transcode", args, stdin)
+                        // reading ffmpeg's output blocks, so it stays off the thread that started it
+                        .thenComposeAsync(this::uploadPcm))
+                .thenApply(this::taskId)
+                .thenCompose(poller::await);
+    }
 
-            String taskId = createTranscription(wavFile);
-            if (taskId == null) {
-                throw new RuntimeException("Failed to create transcription task");
-            }
+    // Completes with the SpeechFlow task id once the file is uploaded
+    private CompletableFuture<String> uploadWav(File wavFile, WavChunkWriter.Header wav) {
+        long dataBytes = wav.dataBytes() >= 0 ? wav.dataBytes() : wavFile.length() - WavChunkWriter.HEADER_BYTES;
+        if (dataBytes < MIN_AUDIO_BYTES) {
+            return CompletableFuture.failedFuture(new RuntimeException("WAV file too small = invalid audio"));
+        }
 
-            return queryResult(taskId);
+        HttpRequest.BodyPublisher audio;
+        try {
+            audio = HttpRequest.BodyPublishers.ofFile(wavFile.toPath());
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("STT failed: " + e.getMessage(), e));
+        }
 
-        } catch (Exception e) {
-            throw new RuntimeException("STT failed: " + e.getMessage(), e);
+        return speechFlow.execute(() -> createTranscription(audio)).thenApply(this::taskId);
+    }
 
-        } finally {
-            if (wavFile != null && wavFile.exists()) {
-                // wavFile.delete();
+    /**
+     * Reads the WAV header and the shortest usable audio before sending
+     * anything, so audio that is too short, or a transcode that failed, is
+     * never uploaded. The rest of the output follows as ffmpeg writes it.
+     */
+    private CompletableFuture<HttpResponse<String>> uploadPcm(FFmpegPipe pipe) {
+        InputStream pcm = pipe.stdout();
+        byte[] head;
+        try {
+            head = pcm.readNBytes(WavChunkWriter.HEADER_BYTES + (int) MIN_AUDIO_BYTES);
+            if (head.length < WavChunkWriter.HEADER_BYTES + MIN_AUDIO_BYTES) {
+                int exit = pipe.awaitExit(FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                // the input was bad, not SpeechFlow, so the breaker doesn't count it
+                throw new IllegalArgumentException(exit != 0
+                        ? "FFmpeg failed, exit code = " + exit + ": " + pipe.stderrTail()
+                        : "WAV file too small = invalid audio");
             }
+        } catch (IOException e) {
+            pipe.close();
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pipe.close();
+            throw new CompletionException(e);
+        } catch (RuntimeException e) {
+            pipe.close();
+            throw e;
         }
+
+        InputStream body = new SequenceInputStream(new ByteArrayInputStream(head), pcm);
+        return createTranscription(HttpRequest.BodyPublishers.ofInputStream(() -> body))
+                .handle((response, error) -> {
+                    try {
+                        if (error != null) {
+                            throw new CompletionException(ResilientExecutor.unwrap(error));
+                        }
+                        int exit = pipe.awaitExit(FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        if (exit != 0) {
+                            throw new IllegalArgumentException("FFmpeg failed, exit code = " + exit + ": " + pipe.stderrTail());
+                        }
+                        return response;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CompletionException(e);
+                    } finally {
+                        pipe.close();
+                    }
+                });
     }
 
+    @PreDestroy
+    public void shutdown() {
+        poller.close();
+    }
 
 
-    public void convertToWav(File input, File output) throws Exception {
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg",
+    public void convertToWav(File input, File output) throws Exception {
+        runToFile("wav-convert", List.of(
                 "-y",
                 "-i", input.getAbsolutePath(),
                 "-vn",
                 "-ac", "1",
                 "-ar", "16000",
                 "-acodec", "pcm_s16le",
-
                 output.getAbsolutePath()
-        );
-
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        String line;
-        while ((line = br.readLine()) != null) {
-            System.out.println("FFmpeg: " + line);
-        }
-
-        int exit = p.waitFor();
-        if (exit != 0) {
-            throw new RuntimeException("FFmpeg failed, exit code = " + exit);
-        }
+        ), "FFmpeg failed");
     }
 
 
@@ -83,8 +209,7 @@ public class SpeechToTextService {
     private void convertToMp4(File input, File output) throws Exception {
 
         // H.264 + AAC → BEST compatibility with SpeechFlow
-        ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg",
+        runToFile("mp4-convert", List.of(
                 "-y",
                 "-i", input.getAbsolutePath(),
                 "-vcodec", "libx264",
@@ -92,20 +217,19 @@ public class SpeechToTextService {
                 "-ar", "16000",
                 "-ac", "1",
                 output.getAbsolutePath()
-        );
-
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
+        ), "FFmpeg MP4 conversion failed");
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            System.out.println("FFmpeg: " + line);
+    private void runToFile(String job, List<String> args, String failure) throws Exception {
+        CompletableFuture<Void> done = media.run(Priority.BATCH, job, args);
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            done.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(failure + ": " + e.getCause().getMessage(), e.getCause());
         }
-
-        int exitCode = p.waitFor();
-        if (exitCode != 0)
-            throw new RuntimeException("FFmpeg MP4 conversion failed, exitCode=" + exitCode);
     }
 
     // Save MP4 for debugging
@@ -128,85 +252,45 @@ public class SpeechToTextService {
         System.out.println("📁 Saved debug MP4: " + savedFile.getAbsolutePath());
     }
 
-    // SpeechFlow create task
-    private String createTranscription(File file) throws Exception {
-        String createUrl = "https://api.speechflow.io/asr/file/v1/create";
-        HttpURLConnection connection = (HttpURLConnection) new URL(createUrl).openConnection();
-
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        connection.setRequestProperty("keyId", API_KEY_ID);
-        connection.setRequestProperty("keySecret", API_KEY_SECRET);
-
+    // SpeechFlow create task; callers run it under the provider's bulkhead and breaker
+    private CompletableFuture<HttpResponse<String>> createTranscription(HttpRequest.BodyPublisher audio) {
         String boundary = "----" + System.currentTimeMillis();
-        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-
-        try (DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
-
-            out.writeBytes("--" + boundary + "\r\n");
-            out.writeBytes("Content-Disposition: form-data; name=\"lang\"\r\n\r\n");
-            out.writeBytes(LANG + "\r\n");
-
-            out.writeBytes("--" + boundary + "\r\n");
-            out.writeBytes("Content-Disposition: form-data; name=\"file\"; filename=\"audio.mp4\"\r\n");
-            out.writeBytes("Content-Type: video/mp4\r\n\r\n");
-
-            try (FileInputStream fis = new FileInputStream(file)) {
-                byte[] buf = new byte[4096];
-                int len;
-                while ((len = fis.read(buf)) != -1) {
-                    out.write(buf, 0, len);
-                }
-            }
-
-            out.writeBytes("\r\n--" + boundary + "--\r\n");
-        }
-
-        String response = readResponse(connection);
-        JsonNode json = new ObjectMapper().readTree(response);
 
-        if (json.get("code").asInt() == 10000)
-            return json.get("taskId").asText();
-
-        throw new RuntimeException("Create failed: " + json.get("msg").asText());
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"lang\"\r\n\r\n"
+                + LANG + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"audio.mp4\"\r\n"
+                + "Content-Type: video/mp4\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofString(head, StandardCharsets.UTF_8),
+                audio,
+                HttpRequest.BodyPublishers.ofString(tail, StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/asr/file/v1/create"))
+                .timeout(requestTimeout)
+                .header("keyId", API_KEY_ID)
+                .header("keySecret", API_KEY_SECRET)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(body)
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
     }
 
-    // SpeechFlow poll task
-    private String queryResult(String taskId) throws Exception {
-        String queryUrl =
-                "https://api.speechflow.io/asr/file/v1/query?taskId=" + taskId + "&resultType=" + RESULT_TYPE;
-
-        while (true) {
-            HttpURLConnection conn = (HttpURLConnection) new URL(queryUrl).openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("keyId", API_KEY_ID);
-            conn.setRequestProperty("keySecret", API_KEY_SECRET);
-
-            String response = readResponse(conn);
-            JsonNode json = new ObjectMapper().readTree(response);
-
-            int code = json.get("code").asInt();
-
-            if (code == 11000) {
-                return json.get("result").asText();
-            }
-            if (code == 11001) {
-                Thread.sleep(2000);
-                continue;
-            }
-
-            throw new RuntimeException("Query failed: " + json.get("msg").asText());
+    private String taskId(HttpResponse<String> response) {
+        JsonNode json;
+        try {
+            json = mapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
-    }
-
-    private String readResponse(HttpURLConnection conn) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder sb = new StringBuilder();
-        String line;
 
-        while ((line = br.readLine()) != null)
-            sb.append(line);
+        if (json.path("code").asInt() == 10000)
+            return json.get("taskId").asText();
 
-        return sb.toString();
+        throw new RuntimeException("Create failed: " + json.path("msg").asText());
     }
 }
@@ -0,0 +1,14 @@
+package com.demo.cogbee.service.face;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Turns a face image into a fixed-length, L2-normalized vector so that two
+ * faces can be compared with a dot product. Register a model-backed
+ * implementation as {@code @Primary} to replace {@link LbpFaceEmbedder}.
+ */
+public interface FaceEmbedder {
+
+    /** @return null when the image has no face to embed */
+    float[] embed(BufferedImage image);
+}
@@ -0,0 +1,30 @@
+package com.demo.cogbee.service.face;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decides whether a captured frame shows the same person as the candidate's
+ * reference photo. Selected with cogbee.face.verifier: {@code faceplusplus}
+ * (default, remote API) or {@code local} (on-CPU embeddings).
+ */
+public interface FaceVerifier {
+
+    // frameImage holds encoded image bytes (JPEG/PNG) and is only valid for the duration of the call
+    FaceMatch verify(String referenceImagePath, ByteBuffer frameImage);
+
+    default FaceMatch verify(String referenceImagePath, String frameImagePath) {
+        try {
+            return verify(referenceImagePath, ByteBuffer.wrap(Files.readAllBytes(Path.of(frameImagePath))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read frame " + frameImagePath, e);
+        }
+    }
+
+    // score is a similarity in [0, 1]; its scale depends on the implementation
+    record FaceMatch(boolean samePerson, double score) {
+    }
+}
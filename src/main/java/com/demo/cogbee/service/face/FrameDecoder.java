@@ -0,0 +1,115 @@
+package com.demo.cogbee.service.face;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Decodes base64 frames (bare or as a data: URL) straight from the request
+ * string into pooled heap buffers, so a frame check allocates neither the
+ * image bytes nor an intermediate copy of the encoded text.
+ */
+@Component
+public class FrameDecoder {
+
+    private final int maxFrameBytes;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public FrameDecoder(@Value("${cogbee.face.frame.max-bytes:2097152}") int maxFrameBytes,
+                        @Value("${cogbee.face.frame.max-pooled:32}") int maxPooled) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Decodes {@code frame} and passes the image bytes to {@code use}. The
+     * buffer goes back to the pool when {@code use} returns, so it must not
+     * be kept.
+     *
+     * @throws IllegalArgumentException if the frame is empty, not base64 or too large
+     */
+    public <T> T decode(String frame, Function<ByteBuffer, T> use) {
+        int start = frame.indexOf(',') + 1;
+        if (start >= frame.length()) {
+            throw new IllegalArgumentException("Empty frame");
+        }
+
+        byte[] buffer = acquire();
+        try {
+            int length;
+            try (InputStream in = Base64.getDecoder().wrap(new AsciiInputStream(frame, start))) {
+                length = in.readNBytes(buffer, 0, buffer.length);
+                if (in.read() != -1) {
+                    throw new IllegalArgumentException("Frame larger than " + maxFrameBytes + " bytes");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Frame is not valid base64: " + e.getMessage(), e);
+            }
+
+            return use.apply(ByteBuffer.wrap(buffer, 0, length));
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public int pooledCount() {
+        return pooled.get();
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = free.poll();
+        if (buffer == null) {
+            return new byte[maxFrameBytes];
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private void release(byte[] buffer) {
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+
+    // Reads the base64 text in place; non-ASCII characters become '?', which the decoder rejects
+    private static final class AsciiInputStream extends InputStream {
+        private final String text;
+        private int pos;
+
+        AsciiInputStream(String text, int start) {
+            this.text = text;
+            this.pos = start;
+        }
+
+        @Override
+        public int read() {
+            if (pos >= text.length()) return -1;
+            char c = text.charAt(pos++);
+            return c > 0x7F ? '?' : c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (pos >= text.length()) return -1;
+
+            int n = Math.min(len, text.length() - pos);
+            for (int i = 0; i < n; i++) {
+                char c = text.charAt(pos++);
+                b[off + i] = c > 0x7F ? (byte) '?' : (byte) c;
+            }
+            return n;
+        }
+    }
+}
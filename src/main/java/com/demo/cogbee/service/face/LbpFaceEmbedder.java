@@ -0,0 +1,153 @@
+package com.demo.cogbee.service.face;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pure-Java face descriptor: uniform local binary pattern histograms over a
+ * grid (the LBPH descriptor), Hellinger-mapped and L2-normalized. There is
+ * no face detector; the face is assumed to sit in the upper middle of the
+ * frame, as it does in webcam interview shots, and that region is cropped.
+ * Flat pixels carry no identity and are left out of the histograms, and a
+ * crop with too little contrast or texture is taken to have no face in it.
+ */
+@Component
+public class LbpFaceEmbedder implements FaceEmbedder {
+
+    private static final int SIZE = 64;
+    private static final int GRID = 8;
+    private static final int BINS = 59;
+    private static final int[] UNIFORM_BIN = uniformBins();
+
+    // neighbours within this many gray levels of the centre count as equal
+    private static final int FLAT_TOLERANCE = 3;
+
+    private final double cropFraction;
+    private final double minContrast;
+    private final double minTexturedFraction;
+
+    public LbpFaceEmbedder(@Value("${cogbee.face.local.crop-fraction:0.6}") double cropFraction,
+                           @Value("${cogbee.face.local.min-contrast:12}") double minContrast,
+                           @Value("${cogbee.face.local.min-textured-fraction:0.05}") double minTexturedFraction) {
+        this.cropFraction = cropFraction;
+        this.minContrast = minContrast;
+        this.minTexturedFraction = minTexturedFraction;
+    }
+
+    @Override
+    public float[] embed(BufferedImage image) {
+        int[] gray = grayFaceRegion(image);
+        if (standardDeviation(gray) < minContrast) return null;
+
+        int cell = SIZE / GRID;
+        float[] vector = new float[GRID * GRID * BINS];
+        int textured = 0;
+
+        for (int y = 1; y < SIZE - 1; y++) {
+            for (int x = 1; x < SIZE - 1; x++) {
+                int c = gray[y * SIZE + x];
+                // clockwise from top-left
+                int[] neighbours = {
+                        gray[(y - 1) * SIZE + x - 1], gray[(y - 1) * SIZE + x], gray[(y - 1) * SIZE + x + 1],
+                        gray[y * SIZE + x + 1], gray[(y + 1) * SIZE + x + 1], gray[(y + 1) * SIZE + x],
+                        gray[(y + 1) * SIZE + x - 1], gray[y * SIZE + x - 1]};
+
+                int code = 0;
+                boolean flat = true;
+                for (int n : neighbours) {
+                    code = (code << 1) | (n >= c ? 1 : 0);
+                    if (Math.abs(n - c) > FLAT_TOLERANCE) flat = false;
+                }
+                // background and skin would otherwise pile up in the "all ones" bin of every cell
+                if (flat) continue;
+
+                textured++;
+                int cellIndex = (y / cell) * GRID + (x / cell);
+                vector[cellIndex * BINS + UNIFORM_BIN[code]]++;
+            }
+        }
+        if (textured < minTexturedFraction * (SIZE - 2) * (SIZE - 2)) return null;
+
+        // Hellinger mapping makes the dot product of normalized vectors a histogram similarity
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) Math.sqrt(vector[i]);
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+    private int[] grayFaceRegion(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int side = Math.max(1, (int) (Math.min(w, h) * cropFraction));
+        int x0 = Math.max(0, Math.min(w - side, (w - side) / 2));
+        int y0 = Math.max(0, Math.min(h - side, (int) (h * 0.45) - side / 2));
+
+        BufferedImage scaled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, SIZE, SIZE, x0, y0, x0 + side, y0 + side, null);
+        } finally {
+            g.dispose();
+        }
+
+        int[] gray = new int[SIZE * SIZE];
+        scaled.getRaster().getPixels(0, 0, SIZE, SIZE, gray);
+        return smooth(gray);
+    }
+
+    // 3x3 box blur, so sensor noise on flat areas stays under the flat tolerance
+    private static int[] smooth(int[] gray) {
+        int[] out = new int[gray.length];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int yy = y + dy;
+                        int xx = x + dx;
+                        if (yy < 0 || yy >= SIZE || xx < 0 || xx >= SIZE) continue;
+                        sum += gray[yy * SIZE + xx];
+                        count++;
+                    }
+                }
+                out[y * SIZE + x] = (sum + count / 2) / count;
+            }
+        }
+        return out;
+    }
+
+    private static double standardDeviation(int[] gray) {
+        double sum = 0;
+        double sumSquares = 0;
+        for (int v : gray) {
+            sum += v;
+            sumSquares += (double) v * v;
+        }
+        double mean = sum / gray.length;
+        return Math.sqrt(Math.max(0, sumSquares / gray.length - mean * mean));
+    }
+
+    // 58 patterns with at most two 0/1 transitions get their own bin, everything else shares the last one
+    private static int[] uniformBins() {
+        int[] bins = new int[256];
+        int next = 0;
+        for (int code = 0; code < 256; code++) {
+            int rotated = ((code << 1) | (code >>> 7)) & 0xFF;
+            bins[code] = Integer.bitCount(code ^ rotated) <= 2 ? next++ : BINS - 1;
+        }
+        return bins;
+    }
+}
@@ -0,0 +1,156 @@
+package com.demo.cogbee.service.face;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verifies frames on this machine. The candidate's reference embedding is
+ * computed once and cached (keyed by path and modification time), so a frame
+ * check costs one image decode, one embedding and a dot product. A frame
+ * the embedder finds no face in never matches.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "cogbee.face.verifier", havingValue = "local")
+public class LocalFaceVerifier implements FaceVerifier {
+
+    private record Reference(long lastModified, float[] embedding) {
+    }
+
+    private final FaceEmbedder embedder;
+    private final double threshold;
+    private final int maxReferences;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Reference> references = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder referenceMisses = new LongAdder();
+
+    public LocalFaceVerifier(FaceEmbedder embedder,
+                             @Value("${cogbee.face.local.threshold:0.85}") double threshold,
+                             @Value("${cogbee.face.local.max-references:1000}") int maxReferences) {
+        this.embedder = embedder;
+        this.threshold = threshold;
+        this.maxReferences = maxReferences;
+    }
+
+    @Override
+    public FaceMatch verify(String referenceImagePath, ByteBuffer frameImage) {
+        float[] reference = referenceEmbedding(referenceImagePath);
+        float[] frame = embedder.embed(read(frameImage));
+        // nobody in front of the camera
+        if (frame == null) return new FaceMatch(false, 0);
+
+        double score = Math.max(0, dot(reference, frame));
+        return new FaceMatch(score >= threshold, score);
+    }
+
+    public void evictReference(String referenceImagePath) {
+        lock.lock();
+        try {
+            references.remove(referenceImagePath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long referenceMisses() {
+        return referenceMisses.sum();
+    }
+
+    private float[] referenceEmbedding(String path) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+
+        lock.lock();
+        try {
+            Reference cached = references.get(path);
+            if (cached != null && cached.lastModified() == lastModified) {
+                return cached.embedding();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // computed outside the lock; two sessions racing on a new candidate just embed it twice
+        referenceMisses.increment();
+        float[] embedding = embedder.embed(read(file));
+        if (embedding == null) {
+            throw new RuntimeException("No face found in reference image " + file.getName());
+        }
+
+        lock.lock();
+        try {
+            references.put(path, new Reference(lastModified, embedding));
+            var eldest = references.entrySet().iterator();
+            while (references.size() > maxReferences && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return embedding;
+    }
+
+    static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Embedding sizes differ: " + a.length + " vs " + b.length);
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static BufferedImage read(ByteBuffer encoded) {
+        ByteBuffer view = encoded.duplicate();
+        byte[] bytes;
+        int offset;
+        if (view.hasArray()) {
+            bytes = view.array();
+            offset = view.arrayOffset() + view.position();
+        } else {
+            bytes = new byte[view.remaining()];
+            view.get(bytes);
+            offset = 0;
+        }
+
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes, offset, encoded.remaining()));
+            if (image == null) {
+                throw new RuntimeException("Unsupported frame image format");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not decode frame: " + e.getMessage(), e);
+        }
+    }
+
+    private static BufferedImage read(File file) {
+        if (!file.exists()) {
+            throw new RuntimeException("Image file not found!");
+        }
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new RuntimeException("Unsupported image format: " + file.getName());
+            }
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read image " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.demo.cogbee.service.face;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which incoming frames are worth verifying. Each session has its own
+ * check interval: it drops to the minimum after a mismatch or a low-confidence
+ * match and grows towards the maximum while matches stay confident. On top of
+ * that a global token bucket caps verifications per second across all
+ * sessions, with part of it reserved for sessions under suspicion so they are
+ * not starved by routine checks at peak. Sessions are dropped when the
+ * interview ends or after they go idle.
+ * <p>
+ * Check results are tallied per answer: {@link #startAnswer}, called when a
+ * new question is asked, opens a new tally, so a mismatch during one answer
+ * doesn't fail every later one, and nothing else (e.g. a reconnect) clears it.
+ */
+@Component
+public class ProctoringScheduler {
+
+    public enum Outcome { VERIFY, NOT_DUE, BUDGET_EXHAUSTED }
+
+    public record Decision(Outcome outcome, long retryAfterMs) {
+        public boolean verify() {
+            return outcome == Outcome.VERIFY;
+        }
+    }
+
+    // What the checks of the current answer found; samePerson allows up to max-mismatches - 1 misses
+    public record Summary(int checks, int mismatches, double averageScore, boolean samePerson) {
+    }
+
+    private static class SessionState {
+        long intervalMs;
+        long nextDueAt;
+        long lastSeenAt;
+        int confidentStreak;
+        boolean suspicious;
+        int checks;
+        int mismatches;
+        double scoreSum;
+    }
+
+    private final long minIntervalMs;
+    private final long baseIntervalMs;
+    private final long maxIntervalMs;
+    private final double growth;
+    private final int confidentStreakToGrow;
+    private final double confidentScore;
+    private final int maxMismatches;
+    private final long idleEvictMs;
+    private final LongSupplier clock;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    // token bucket, in micro-tokens so refills stay exact
+    private final ReentrantLock bucketLock = new ReentrantLock();
+    private final long capacity;
+    private final long reserved;
+    private final double refillPerMs;
+    private long tokens;
+    private long lastRefillAt;
+
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong skippedNotDue = new AtomicLong();
+    private final AtomicLong skippedBudget = new AtomicLong();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "proctoring-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public ProctoringScheduler(@Value("${cogbee.proctoring.min-interval-ms:5000}") long minIntervalMs,
+                               @Value("${cogbee.proctoring.base-interval-ms:20000}") long baseIntervalMs,
+                               @Value("${cogbee.proctoring.max-interval-ms:60000}") long maxIntervalMs,
+                               @Value("${cogbee.proctoring.growth:1.5}") double growth,
+                               @Value("${cogbee.proctoring.confident-streak:3}") int confidentStreakToGrow,
+                               @Value("${cogbee.proctoring.confident-score:0.9}") double confidentScore,
+                               @Value("${cogbee.face.video.max-mismatches:3}") int maxMismatches,
+                               @Value("${cogbee.proctoring.budget-per-second:20}") double budgetPerSecond,
+                               @Value("${cogbee.proctoring.budget-burst:40}") int budgetBurst,
+                               @Value("${cogbee.proctoring.suspicious-reserve:0.25}") double suspiciousReserve,
+                               @Value("${cogbee.proctoring.idle-evict-ms:600000}") long idleEvictMs) {
+        this(minIntervalMs, baseIntervalMs, maxIntervalMs, growth, confidentStreakToGrow, confidentScore, maxMismatches,
+                budgetPerSecond, budgetBurst, suspiciousReserve, idleEvictMs, System::currentTimeMillis);
+
+        long sweepMs = Math.max(1_000, idleEvictMs / 4);
+        sweeper.scheduleWithFixedDelay(() -> sweep(clock.getAsLong()), sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    ProctoringScheduler(long minIntervalMs, long baseIntervalMs, long maxIntervalMs, double growth,
+                        int confidentStreakToGrow, double confidentScore, int maxMismatches,
+                        double budgetPerSecond, int budgetBurst, double suspiciousReserve,
+                        long idleEvictMs, LongSupplier clock) {
+        this.minIntervalMs = minIntervalMs;
+        this.baseIntervalMs = baseIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.growth = growth;
+        this.confidentStreakToGrow = confidentStreakToGrow;
+        this.confidentScore = confidentScore;
+        this.maxMismatches = maxMismatches;
+        this.idleEvictMs = idleEvictMs;
+        this.clock = clock;
+
+        this.capacity = Math.max(1, budgetBurst) * 1_000_000L;
+        this.reserved = (long) (capacity * suspiciousReserve);
+        this.refillPerMs = budgetPerSecond * 1_000;
+        this.tokens = capacity;
+        this.lastRefillAt = clock.getAsLong();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Claims a verification slot for the session's frame. When it returns
+     * {@link Outcome#VERIFY} the caller must verify and report the result
+     * through {@link #record} or {@link #recordFailure}.
+     */
+    public Decision tryAcquire(String sessionId) {
+        long now = clock.getAsLong();
+        Decision[] decision = new Decision[1];
+
+        // compute() serializes frames of the same session, so two frames can't both claim one slot
+        sessions.compute(sessionId, (id, state) -> {
+            if (state == null) {
+                state = new SessionState();
+                state.intervalMs = baseIntervalMs;
+            }
+            state.lastSeenAt = now;
+
+            if (now < state.nextDueAt) {
+                decision[0] = new Decision(Outcome.NOT_DUE, state.nextDueAt - now);
+                return state;
+            }
+
+            long waitMs = takeToken(now, state.suspicious);
+            if (waitMs > 0) {
+                // still due, so it is first in line once budget frees up
+                decision[0] = new Decision(Outcome.BUDGET_EXHAUSTED, waitMs);
+                return state;
+            }
+
+            state.nextDueAt = now + state.intervalMs;
+            decision[0] = new Decision(Outcome.VERIFY, 0);
+            return state;
+        });
+
+        switch (decision[0].outcome()) {
+            case VERIFY -> verified.incrementAndGet();
+            case NOT_DUE -> skippedNotDue.incrementAndGet();
+            case BUDGET_EXHAUSTED -> skippedBudget.incrementAndGet();
+        }
+        return decision[0];
+    }
+
+    public void record(String sessionId, FaceVerifier.FaceMatch match) {
+        long now = clock.getAsLong();
+
+        sessions.computeIfPresent(sessionId, (id, state) -> {
+            state.checks++;
+            state.scoreSum += match.score();
+            if (!match.samePerson()) state.mismatches++;
+
+            if (!match.samePerson() || match.score() < confidentScore) {
+                state.suspicious = true;
+                state.confidentStreak = 0;
+                state.intervalMs = minIntervalMs;
+            } else {
+                state.suspicious = false;
+                if (++state.confidentStreak >= confidentStreakToGrow) {
+                    state.intervalMs = Math.min(maxIntervalMs, Math.max(baseIntervalMs, (long) (state.intervalMs * growth)));
+                } else {
+                    state.intervalMs = Math.max(state.intervalMs, baseIntervalMs);
+                }
+            }
+            state.nextDueAt = now + state.intervalMs;
+            return state;
+        });
+    }
+
+    // Verification could not run (verifier down, bad frame): try again at the minimum interval
+    public void recordFailure(String sessionId) {
+        long now = clock.getAsLong();
+        sessions.computeIfPresent(sessionId, (id, state) -> {
+            state.nextDueAt = now + minIntervalMs;
+            return state;
+        });
+    }
+
+    // A new answer starts: later summaries only cover checks from here on
+    public void startAnswer(String sessionId) {
+        sessions.computeIfPresent(sessionId, (id, state) -> {
+            state.checks = 0;
+            state.mismatches = 0;
+            state.scoreSum = 0;
+            return state;
+        });
+    }
+
+    // null when the current answer has no completed check
+    public Summary summary(String sessionId) {
+        Summary[] summary = new Summary[1];
+        // read under the session's lock so the three counters agree
+        sessions.computeIfPresent(sessionId, (id, state) -> {
+            if (state.checks > 0) {
+                summary[0] = new Summary(state.checks, state.mismatches, state.scoreSum / state.checks,
+                        state.mismatches < maxMismatches);
+            }
+            return state;
+        });
+        return summary[0];
+    }
+
+    public void endSession(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    public long verifiedCount() {
+        return verified.get();
+    }
+
+    public long skippedNotDueCount() {
+        return skippedNotDue.get();
+    }
+
+    public long skippedBudgetCount() {
+        return skippedBudget.get();
+    }
+
+    long intervalOf(String sessionId) {
+        SessionState state = sessions.get(sessionId);
+        return state == null ? -1 : state.intervalMs;
+    }
+
+    void sweep(long now) {
+        sessions.entrySet().removeIf(e -> now - e.getValue().lastSeenAt > idleEvictMs);
+    }
+
+    // 0 when a token was taken, otherwise roughly how long until one is available
+    private long takeToken(long now, boolean suspicious) {
+        bucketLock.lock();
+        try {
+            if (now > lastRefillAt) {
+                tokens = Math.min(capacity, tokens + (long) ((now - lastRefillAt) * refillPerMs));
+                lastRefillAt = now;
+            }
+
+            // routine checks leave the reserve for suspicious sessions
+            long floor = suspicious ? 0 : reserved;
+            long needed = floor + 1_000_000L;
+            if (tokens >= needed) {
+                tokens -= 1_000_000L;
+                return 0;
+            }
+            return refillPerMs <= 0 ? Long.MAX_VALUE : (long) Math.ceil((needed - tokens) / refillPerMs);
+        } finally {
+            bucketLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.demo.cogbee.service.face;
+
+import com.demo.cogbee.service.media.MediaProcessingService;
+import com.demo.cogbee.util.FFmpegPipe;
+import com.demo.cogbee.util.FFmpegUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Checks that the person in a recorded answer is the candidate throughout.
+ * Frames are sampled evenly over the video, streamed out of ffmpeg and
+ * verified in parallel on a bounded pool. Sampling stops as soon as the
+ * outcome is settled: enough confident matches with no mismatch, or enough
+ * mismatches to fail the check. Interrupting the calling thread stops the
+ * check and kills ffmpeg.
+ */
+@Service
+public class VideoIdentityVerifier {
+
+    public record Result(boolean samePersonThroughout, double averageScore,
+                         int framesChecked, int mismatches, boolean stoppedEarly) {
+    }
+
+    private final FaceVerifier faceVerifier;
+    private final MediaProcessingService media;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int targetFrames;
+    private final double minIntervalSeconds;
+    private final int earlyStopMatches;
+    private final int maxMismatches;
+    private final double confidentScore;
+    private final int maxWidth;
+
+    public VideoIdentityVerifier(FaceVerifier faceVerifier,
+                                 MediaProcessingService media,
+                                 @Value("${cogbee.face.video.parallelism:4}") int parallelism,
+                                 @Value("${cogbee.face.video.target-frames:20}") int targetFrames,
+                                 @Value("${cogbee.face.video.min-interval-seconds:2}") double minIntervalSeconds,
+                                 @Value("${cogbee.face.video.early-stop-matches:12}") int earlyStopMatches,
+                                 @Value("${cogbee.face.video.max-mismatches:3}") int maxMismatches,
+                                 @Value("${cogbee.proctoring.confident-score:0.9}") double confidentScore,
+                                 @Value("${cogbee.face.video.max-width:640}") int maxWidth) {
+        this.faceVerifier = faceVerifier;
+        this.media = media;
+        this.parallelism = parallelism;
+        this.targetFrames = targetFrames;
+        this.minIntervalSeconds = minIntervalSeconds;
+        this.earlyStopMatches = earlyStopMatches;
+        this.maxMismatches = maxMismatches;
+        this.confidentScore = confidentScore;
+        this.maxWidth = maxWidth;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "video-verify-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Result verify(String referenceImagePath, File video) {
+        double duration = FFmpegUtil.probeDurationSeconds(video);
+        double interval = duration > 0
+                ? Math.max(minIntervalSeconds, duration / targetFrames)
+                : minIntervalSeconds;
+
+        Tally tally = new Tally();
+        // bounds decoded frames held in memory while workers are busy
+        Semaphore window = new Semaphore(parallelism * 2);
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        boolean stoppedEarly = false;
+
+        CompletableFuture<FFmpegPipe> starting = media.open(MediaProcessingService.Priority.BATCH, "video-frames",
+                FFmpegUtil.frameArgs(video, interval, maxWidth), null);
+        FFmpegUtil.FrameStream opened;
+        try {
+            opened = new FFmpegUtil.FrameStream(starting.get());
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to extract frames: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            // drops the job from the queue, or kills it if it got a slot meanwhile
+            starting.cancel(false);
+            starting.thenAccept(FFmpegPipe::close);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while verifying video", e);
+        }
+
+        try (FFmpegUtil.FrameStream frames = opened) {
+            byte[] frame;
+            while ((frame = frames.next()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                if (tally.settled()) {
+                    stoppedEarly = true;
+                    break;
+                }
+
+                window.acquire();
+                byte[] image = frame;
+                checks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        if (!tally.settled()) {
+                            tally.add(faceVerifier.verify(referenceImagePath, ByteBuffer.wrap(image)));
+                        }
+                    } catch (Exception e) {
+                        tally.errors.incrementAndGet();
+                        System.out.println("Frame verification failed: " + e.getMessage());
+                    } finally {
+                        window.release();
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).get();
+
+            if (checks.isEmpty()) {
+                throw new RuntimeException("No frames could be extracted: " + frames.stderrTail());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to extract frames: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Frame verification failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            // frames already handed to workers are skipped
+            tally.cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while verifying video", e);
+        }
+
+        int checked = tally.checked.get();
+        if (checked == 0) {
+            throw new RuntimeException("No frame could be verified (" + tally.errors.get() + " errors)");
+        }
+
+        int mismatches = tally.mismatches.get();
+        return new Result(mismatches < maxMismatches, tally.scoreSum.sum() / checked,
+                checked, mismatches, stoppedEarly);
+    }
+
+    private class Tally {
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicInteger confident = new AtomicInteger();
+        final AtomicInteger mismatches = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final DoubleAdder scoreSum = new DoubleAdder();
+        volatile boolean cancelled;
+
+        void add(FaceVerifier.FaceMatch match) {
+            scoreSum.add(match.score());
+            if (!match.samePerson()) {
+                mismatches.incrementAndGet();
+            } else if (match.score() >= confidentScore) {
+                confident.incrementAndGet();
+            }
+            checked.incrementAndGet();
+        }
+
+        boolean settled() {
+            int bad = mismatches.get();
+            return cancelled || bad >= maxMismatches || (bad == 0 && confident.get() >= earlyStopMatches);
+        }
+    }
+}
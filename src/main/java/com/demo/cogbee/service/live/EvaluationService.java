@@ -1,53 +1,166 @@
 package com.demo.cogbee.service.live;
 
+import com.demo.cogbee.config.WebRtcSignalingHandler;
 import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.service.QuestionBank;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Scores answers against the rubric of the question they answer, taken from
+ * the {@link QuestionBank}. Whole transcripts are scored in one pass by
+ * {@link #evaluateTranscript}; live answers keep a {@link LiveAnswerScorer}
+ * per session that is fed final transcript segments as they arrive, and the
+ * current score is pushed to the room on a fixed interval whenever it has
+ * changed.
+ */
 @Service
 public class EvaluationService {
 
-	private static final Set<String> REQUIRED_KEYWORDS = new HashSet<>(Arrays.asList(
-			"design", "architecture", "scalability", "database", "latency"
-	));
+	private static class LiveSession {
+		final ReentrantLock lock = new ReentrantLock();
+		final String roomId;
+		final LiveAnswerScorer scorer;
+		boolean dirty;
+
+		LiveSession(String roomId, LiveAnswerScorer scorer) {
+			this.roomId = roomId;
+			this.scorer = scorer;
+		}
+	}
+
+	private final WebRtcSignalingHandler signalingHandler;
+	private final QuestionBank questionBank;
+	private final Map<String, LiveSession> live = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "live-score");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public EvaluationService(WebRtcSignalingHandler signalingHandler,
+							 QuestionBank questionBank,
+							 @Value("${cogbee.live-score.interval-ms:1000}") long intervalMs) {
+		this.signalingHandler = signalingHandler;
+		this.questionBank = questionBank;
+		publisher.scheduleWithFixedDelay(this::publishChanged, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		publisher.shutdownNow();
+	}
 
 	public EvaluationResult evaluateTranscript(String transcript) {
-		String normalized = transcript == null ? "" : transcript.toLowerCase();
+		return evaluateTranscript(null, transcript);
+	}
+
+	// Unknown questions are scored against the default rubric
+	public EvaluationResult evaluateTranscript(Long questionId, String transcript) {
+		LiveAnswerScorer scorer = new LiveAnswerScorer(questionBank.profileOrDefault(questionId).rubric(), -1);
+		scorer.accept(transcript, 0);
+		LiveAnswerScorer.Snapshot s = scorer.snapshot();
+
+		StringBuilder feedback = new StringBuilder();
+		feedback.append("Keywords matched: ").append(s.keywordsMatched()).append("/").append(s.keywordsTotal()).append(". ");
+		feedback.append("Filler words: ").append(s.fillers()).append(". ");
+		if (s.keywordsMatched() * 2 < s.keywordsTotal()) {
+			feedback.append("Try to mention more key concepts (e.g., ")
+					.append(String.join(", ", s.missingKeywords().subList(0, Math.min(2, s.missingKeywords().size()))))
+					.append(").");
+		}
 
-		// 1) Keyword coverage
-		int found = 0;
-		for (String kw : REQUIRED_KEYWORDS) {
-			if (normalized.contains(kw)) found++;
+		return new EvaluationResult(s.score(), feedback.toString(), "");
+	}
+
+	/**
+	 * Starts a fresh live score for the session, against the question it was
+	 * last asked, replacing any previous one.
+	 */
+	public void startLive(String sessionId, String roomId) {
+		ScoringRubric rubric = questionBank.current(sessionId).rubric();
+		live.put(sessionId, new LiveSession(roomId, new LiveAnswerScorer(rubric, System.currentTimeMillis())));
+	}
+
+	// Interim hypotheses are revised by the recognizer, so only finals are scored
+	public void onTranscript(String sessionId, String text, boolean isFinal) {
+		if (!isFinal) return;
+		LiveSession session = live.get(sessionId);
+		if (session == null) return;
+
+		session.lock.lock();
+		try {
+			if (session.scorer.accept(text, System.currentTimeMillis())) session.dirty = true;
+		} finally {
+			session.lock.unlock();
 		}
-		double kwScore = REQUIRED_KEYWORDS.isEmpty() ? 0.0 : ((double) found / REQUIRED_KEYWORDS.size());
+	}
 
-		// 2) Filler word penalty
-		int fillerCount = countOccurrences(normalized, "um") + countOccurrences(normalized, "uh") + countOccurrences(normalized, "like");
-		int totalWords = normalized.isBlank() ? 0 : normalized.split("\\s+").length;
-		double fillerScore = totalWords == 0 ? 1.0 : Math.max(0.0, 1.0 - ((double) fillerCount / totalWords));
+	// null when the session has no live answer
+	public LiveAnswerScorer.Snapshot liveScore(String sessionId) {
+		LiveSession session = live.get(sessionId);
+		if (session == null) return null;
 
-		// 3) Basic fluency (words per second) — if you don't have duration, we can't compute here.
-		// For MVP we approximate fluency by words count normalization (cap at 1.0)
-		double wpsScore = Math.min(1.0, totalWords / 120.0); // expects ~120 words in 1 minute as 'ideal'
+		session.lock.lock();
+		try {
+			return session.scorer.snapshot();
+		} finally {
+			session.lock.unlock();
+		}
+	}
 
-		// Weighted final score
-		double finalNormalized = 0.6 * kwScore + 0.25 * wpsScore + 0.15 * fillerScore;
-		double percent = finalNormalized * 100.0;
+	/** Ends the live answer, pushing its last score if it was not sent yet. */
+	public LiveAnswerScorer.Snapshot stopLive(String sessionId) {
+		LiveSession session = live.remove(sessionId);
+		if (session == null) return null;
+		publish(sessionId, session);
 
-		StringBuilder feedback = new StringBuilder();
-		feedback.append("Keywords matched: ").append(found).append("/").append(REQUIRED_KEYWORDS.size()).append(". ");
-		feedback.append("Filler words: ").append(fillerCount).append(". ");
-		if (kwScore < 0.5) feedback.append("Try to mention more key concepts (e.g., design, scalability).");
+		session.lock.lock();
+		try {
+			return session.scorer.snapshot();
+		} finally {
+			session.lock.unlock();
+		}
+	}
 
-		return new EvaluationResult(percent, feedback.toString(),"");
+	private void publishChanged() {
+		live.forEach((sessionId, session) -> {
+			try {
+				publish(sessionId, session);
+			} catch (Exception e) {
+				System.out.println("Failed to publish live score for " + sessionId + ": " + e.getMessage());
+			}
+		});
 	}
 
-	private int countOccurrences(String text, String sub) {
-		int idx = 0, count = 0;
-		while ((idx = text.indexOf(sub, idx)) != -1) { count++; idx += sub.length(); }
-		return count;
+	private void publish(String sessionId, LiveSession session) {
+		LiveAnswerScorer.Snapshot s;
+		session.lock.lock();
+		try {
+			if (!session.dirty) return;
+			session.dirty = false;
+			s = session.scorer.snapshot();
+		} finally {
+			session.lock.unlock();
+		}
+		if (session.roomId == null) return;
+
+		signalingHandler.sendLiveScore(session.roomId, sessionId, Map.of(
+				"score", Math.round(s.score() * 10) / 10.0,
+				"keywordsMatched", s.keywordsMatched(),
+				"keywordsTotal", s.keywordsTotal(),
+				"missingKeywords", s.missingKeywords(),
+				"fillers", s.fillers(),
+				"words", s.words(),
+				"wordsPerMinute", Math.round(s.wordsPerMinute())
+		));
 	}
 }
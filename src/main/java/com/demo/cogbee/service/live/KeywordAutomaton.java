@@ -0,0 +1,122 @@
+package com.demo.cogbee.service.live;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Aho–Corasick automaton over words instead of characters. Patterns are
+ * phrases of one or more whole words, so "like" never matches inside
+ * "likely", and every token is looked at once no matter how many patterns
+ * there are. Text is fed through a {@link Cursor} that keeps the match state
+ * between calls, so a transcript can be scanned delta by delta without going
+ * back over earlier words. Immutable and safe to share once built.
+ */
+public final class KeywordAutomaton {
+
+	private static final int[] NONE = new int[0];
+
+	private final List<Map<String, Integer>> next = new ArrayList<>();
+	private final int[] fail;
+	private final int[][] outputs;
+
+	/** @param phrases phrase to the id reported when it matches; several phrases may share an id */
+	public KeywordAutomaton(Map<String, Integer> phrases) {
+		List<List<Integer>> own = new ArrayList<>();
+		next.add(new HashMap<>());
+		own.add(new ArrayList<>());
+
+		phrases.forEach((phrase, id) -> {
+			List<String> words = new ArrayList<>();
+			tokenize(phrase, words::add);
+			if (words.isEmpty()) return;
+
+			int node = 0;
+			for (String word : words) {
+				Integer child = next.get(node).get(word);
+				if (child == null) {
+					child = next.size();
+					next.get(node).put(word, child);
+					next.add(new HashMap<>());
+					own.add(new ArrayList<>());
+				}
+				node = child;
+			}
+			if (!own.get(node).contains(id)) own.get(node).add(id);
+		});
+
+		int size = next.size();
+		fail = new int[size];
+		outputs = new int[size][];
+		outputs[0] = NONE;
+
+		// breadth-first, so a node's failure target is complete before the node itself
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int child : next.get(0).values()) {
+			fail[child] = 0;
+			outputs[child] = toArray(own.get(child), NONE);
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (Map.Entry<String, Integer> edge : next.get(node).entrySet()) {
+				int child = edge.getValue();
+				int f = fail[node];
+				while (f != 0 && !next.get(f).containsKey(edge.getKey())) f = fail[f];
+				fail[child] = next.get(f).getOrDefault(edge.getKey(), 0);
+				outputs[child] = toArray(own.get(child), outputs[fail[child]]);
+				queue.add(child);
+			}
+		}
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Splits text into lowercase words made of letters, digits and inner
+	 * apostrophes. Patterns and transcripts go through the same rules.
+	 */
+	public static void tokenize(CharSequence text, Consumer<String> words) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 0, n = text.length(); i <= n; i++) {
+			char c = i < n ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c) || (c == '\'' && word.length() > 0)) {
+				word.append(c);
+				continue;
+			}
+			if (word.length() > 0) {
+				int end = word.length();
+				while (end > 0 && word.charAt(end - 1) == '\'') end--;
+				if (end > 0) words.accept(word.substring(0, end).toLowerCase(Locale.ROOT));
+				word.setLength(0);
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> own, int[] inherited) {
+		if (own.isEmpty()) return inherited;
+		int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+		for (int i = 0; i < own.size(); i++) merged[inherited.length + i] = own.get(i);
+		return merged;
+	}
+
+	/** Match state for one text stream. Not thread-safe. */
+	public final class Cursor {
+
+		private int state;
+
+		// ids of every pattern that ends at this word; the array must not be modified
+		public int[] step(String word) {
+			while (state != 0 && !next.get(state).containsKey(word)) state = fail[state];
+			state = next.get(state).getOrDefault(word, 0);
+			return outputs[state];
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.demo.cogbee.service.live;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running score of one answer, updated from transcript deltas. Each delta is
+ * tokenized and pushed through the rubric's automaton once; keyword coverage,
+ * filler and word counts are kept as counters, so a snapshot costs the same
+ * whether the answer is ten words or ten minutes long. Every delta is taken
+ * to end on a word boundary, which holds for recognizer segments. Not
+ * thread-safe.
+ */
+public class LiveAnswerScorer {
+
+	static final double KEYWORD_WEIGHT = 0.6;
+	static final double FLUENCY_WEIGHT = 0.25;
+	static final double FILLER_WEIGHT = 0.15;
+	// ~120 words per minute counts as fully fluent
+	static final double IDEAL_WORDS_PER_MINUTE = 120;
+
+	/** @param wordsPerMinute -1 when the answer has no timing (a whole transcript scored at once) */
+	public record Snapshot(double score, int keywordsMatched, int keywordsTotal, List<String> missingKeywords,
+						   int fillers, int words, double wordsPerMinute) {
+	}
+
+	private final ScoringRubric rubric;
+	private final KeywordAutomaton.Cursor cursor;
+	private final boolean[] matched;
+	private final long startedAt;
+	private int keywordsMatched;
+	private double matchedWeight;
+	private int fillers;
+	private int words;
+	private long lastWordAt;
+
+	/** @param startedAt when the answer started, in ms; negative for an untimed transcript */
+	public LiveAnswerScorer(ScoringRubric rubric, long startedAt) {
+		this.rubric = rubric;
+		this.cursor = rubric.automaton().cursor();
+		this.matched = new boolean[rubric.keywords().size()];
+		this.startedAt = startedAt;
+	}
+
+	/** @return true when the delta added at least one word */
+	public boolean accept(String delta, long now) {
+		if (delta == null) return false;
+		int before = words;
+		KeywordAutomaton.tokenize(delta, this::step);
+		if (words == before) return false;
+		lastWordAt = now;
+		return true;
+	}
+
+	public Snapshot snapshot() {
+		double kwScore = rubric.totalWeight() <= 0 ? 0.0 : Math.min(1.0, matchedWeight / rubric.totalWeight());
+		double fillerScore = words == 0 ? 1.0 : Math.max(0.0, 1.0 - ((double) fillers / words));
+
+		double wpm = -1;
+		double fluencyScore;
+		if (startedAt >= 0) {
+			// measured up to the last word, so a pause at the end doesn't drag the rate down
+			long elapsedMs = Math.max(1_000, lastWordAt - startedAt);
+			wpm = words * 60_000.0 / elapsedMs;
+			fluencyScore = Math.min(1.0, wpm / IDEAL_WORDS_PER_MINUTE);
+		} else {
+			// no duration: approximate by word count, as if the answer took a minute
+			fluencyScore = Math.min(1.0, words / IDEAL_WORDS_PER_MINUTE);
+		}
+
+		double score = (KEYWORD_WEIGHT * kwScore + FLUENCY_WEIGHT * fluencyScore + FILLER_WEIGHT * fillerScore) * 100.0;
+
+		List<String> missing = new ArrayList<>();
+		for (int i = 0; i < matched.length; i++) {
+			if (!matched[i]) missing.add(rubric.keywords().get(i).name());
+		}
+		return new Snapshot(score, keywordsMatched, matched.length, missing, fillers, words, wpm);
+	}
+
+	private void step(String word) {
+		words++;
+		for (int id : cursor.step(word)) {
+			if (id == ScoringRubric.FILLER) {
+				fillers++;
+			} else if (!matched[id]) {
+				matched[id] = true;
+				keywordsMatched++;
+				matchedWeight += rubric.keywords().get(id).weight();
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.demo.cogbee.service.live;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Used when no recognizer is configured: audio is drained and discarded, and
+ * no subtitles or live scores are produced.
+ */
+@Component
+@ConditionalOnProperty(name = "cogbee.asr.recognizer", havingValue = "none", matchIfMissing = true)
+public class NoopSpeechRecognizer implements SpeechRecognizer {
+
+	private static final RecognitionStream DISCARD = new RecognitionStream() {
+		@Override
+		public void feed(ByteBuffer pcm) {
+		}
+
+		@Override
+		public void finish() {
+		}
+	};
+
+	@Override
+	public RecognitionStream open(String sessionId, int sampleRate, TranscriptListener listener) {
+		return DISCARD;
+	}
+}
@@ -0,0 +1,64 @@
+package com.demo.cogbee.service.live;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a live answer is scored against: keywords, each with its alternative
+ * phrasings and a weight, and the filler words to count. All of them are
+ * compiled into one {@link KeywordAutomaton}, so a transcript is matched in a
+ * single pass.
+ */
+public final class ScoringRubric {
+
+	static final int FILLER = -1;
+
+	public record Keyword(String name, List<String> phrases, double weight) {
+
+		// Matching is by whole word, so inflections the answer may use are listed as alternatives
+		public static Keyword of(String name, String... alternatives) {
+			List<String> phrases = new ArrayList<>();
+			phrases.add(name);
+			phrases.addAll(List.of(alternatives));
+			return new Keyword(name, phrases, 1.0);
+		}
+	}
+
+	private final List<Keyword> keywords;
+	private final double totalWeight;
+	private final KeywordAutomaton automaton;
+
+	public ScoringRubric(List<Keyword> keywords, List<String> fillers) {
+		this.keywords = List.copyOf(keywords);
+
+		Map<String, Integer> phrases = new HashMap<>();
+		for (String filler : fillers) {
+			phrases.put(filler, FILLER);
+		}
+		double total = 0;
+		for (int i = 0; i < this.keywords.size(); i++) {
+			Keyword keyword = this.keywords.get(i);
+			total += keyword.weight();
+			phrases.put(keyword.name(), i);
+			for (String phrase : keyword.phrases()) {
+				phrases.put(phrase, i);
+			}
+		}
+		this.totalWeight = total;
+		this.automaton = new KeywordAutomaton(phrases);
+	}
+
+	public List<Keyword> keywords() {
+		return keywords;
+	}
+
+	public double totalWeight() {
+		return totalWeight;
+	}
+
+	KeywordAutomaton automaton() {
+		return automaton;
+	}
+}
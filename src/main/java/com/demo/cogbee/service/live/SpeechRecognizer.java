@@ -0,0 +1,26 @@
+package com.demo.cogbee.service.live;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming speech recognizer. Implementations receive 16-bit mono PCM in
+ * small windows and report partial and final hypotheses through the listener.
+ */
+public interface SpeechRecognizer {
+
+	RecognitionStream open(String sessionId, int sampleRate, TranscriptListener listener);
+
+	interface RecognitionStream {
+
+		// pcm is only valid for the duration of the call; copy it if it must be kept
+		void feed(ByteBuffer pcm);
+
+		// no more audio will arrive; the final transcript must be reported before returning
+		void finish();
+	}
+
+	@FunctionalInterface
+	interface TranscriptListener {
+		void onTranscript(String text, boolean isFinal);
+	}
+}
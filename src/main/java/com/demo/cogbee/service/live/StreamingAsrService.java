@@ -0,0 +1,139 @@
+package com.demo.cogbee.service.live;
+
+import com.demo.cogbee.config.WebRtcSignalingHandler;
+import com.demo.cogbee.config.audio.AudioRingBuffer;
+import com.demo.cogbee.config.audio.AudioStreamEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Feeds live /audio-stream audio to the {@link SpeechRecognizer} in fixed
+ * windows and pushes partial/final transcripts to the room as subtitles.
+ * Final transcripts also feed the session's live score in
+ * {@link EvaluationService}. A stream reads the audio buffer of the socket
+ * that opened it, so a reconnect replaces it and the old socket's late close
+ * leaves the new stream alone.
+ */
+@Service
+public class StreamingAsrService {
+
+	private static final int SAMPLE_RATE = 16_000;
+
+	private final WebRtcSignalingHandler signalingHandler;
+	private final SpeechRecognizer recognizer;
+	private final EvaluationService evaluationService;
+
+	private final Map<String, ActiveStream> streams = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "asr-window");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public StreamingAsrService(WebRtcSignalingHandler signalingHandler,
+							   SpeechRecognizer recognizer,
+							   EvaluationService evaluationService,
+							   @Value("${cogbee.asr.window-ms:500}") long windowMs) {
+		this.signalingHandler = signalingHandler;
+		this.recognizer = recognizer;
+		this.evaluationService = evaluationService;
+		ticker.scheduleWithFixedDelay(this::pumpAll, windowMs, windowMs, TimeUnit.MILLISECONDS);
+	}
+
+	@EventListener
+	public void onAudioStream(AudioStreamEvent event) {
+		if (event.type() == AudioStreamEvent.Type.OPENED) {
+			start(event.sessionId(), event.roomId(), event.buffer());
+		} else {
+			stop(event.sessionId(), event.buffer());
+		}
+	}
+
+	public void start(String sessionId, String roomId, AudioRingBuffer audio) {
+		SpeechRecognizer.TranscriptListener listener = (text, isFinal) -> {
+			if (roomId != null) {
+				signalingHandler.sendSubtitle(roomId, sessionId, text, isFinal);
+			}
+			evaluationService.onTranscript(sessionId, text, isFinal);
+		};
+
+		ActiveStream previous = streams.put(sessionId,
+				new ActiveStream(audio, recognizer.open(sessionId, SAMPLE_RATE, listener)));
+		if (previous != null) {
+			previous.finish();
+		}
+		// after the previous stream's last transcript, so it isn't scored as part of this answer
+		evaluationService.startLive(sessionId, roomId);
+	}
+
+	// Flushes remaining audio and emits the final transcript, unless the stream was already replaced
+	public void stop(String sessionId, AudioRingBuffer audio) {
+		ActiveStream stream = streams.get(sessionId);
+		if (stream != null && stream.audio == audio && streams.remove(sessionId, stream)) {
+			stream.finish();
+			evaluationService.stopLive(sessionId);
+		}
+	}
+
+	public boolean isActive(String sessionId) {
+		return streams.containsKey(sessionId);
+	}
+
+	private void pumpAll() {
+		for (ActiveStream stream : streams.values()) {
+			try {
+				stream.pump();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		ticker.shutdownNow();
+	}
+
+	private class ActiveStream {
+		final AudioRingBuffer audio;
+		final SpeechRecognizer.RecognitionStream recognition;
+		final ReentrantLock lock = new ReentrantLock();
+		boolean finished;
+
+		ActiveStream(AudioRingBuffer audio, SpeechRecognizer.RecognitionStream recognition) {
+			this.audio = audio;
+			this.recognition = recognition;
+		}
+
+		void pump() {
+			lock.lock();
+			try {
+				if (finished) return;
+				audio.drain(recognition::feed);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void finish() {
+			lock.lock();
+			try {
+				if (finished) return;
+				audio.drain(recognition::feed);
+				finished = true;
+				recognition.finish();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
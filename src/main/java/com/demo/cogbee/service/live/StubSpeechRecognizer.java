@@ -0,0 +1,41 @@
+package com.demo.cogbee.service.live;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Local recognizer that does no real recognition: it reports how much audio it
+ * has heard. Only for tests and local runs of the pipeline without a provider,
+ * so it is limited to the dev and test profiles.
+ */
+@Component
+@Profile({"dev", "test"})
+@ConditionalOnProperty(name = "cogbee.asr.recognizer", havingValue = "stub")
+public class StubSpeechRecognizer implements SpeechRecognizer {
+
+	@Override
+	public RecognitionStream open(String sessionId, int sampleRate, TranscriptListener listener) {
+		return new RecognitionStream() {
+			private final int bytesPerSecond = sampleRate * 2;
+			private long bytes;
+
+			@Override
+			public void feed(ByteBuffer pcm) {
+				bytes += pcm.remaining();
+				listener.onTranscript(describe(), false);
+			}
+
+			@Override
+			public void finish() {
+				listener.onTranscript(describe(), true);
+			}
+
+			private String describe() {
+				return String.format("[%.1fs of audio]", (double) bytes / bytesPerSecond);
+			}
+		};
+	}
+}
@@ -0,0 +1,181 @@
+package com.demo.cogbee.service.media;
+
+import com.demo.cogbee.util.WavChunkWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the WAV chunks of the answer each session is recording. Chunks go
+ * into answer-&lt;id&gt;.wav.part through a {@link WavChunkWriter} that stays
+ * open between requests; finishing patches the header and moves the file to
+ * answer-&lt;id&gt;.wav. Every answer has its own file, so a new answer never
+ * overwrites one still waiting to be analysed; whoever scores a recording
+ * deletes it. Recordings left open by a client that never finishes are
+ * closed after they go idle and kept for a late finish.
+ */
+@Component
+public class AnswerRecorder {
+
+    public record Recording(File file, WavChunkWriter.Format format, long dataBytes) {
+    }
+
+    private static class Session {
+        final ReentrantLock lock = new ReentrantLock();
+        final Path part;
+        final Path target;
+        volatile long lastWriteAt = System.currentTimeMillis();
+        WavChunkWriter writer;
+        boolean closed;
+
+        Session(Path part, Path target) {
+            this.part = part;
+            this.target = target;
+        }
+    }
+
+    private final String sessionDir;
+    private final WavChunkWriter.Format defaultFormat;
+    private final long idleCloseMs;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // closed but not yet handed out: idle-closed, or given back after a rejected job
+    private final Map<String, Recording> unclaimed = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "answer-recorder-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AnswerRecorder(@Value("${cogbee.recording.dir:/Users/apple/IdeaProjects/Live-Cogbee/debug_videos/}") String sessionDir,
+                          @Value("${cogbee.recording.sample-rate:16000}") int sampleRate,
+                          @Value("${cogbee.recording.channels:1}") int channels,
+                          @Value("${cogbee.recording.bits-per-sample:16}") int bitsPerSample,
+                          @Value("${cogbee.recording.idle-close-ms:600000}") long idleCloseMs) {
+        this.sessionDir = sessionDir;
+        this.defaultFormat = new WavChunkWriter.Format(sampleRate, channels, bitsPerSample);
+        this.idleCloseMs = idleCloseMs;
+
+        long sweepMs = Math.max(1_000, idleCloseMs / 4);
+        sweeper.scheduleWithFixedDelay(this::closeIdle, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        sessions.forEach(this::closeQuietly);
+    }
+
+    public void append(String sessionId, InputStream chunk) throws IOException {
+        while (true) {
+            Session session = sessions.computeIfAbsent(sessionId, this::newSession);
+            session.lock.lock();
+            try {
+                // lost a race with finish(): the next chunk starts a new recording
+                if (session.closed) continue;
+
+                // opened here rather than in computeIfAbsent, which would do file I/O under the map's bin lock
+                if (session.writer == null) {
+                    Files.createDirectories(session.target.getParent());
+                    session.writer = new WavChunkWriter(session.part, defaultFormat);
+                }
+                session.writer.append(chunk);
+                session.lastWriteAt = System.currentTimeMillis();
+                return;
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the session's recording and returns it, or null when there is
+     * nothing to analyse.
+     */
+    public Recording finish(String sessionId) throws IOException {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            // nothing open: the recording closed while idle, or one given back for a retry
+            return unclaimed.remove(sessionId);
+        }
+
+        Recording recording = close(session);
+        if (recording != null) discard(unclaimed.remove(sessionId));
+        return recording;
+    }
+
+    /** Keeps a finished recording that could not be scored yet, for the next {@link #finish}. */
+    public void giveBack(String sessionId, Recording recording) {
+        discard(unclaimed.put(sessionId, recording));
+    }
+
+    public int openRecordings() {
+        return sessions.size();
+    }
+
+    private Recording close(Session session) throws IOException {
+        session.lock.lock();
+        try {
+            session.closed = true;
+            if (session.writer == null) return null;
+
+            WavChunkWriter.Format format = session.writer.finish();
+            Files.move(session.part, session.target, StandardCopyOption.REPLACE_EXISTING);
+            return new Recording(session.target.toFile(), format, session.writer.dataBytes());
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private Session newSession(String sessionId) {
+        if (sessionId.isBlank() || sessionId.contains("/") || sessionId.contains("\\") || sessionId.contains("..")) {
+            throw new IllegalArgumentException("Invalid session id");
+        }
+        Path target = Path.of(sessionDir, sessionId, "answer-" + UUID.randomUUID() + ".wav");
+        return new Session(target.resolveSibling(target.getFileName() + ".part"), target);
+    }
+
+    private static void discard(Recording recording) {
+        if (recording == null) return;
+        try {
+            Files.deleteIfExists(recording.file().toPath());
+        } catch (IOException e) {
+            System.out.println("Could not delete " + recording.file() + ": " + e.getMessage());
+        }
+    }
+
+    private void closeIdle() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((id, session) -> {
+            if (now - session.lastWriteAt > idleCloseMs) {
+                System.out.println("Closing idle recording for: " + id);
+                closeQuietly(id, session);
+            }
+        });
+    }
+
+    private void closeQuietly(String sessionId, Session session) {
+        // only if it is still the session's current recording
+        if (!sessions.remove(sessionId, session)) return;
+        try {
+            Recording recording = close(session);
+            if (recording != null) giveBack(sessionId, recording);
+        } catch (Exception e) {
+            System.out.println("Failed to close recording for " + sessionId + ": " + e.getMessage());
+        }
+    }
+}
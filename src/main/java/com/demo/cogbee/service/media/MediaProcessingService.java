@@ -0,0 +1,302 @@
+package com.demo.cogbee.service.media;
+
+import com.demo.cogbee.util.FFmpegPipe;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs every ffmpeg process on a fixed number of worker slots, one per core
+ * by default, so a burst of uploads queues up instead of forking dozens of
+ * processes that fight over the CPU. LIVE jobs (a candidate is waiting on the
+ * result) start ahead of BATCH ones. A slot is held for as long as the process
+ * lives; each process is killed when it runs past its deadline, and cancelling
+ * a job's future kills it or drops it from the queue. Queue wait and run time
+ * are recorded per job name.
+ */
+@Service
+public class MediaProcessingService {
+
+    public enum Priority { LIVE, BATCH }
+
+    public record JobStats(long completed, long failed, long timedOut, long cancelled,
+                           double avgQueueMs, double avgRunMs, long maxRunMs) {
+    }
+
+    public record Stats(int workers, int running, int queued, long rejected, Map<String, JobStats> jobs) {
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long seq;
+        final long enqueuedAt = System.nanoTime();
+        final JobMetrics metrics;
+        final CompletableFuture<FFmpegPipe> result;
+        final Runnable start;
+
+        Waiter(Priority priority, long seq, JobMetrics metrics, CompletableFuture<FFmpegPipe> result, Runnable start) {
+            this.priority = priority;
+            this.seq = seq;
+            this.metrics = metrics;
+            this.result = result;
+            this.start = start;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+
+    private static class JobMetrics {
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder timedOut = new LongAdder();
+        final LongAdder cancelled = new LongAdder();
+        final LongAdder started = new LongAdder();
+        final LongAdder queueNanos = new LongAdder();
+        final LongAdder runNanos = new LongAdder();
+        final AtomicLong maxRunNanos = new AtomicLong();
+
+        JobStats snapshot() {
+            long starts = started.sum();
+            long finished = completed.sum() + failed.sum() + timedOut.sum();
+            return new JobStats(completed.sum(), failed.sum(), timedOut.sum(), cancelled.sum(),
+                    starts == 0 ? 0 : queueNanos.sum() / 1e6 / starts,
+                    finished == 0 ? 0 : runNanos.sum() / 1e6 / finished,
+                    maxRunNanos.get() / 1_000_000);
+        }
+    }
+
+    private final String ffmpegPath;
+    private final int workers;
+    private final int maxQueued;
+    private final long defaultTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+    private int running;
+    private long nextSeq;
+
+    private final LongAdder rejected = new LongAdder();
+    private final Map<String, JobMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ffmpeg-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MediaProcessingService(@Value("${cogbee.media.ffmpeg-path:ffmpeg}") String ffmpegPath,
+                                  @Value("${cogbee.media.workers:0}") int workers,
+                                  @Value("${cogbee.media.max-queued:200}") int maxQueued,
+                                  @Value("${cogbee.media.job-timeout-ms:120000}") long defaultTimeoutMs) {
+        this.ffmpegPath = ffmpegPath;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.maxQueued = Math.max(0, maxQueued);
+        this.defaultTimeoutMs = defaultTimeoutMs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    public CompletableFuture<FFmpegPipe> open(Priority priority, String job, List<String> args, InputStream stdin) {
+        return open(priority, job, args, stdin, defaultTimeoutMs);
+    }
+
+    /**
+     * Starts ffmpeg once a worker slot is free. The caller owns the returned
+     * pipe and must close it; the slot is given back when the process exits.
+     */
+    public CompletableFuture<FFmpegPipe> open(Priority priority, String job, List<String> args,
+                                              InputStream stdin, long timeoutMs) {
+        CompletableFuture<FFmpegPipe> result = new CompletableFuture<>();
+        JobMetrics jobMetrics = metrics.computeIfAbsent(job, k -> new JobMetrics());
+
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (waiting.size() >= maxQueued && running >= workers) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException("media queue full"));
+            }
+            waiter = new Waiter(priority, nextSeq++, jobMetrics, result,
+                    () -> launch(job, args, stdin, timeoutMs, jobMetrics, result));
+            waiting.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+
+        Waiter queued = waiter;
+        result.whenComplete((pipe, error) -> {
+            if (result.isCancelled() && remove(queued)) {
+                jobMetrics.cancelled.increment();
+            }
+        });
+
+        dispatch();
+        return result;
+    }
+
+    // Runs a job that writes its own output file; completes when ffmpeg exits cleanly
+    public CompletableFuture<Void> run(Priority priority, String job, List<String> args) {
+        return run(priority, job, args, null);
+    }
+
+    // Same, with input streamed to ffmpeg's stdin
+    public CompletableFuture<Void> run(Priority priority, String job, List<String> args, InputStream stdin) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<FFmpegPipe> started = open(priority, job, args, stdin);
+
+        started.whenComplete((pipe, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+                return;
+            }
+            pipe.onExit().whenComplete((exit, e) -> {
+                if (exit != null && exit == 0) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(new RuntimeException(job + " failed, exit code = " + exit
+                            + (pipe.killed() ? " (killed)" : "") + ": " + pipe.stderrTail()));
+                }
+            });
+        });
+
+        // kill on cancel, whether it is still queued or already running
+        done.whenComplete((v, error) -> {
+            if (done.isCancelled()) {
+                started.cancel(false);
+                started.thenAccept(FFmpegPipe::close);
+            }
+        });
+        return done;
+    }
+
+    public Stats stats() {
+        Map<String, JobStats> jobs = new TreeMap<>();
+        metrics.forEach((job, m) -> jobs.put(job, m.snapshot()));
+
+        lock.lock();
+        try {
+            return new Stats(workers, running, waiting.size(), rejected.sum(), jobs);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void launch(String job, List<String> args, InputStream stdin, long timeoutMs,
+                        JobMetrics jobMetrics, CompletableFuture<FFmpegPipe> result) {
+        FFmpegPipe pipe;
+        try {
+            pipe = FFmpegPipe.start(ffmpegPath, args, stdin);
+        } catch (IOException e) {
+            jobMetrics.failed.increment();
+            release();
+            result.completeExceptionally(new RuntimeException("Could not start ffmpeg: " + e.getMessage(), e));
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+            System.out.println("ffmpeg job " + job + " exceeded " + timeoutMs + " ms, killing it");
+            timedOut.set(true);
+            pipe.close();
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+
+        pipe.onExit().whenComplete((exit, error) -> {
+            deadline.cancel(false);
+            release();
+
+            long runNanos = System.nanoTime() - startedAt;
+            jobMetrics.runNanos.add(runNanos);
+            jobMetrics.maxRunNanos.accumulateAndGet(runNanos, Math::max);
+
+            String outcome;
+            if (timedOut.get()) {
+                jobMetrics.timedOut.increment();
+                outcome = "timed out";
+            } else if (pipe.killed()) {
+                jobMetrics.cancelled.increment();
+                outcome = "stopped";
+            } else if (exit != null && exit == 0) {
+                jobMetrics.completed.increment();
+                outcome = "done";
+            } else {
+                jobMetrics.failed.increment();
+                outcome = "failed (exit " + exit + ")";
+            }
+            System.out.println("ffmpeg job " + job + " " + outcome + " in " + runNanos / 1_000_000 + " ms");
+        });
+
+        if (!result.complete(pipe)) {
+            // cancelled between being dequeued and starting
+            pipe.close();
+        }
+    }
+
+    private boolean remove(Waiter waiter) {
+        lock.lock();
+        try {
+            return waiting.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Waiter next;
+            lock.lock();
+            try {
+                if (running >= workers) return;
+                next = waiting.poll();
+                if (next == null) return;
+                running++;
+            } finally {
+                lock.unlock();
+            }
+
+            if (next.result.isDone()) {
+                // cancelled while queued
+                lock.lock();
+                try {
+                    running--;
+                } finally {
+                    lock.unlock();
+                }
+                continue;
+            }
+
+            next.metrics.started.increment();
+            next.metrics.queueNanos.add(System.nanoTime() - next.enqueuedAt);
+            next.start.run();
+        }
+    }
+}
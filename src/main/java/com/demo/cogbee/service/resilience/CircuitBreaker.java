@@ -0,0 +1,154 @@
+package com.demo.cogbee.service.resilience;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. It opens when the failure rate over the last
+ * {@code windowSize} calls reaches the threshold (after at least
+ * {@code minimumCalls}), rejects everything for {@code openMs}, then lets
+ * {@code halfOpenCalls} probes through: all of them succeeding closes it,
+ * any failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // handed out per call so results of calls admitted before a state change are not misattributed
+    public static final class Permit {
+        private final boolean probe;
+        private final long generation;
+
+        private Permit(boolean probe, long generation) {
+            this.probe = probe;
+            this.generation = generation;
+        }
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMs;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean[] failed;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMs, int halfOpenCalls, LongSupplier clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMs = openMs;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.clock = clock;
+        this.failed = new boolean[windowSize];
+    }
+
+    // null when the call must not go out
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (clock.getAsLong() - openedAt < openMs) {
+                    return null;
+                }
+                transition(State.HALF_OPEN);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenCalls) {
+                    return null;
+                }
+                probesInFlight++;
+                return new Permit(true, generation);
+            }
+
+            return new Permit(false, generation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onResult(Permit permit, boolean success) {
+        lock.lock();
+        try {
+            if (permit.generation != generation) return;
+
+            if (permit.probe) {
+                probesInFlight--;
+                if (!success) {
+                    open();
+                } else if (++probeSuccesses >= halfOpenCalls) {
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+
+            if (state != State.CLOSED) return;
+
+            if (recorded == windowSize) {
+                if (failed[next]) failures--;
+            } else {
+                recorded++;
+            }
+            failed[next] = !success;
+            if (!success) failures++;
+            next = (next + 1) % windowSize;
+
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The call never went out (e.g. bulkhead full); frees a probe slot without counting
+    public void release(Permit permit) {
+        lock.lock();
+        try {
+            if (permit.probe && permit.generation == generation) {
+                probesInFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openedAt = clock.getAsLong();
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (to == State.CLOSED) {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+    }
+}
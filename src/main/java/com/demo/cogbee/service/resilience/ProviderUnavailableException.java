@@ -0,0 +1,16 @@
+package com.demo.cogbee.service.resilience;
+
+// Thrown without calling the provider: its circuit is open or its bulkhead is full
+public class ProviderUnavailableException extends RuntimeException {
+
+    private final String provider;
+
+    public ProviderUnavailableException(String provider, String reason) {
+        super(provider + " unavailable: " + reason);
+        this.provider = provider;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+}
@@ -0,0 +1,54 @@
+package com.demo.cogbee.service.resilience;
+
+import com.demo.cogbee.util.AsyncLimiter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * One {@link ResilientExecutor} per provider, so a slow vendor only uses up
+ * its own slots. Settings live under cogbee.resilience.&lt;provider&gt;.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    private final Environment env;
+
+    public ResilienceConfig(Environment env) {
+        this.env = env;
+    }
+
+    @Bean
+    public ResilientExecutor geminiResilience() {
+        return create("gemini", 16, 30_000);
+    }
+
+    @Bean
+    public ResilientExecutor speechFlowResilience() {
+        return create("speechflow", 8, 120_000);
+    }
+
+    @Bean
+    public ResilientExecutor faceResilience() {
+        return create("faceplusplus", 8, 10_000);
+    }
+
+    private ResilientExecutor create(String provider, int defaultConcurrency, long defaultTimeoutMs) {
+        String prefix = "cogbee.resilience." + provider + ".";
+
+        AsyncLimiter bulkhead = new AsyncLimiter(
+                env.getProperty(prefix + "max-concurrent", Integer.class, defaultConcurrency),
+                env.getProperty(prefix + "max-queued", Integer.class, defaultConcurrency * 4));
+
+        CircuitBreaker breaker = new CircuitBreaker(
+                env.getProperty(prefix + "window-size", Integer.class, 20),
+                env.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                env.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+                env.getProperty(prefix + "open-ms", Long.class, 30_000L),
+                env.getProperty(prefix + "half-open-calls", Integer.class, 2),
+                System::currentTimeMillis);
+
+        return new ResilientExecutor(provider, bulkhead, breaker,
+                env.getProperty(prefix + "timeout-ms", Long.class, defaultTimeoutMs));
+    }
+}
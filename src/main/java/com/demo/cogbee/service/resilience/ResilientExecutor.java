@@ -0,0 +1,133 @@
+package com.demo.cogbee.service.resilience;
+
+import com.demo.cogbee.util.AsyncLimiter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Guards every call to one third-party provider: the circuit breaker is
+ * checked first, the call then waits for a bulkhead slot (bounded
+ * concurrency and queue). The timeout covers both the wait for a slot and
+ * the call itself, so a caller never waits longer than it even when the
+ * bulkhead is backed up. When the provider is failing, callers get a
+ * {@link ProviderUnavailableException} immediately instead of holding a
+ * request thread. A call failing with {@link IllegalArgumentException} was
+ * given bad input and is not held against the provider.
+ */
+public class ResilientExecutor {
+
+    public record Stats(String provider, CircuitBreaker.State state, int inFlight, int queued,
+                        long calls, long failures, long timeouts, long rejected,
+                        long shortCircuited, long fallbacks) {
+    }
+
+    private final String name;
+    private final AsyncLimiter bulkhead;
+    private final CircuitBreaker breaker;
+    private final long timeoutMs;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ResilientExecutor(String name, AsyncLimiter bulkhead, CircuitBreaker breaker, long timeoutMs) {
+        this.name = name;
+        this.bulkhead = bulkhead;
+        this.breaker = breaker;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == null) {
+            shortCircuited.increment();
+            return CompletableFuture.failedFuture(new ProviderUnavailableException(name, "circuit open"));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        // timing out the bulkhead's future also makes it skip the call if it is still queued
+        bulkhead.submit(() -> {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return CompletableFuture.<T>failedFuture(new TimeoutException());
+            calls.increment();
+            // the started call keeps only what is left, so it frees its slot by the deadline
+            return call.get().orTimeout(remaining, TimeUnit.NANOSECONDS);
+        }).orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+
+            if (cause instanceof RejectedExecutionException) {
+                breaker.release(permit);
+                rejected.increment();
+                result.completeExceptionally(new ProviderUnavailableException(name, "bulkhead full"));
+                return;
+            }
+
+            if (cause instanceof IllegalArgumentException) {
+                breaker.release(permit);
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            breaker.onResult(permit, error == null);
+            if (error != null) {
+                failures.increment();
+                if (cause instanceof TimeoutException) timeouts.increment();
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(value);
+            }
+        });
+
+        return result;
+    }
+
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, Function<Throwable, T> fallback) {
+        return withFallback(execute(call), fallback);
+    }
+
+    // For callers that must not cache or share the fallback value (e.g. behind a result cache)
+    public <T> CompletableFuture<T> withFallback(CompletableFuture<T> future, Function<Throwable, T> fallback) {
+        return future.exceptionally(error -> {
+            Throwable cause = unwrap(error);
+            fallbacks.increment();
+            System.out.println(name + " call failed, using fallback: " + cause);
+            return fallback.apply(cause);
+        });
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    public Stats stats() {
+        return new Stats(name, breaker.state(), bulkhead.inFlight(), bulkhead.queued(),
+                calls.sum(), failures.sum(), timeouts.sum(), rejected.sum(),
+                shortCircuited.sum(), fallbacks.sum());
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,103 @@
+package com.demo.cogbee.util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many async calls are in flight without parking a thread per
+ * waiter: calls over the limit are queued and started as earlier ones
+ * complete. A queued call whose result future was already completed
+ * (timed out or cancelled by the caller) is skipped when its turn comes.
+ * With a queue bound, calls arriving while the queue is full fail at once
+ * with {@link RejectedExecutionException}.
+ */
+public class AsyncLimiter {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    public AsyncLimiter(int maxConcurrent) {
+        this(maxConcurrent, Integer.MAX_VALUE);
+    }
+
+    public AsyncLimiter(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be >= 1");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        // counts calls not yet started, so a free slot is not mistaken for a full queue
+        long capacity = (long) maxQueued + Math.max(0, maxConcurrent - inFlight.get());
+        if (queuedCount.incrementAndGet() > capacity) {
+            queuedCount.decrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("queue full"));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        waiting.add(() -> {
+            if (result.isDone()) {
+                release();
+                return;
+            }
+
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+
+            started.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+
+        dispatch();
+        return result;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int queued() {
+        return queuedCount.get();
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxConcurrent) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queuedCount.decrementAndGet();
+            next.run();
+        }
+    }
+}
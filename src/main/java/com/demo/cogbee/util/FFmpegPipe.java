@@ -0,0 +1,130 @@
+package com.demo.cogbee.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An ffmpeg process wired through pipes: optional input is copied to stdin on a
+ * background thread, output is read from {@link #stdout()}, and stderr is
+ * drained in the background keeping only the last lines for error reports.
+ */
+public class FFmpegPipe implements AutoCloseable {
+
+	private static final int STDERR_TAIL_LINES = 20;
+
+	private final Process process;
+	private final Deque<String> stderrTail = new ArrayDeque<>();
+	private final ReentrantLock stderrLock = new ReentrantLock();
+	private volatile boolean killed;
+
+	private FFmpegPipe(Process process) {
+		this.process = process;
+	}
+
+	/**
+	 * @param executable the ffmpeg binary to run
+	 * @param args       ffmpeg arguments after the global flags, e.g. {@code -i pipe:0 ... pipe:1}
+	 * @param stdin      data to stream into ffmpeg, or {@code null} when it reads a file itself
+	 */
+	public static FFmpegPipe start(String executable, List<String> args, InputStream stdin) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(executable);
+		command.add("-hide_banner");
+		command.add("-nostats");
+		command.addAll(args);
+
+		Process process = new ProcessBuilder(command).start();
+		FFmpegPipe pipe = new FFmpegPipe(process);
+
+		daemon("ffmpeg-stderr", pipe::drainStderr);
+
+		if (stdin != null) {
+			daemon("ffmpeg-stdin", () -> pipe.feed(stdin));
+		} else {
+			process.getOutputStream().close();
+		}
+
+		return pipe;
+	}
+
+	public InputStream stdout() {
+		return process.getInputStream();
+	}
+
+	public int awaitExit(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!process.waitFor(timeout, unit)) {
+			process.destroyForcibly();
+			throw new IllegalStateException("ffmpeg did not finish within " + unit.toSeconds(timeout) + "s");
+		}
+		return process.exitValue();
+	}
+
+	// Completes with the exit code once the process is gone, however it ended
+	public CompletableFuture<Integer> onExit() {
+		return process.onExit().thenApply(Process::exitValue);
+	}
+
+	// True when the process was killed through close() rather than exiting on its own
+	public boolean killed() {
+		return killed;
+	}
+
+	public String stderrTail() {
+		stderrLock.lock();
+		try {
+			return String.join("\n", stderrTail);
+		} finally {
+			stderrLock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (process.isAlive()) {
+			killed = true;
+			process.destroyForcibly();
+		}
+	}
+
+	private void feed(InputStream in) {
+		try (in; OutputStream out = process.getOutputStream()) {
+			in.transferTo(out);
+		} catch (IOException ignored) {
+			// ffmpeg closed stdin early (bad input or killed); the exit code reports it
+		}
+	}
+
+	private void drainStderr() {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				stderrLock.lock();
+				try {
+					if (stderrTail.size() == STDERR_TAIL_LINES) stderrTail.removeFirst();
+					stderrTail.addLast(line);
+				} finally {
+					stderrLock.unlock();
+				}
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static void daemon(String name, Runnable task) {
+		Thread t = new Thread(task, name);
+		t.setDaemon(true);
+		t.start();
+	}
+}
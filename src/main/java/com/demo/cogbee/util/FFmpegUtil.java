@@ -1,32 +1,136 @@
 package com.demo.cogbee.util;
 
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class FFmpegUtil {
 
-	public static List<File> extractFrames(File videoFile, int intervalSeconds) {
+	private static final long PROBE_TIMEOUT_SECONDS = 15;
+
+	/**
+	 * Arguments that make ffmpeg stream one JPEG every {@code intervalSeconds}
+	 * to stdout; nothing is written next to the video. Only keyframes are
+	 * decoded, which is what keeps long recordings fast, so a sample lands on
+	 * the keyframe nearest its timestamp. Where keyframes are further apart
+	 * than the interval, the fps filter repeats the last one to fill the gap;
+	 * read the output with {@link FrameStream}, which drops those repeats.
+	 */
+	public static List<String> frameArgs(File videoFile, double intervalSeconds, int maxWidth) {
+		return List.of(
+				"-skip_frame", "nokey",
+				"-i", videoFile.getAbsolutePath(),
+				"-an",
+				"-vf", "fps=1/" + intervalSeconds + ",scale='min(" + maxWidth + ",iw)':-2",
+				"-q:v", "3",
+				"-f", "image2pipe",
+				"-vcodec", "mjpeg",
+				"pipe:1"
+		);
+	}
+
+	// Container duration in seconds, or -1 when ffprobe can't tell
+	public static double probeDurationSeconds(File videoFile) {
 		try {
-			String outputPattern = videoFile.getParent() + "/frame_%03d.jpg";
-
-			ProcessBuilder pb = new ProcessBuilder(
-					"ffmpeg", "-i", videoFile.getAbsolutePath(),
-					"-vf", "fps=1/" + intervalSeconds, outputPattern
-			);
-			pb.inheritIO();
-			Process process = pb.start();
-			process.waitFor();
-
-			List<File> frames = new ArrayList<>();
-			File parent = videoFile.getParentFile();
-			for (File f : parent.listFiles((dir, name) -> name.startsWith("frame_"))) {
-				frames.add(f);
+			Process process = new ProcessBuilder(
+					"ffprobe", "-v", "error",
+					"-show_entries", "format=duration",
+					"-of", "default=noprint_wrappers=1:nokey=1",
+					videoFile.getAbsolutePath()
+			).redirectErrorStream(true).start();
+
+			String out;
+			try (InputStream in = process.getInputStream()) {
+				out = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+			}
+			if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS) || process.exitValue() != 0) {
+				process.destroyForcibly();
+				return -1;
 			}
-			return frames;
+			return Double.parseDouble(out);
 		} catch (Exception e) {
-			throw new RuntimeException("Failed to extract frames: " + e.getMessage(), e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Splits ffmpeg's MJPEG output into individual JPEG images. Entropy-coded
+	 * data never contains a bare 0xFFD9, so each image ends at its EOI marker.
+	 * An image identical to the one before it is a frame ffmpeg repeated, not
+	 * a new sample, and is skipped.
+	 */
+	public static class FrameStream implements AutoCloseable {
+
+		private final FFmpegPipe pipe;
+		private final InputStream in;
+		private final ByteArrayOutputStream frame = new ByteArrayOutputStream(64 * 1024);
+		private byte[] previous;
+		private int repeats;
+
+		public FrameStream(FFmpegPipe pipe) {
+			this.pipe = pipe;
+			this.in = new BufferedInputStream(pipe.stdout(), 64 * 1024);
+		}
+
+		// Next JPEG, or null once ffmpeg is done
+		public byte[] next() throws IOException {
+			byte[] image;
+			while ((image = read()) != null) {
+				if (previous != null && Arrays.equals(previous, image)) {
+					repeats++;
+					continue;
+				}
+				previous = image;
+				return image;
+			}
+			return null;
+		}
+
+		// Images skipped because they repeated the previous one
+		public int repeats() {
+			return repeats;
+		}
+
+		private byte[] read() throws IOException {
+			frame.reset();
+			int prev = -1;
+			boolean inImage = false;
+
+			int b;
+			while ((b = in.read()) != -1) {
+				if (!inImage) {
+					if (prev == 0xFF && b == 0xD8) {
+						inImage = true;
+						frame.write(0xFF);
+						frame.write(0xD8);
+					}
+					prev = b;
+					continue;
+				}
+
+				frame.write(b);
+				if (prev == 0xFF && b == 0xD9) {
+					return frame.toByteArray();
+				}
+				prev = b;
+			}
+			return null;
+		}
+
+		public String stderrTail() {
+			return pipe.stderrTail();
+		}
+
+		@Override
+		public void close() {
+			pipe.close();
 		}
 	}
 }
@@ -0,0 +1,240 @@
+package com.demo.cogbee.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Builds one WAV file out of uploaded chunks. A chunk is either a complete
+ * WAV (its RIFF header is parsed and dropped, only the data payload is kept)
+ * or headerless PCM in the recording's format. The file stays open on a
+ * {@link FileChannel} between chunks; a single header is written up front and
+ * its sizes are patched by {@link #finish()}. Not thread-safe: the caller
+ * serializes chunks of one recording.
+ */
+public class WavChunkWriter implements AutoCloseable {
+
+	public static final int HEADER_BYTES = 44;
+
+	private static final int PCM = 1;
+	private static final int EXTENSIBLE = 0xFFFE;
+
+	public record Format(int sampleRate, int channels, int bitsPerSample) {
+
+		public int blockAlign() {
+			return channels * bitsPerSample / 8;
+		}
+
+		// What the speech-to-text upload expects, so the file can be sent without transcoding
+		public boolean isSpeechReady() {
+			return sampleRate == 16000 && channels == 1 && bitsPerSample == 16;
+		}
+	}
+
+	/** @param dataBytes declared size of the data chunk, or -1 when the writer left it open-ended */
+	public record Header(Format format, long dataBytes) {
+	}
+
+	private final FileChannel channel;
+	private final Format defaultFormat;
+	private final byte[] copyBuffer = new byte[64 * 1024];
+	private Format format;
+	private long dataBytes;
+
+	/**
+	 * @param defaultFormat format assumed for headerless chunks when no WAV
+	 *                      chunk has set one yet
+	 */
+	public WavChunkWriter(Path file, Format defaultFormat) throws IOException {
+		this.defaultFormat = defaultFormat;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		writeHeader(defaultFormat);
+		channel.position(HEADER_BYTES);
+	}
+
+	/**
+	 * Appends one uploaded chunk.
+	 *
+	 * @throws IllegalArgumentException when the chunk is a non-PCM WAV or its
+	 *                                  format differs from the recording's
+	 */
+	public void append(InputStream chunk) throws IOException {
+		PushbackInputStream in = new PushbackInputStream(chunk, 12);
+		byte[] head = in.readNBytes(12);
+		in.unread(head);
+
+		if (!isRiff(head)) {
+			if (format == null) format = defaultFormat;
+			copy(in, -1);
+			return;
+		}
+
+		Header header = readHeader(in);
+		if (header == null) {
+			throw new IllegalArgumentException("Malformed WAV header");
+		}
+		if (header.format() == null) {
+			throw new IllegalArgumentException("Only PCM WAV chunks are supported");
+		}
+		if (format == null) {
+			format = header.format();
+		} else if (!format.equals(header.format())) {
+			throw new IllegalArgumentException("Chunk format " + header.format()
+					+ " differs from recording format " + format);
+		}
+		copy(in, header.dataBytes());
+	}
+
+	public long dataBytes() {
+		return dataBytes;
+	}
+
+	// Format of the recording so far; the default until a chunk says otherwise
+	public Format format() {
+		return format != null ? format : defaultFormat;
+	}
+
+	/** Patches the header sizes, flushes and closes the file. */
+	public Format finish() throws IOException {
+		try {
+			writeHeader(format());
+			channel.force(false);
+			return format();
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads the WAV header of a file.
+	 *
+	 * @return null when the file is not a RIFF/WAVE file; a header with a null
+	 * format when it is a WAV in something other than integer PCM
+	 */
+	public static Header probe(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return readHeader(in);
+		}
+	}
+
+	/**
+	 * Consumes a RIFF header up to the start of the data payload.
+	 *
+	 * @return null when the stream is not a RIFF/WAVE stream
+	 */
+	static Header readHeader(InputStream in) throws IOException {
+		byte[] riff = in.readNBytes(12);
+		if (!isRiff(riff)) return null;
+
+		Format format = null;
+		boolean pcm = false;
+		try {
+			while (true) {
+				byte[] chunkHead = in.readNBytes(8);
+				if (chunkHead.length < 8) {
+					// header-only chunk
+					return new Header(pcm ? format : null, 0);
+				}
+				String id = new String(chunkHead, 0, 4, StandardCharsets.US_ASCII);
+				long size = Integer.toUnsignedLong(le(chunkHead, 4).getInt());
+
+				if (id.equals("fmt ")) {
+					if (size < 16) return null;
+					byte[] fmt = readFully(in, (int) size);
+					ByteBuffer b = le(fmt, 0);
+					int tag = b.getShort(0) & 0xFFFF;
+					if (tag == EXTENSIBLE && fmt.length >= 26) {
+						// the real format tag leads the sub-format GUID
+						tag = b.getShort(24) & 0xFFFF;
+					}
+					pcm = tag == PCM;
+					format = new Format(b.getInt(4), b.getShort(2) & 0xFFFF, b.getShort(14) & 0xFFFF);
+					skipPad(in, size);
+				} else if (id.equals("data")) {
+					// streaming recorders leave the size at 0 or 0xFFFFFFFF: take everything that follows
+					long dataBytes = size == 0 || size == 0xFFFFFFFFL ? -1 : size;
+					return new Header(pcm ? format : null, dataBytes);
+				} else {
+					in.skipNBytes(size + (size & 1));
+				}
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private void copy(InputStream in, long limit) throws IOException {
+		long remaining = limit < 0 ? Long.MAX_VALUE : limit;
+		while (remaining > 0) {
+			int n = in.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, remaining));
+			if (n < 0) break;
+
+			ByteBuffer buf = ByteBuffer.wrap(copyBuffer, 0, n);
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			dataBytes += n;
+			remaining -= n;
+		}
+	}
+
+	private void writeHeader(Format f) throws IOException {
+		// sizes are 32-bit in WAV; recordings never get near the limit, but don't wrap if one does
+		long data = Math.min(dataBytes, 0xFFFFFFFFL - 36);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+		header.putInt((int) (36 + data));
+		header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+		header.putInt(16);
+		header.putShort((short) PCM);
+		header.putShort((short) f.channels());
+		header.putInt(f.sampleRate());
+		header.putInt(f.sampleRate() * f.blockAlign());
+		header.putShort((short) f.blockAlign());
+		header.putShort((short) f.bitsPerSample());
+		header.put("data".getBytes(StandardCharsets.US_ASCII));
+		header.putInt((int) data);
+		header.flip();
+
+		long position = 0;
+		while (header.hasRemaining()) {
+			position += channel.write(header, position);
+		}
+	}
+
+	private static boolean isRiff(byte[] head) {
+		return head.length >= 12
+				&& new String(head, 0, 4, StandardCharsets.US_ASCII).equals("RIFF")
+				&& new String(head, 8, 4, StandardCharsets.US_ASCII).equals("WAVE");
+	}
+
+	private static byte[] readFully(InputStream in, int size) throws IOException {
+		byte[] bytes = in.readNBytes(size);
+		if (bytes.length < size) throw new EOFException();
+		return bytes;
+	}
+
+	private static void skipPad(InputStream in, long size) throws IOException {
+		if ((size & 1) == 1) in.skipNBytes(1);
+	}
+
+	private static ByteBuffer le(byte[] bytes, int offset) {
+		return ByteBuffer.wrap(bytes, offset, bytes.length - offset).slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
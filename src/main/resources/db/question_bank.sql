@@ -0,0 +1,19 @@
+-- Question bank tables (InterviewQuestion, QuestionKeyword) for PostgreSQL.
+-- Hibernate creates them when spring.jpa.hibernate.ddl-auto is update;
+-- run this once where it is validate or none.
+
+CREATE TABLE IF NOT EXISTS interview_question (
+    id     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    text   TEXT    NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT TRUE
+);
+
+-- synonyms: comma-separated phrases that also count as the keyword
+CREATE TABLE IF NOT EXISTS question_keyword (
+    question_id BIGINT           NOT NULL REFERENCES interview_question (id) ON DELETE CASCADE,
+    keyword     VARCHAR(255)     NOT NULL,
+    synonyms    TEXT,
+    weight      DOUBLE PRECISION NOT NULL DEFAULT 1.0
+);
+
+CREATE INDEX IF NOT EXISTS question_keyword_question_id ON question_keyword (question_id);
@@ -0,0 +1,90 @@
+package com.demo.cogbee.config;
+
+import com.demo.cogbee.config.audio.AudioRingBuffer;
+import com.demo.cogbee.config.audio.AudioStreamEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AudioStreamHandlerTest {
+
+	private final List<AudioStreamEvent> events = new ArrayList<>();
+	// what the first socket's buffer still held when each event was published
+	private final List<Integer> firstBufferAtEvent = new ArrayList<>();
+	private AudioRingBuffer firstBuffer;
+
+	private final AudioStreamHandler handler = new AudioStreamHandler(event -> {
+		AudioStreamEvent e = (AudioStreamEvent) event;
+		if (firstBuffer == null) firstBuffer = e.buffer();
+		events.add(e);
+		firstBufferAtEvent.add(firstBuffer.available());
+	}, 1, 4, AudioRingBuffer.OverflowPolicy.DROP_OLDEST);
+
+	private WebSocketSession socket(String sessionId) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		Map<String, Object> attributes = new HashMap<>();
+		when(session.getAttributes()).thenReturn(attributes);
+		when(session.getUri()).thenReturn(URI.create("ws://host/audio-stream?sessionId=" + sessionId + "&roomId=r1"));
+		return session;
+	}
+
+	private void audio(WebSocketSession session, int bytes) {
+		handler.handleBinaryMessage(session, new BinaryMessage(new byte[bytes]));
+	}
+
+	@Test
+	void reconnectLetsTheOldStreamDrainAndIgnoresItsLateClose() throws Exception {
+		WebSocketSession old = socket("s1");
+		handler.afterConnectionEstablished(old);
+		audio(old, 100);
+
+		WebSocketSession reconnected = socket("s1");
+		handler.afterConnectionEstablished(reconnected);
+		AudioStreamEvent opened = events.get(1);
+		assertEquals(AudioStreamEvent.Type.OPENED, opened.type());
+		assertNotSame(firstBuffer, opened.buffer());
+		// listeners could still drain the old audio, and it is released only afterwards
+		assertEquals(100, firstBufferAtEvent.get(1));
+		assertEquals(0, firstBuffer.available());
+
+		audio(reconnected, 200);
+		// the stale socket still sends a little and then closes
+		audio(old, 50);
+		handler.afterConnectionClosed(old, CloseStatus.GOING_AWAY);
+
+		assertEquals(2, events.size());
+		assertTrue(handler.isStreaming("s1"));
+		assertEquals(200, opened.buffer().available());
+
+		handler.afterConnectionClosed(reconnected, CloseStatus.NORMAL);
+		AudioStreamEvent closed = events.get(2);
+		assertEquals(AudioStreamEvent.Type.CLOSED, closed.type());
+		assertSame(opened.buffer(), closed.buffer());
+		assertFalse(handler.isStreaming("s1"));
+		assertEquals(0, opened.buffer().available());
+	}
+
+	@Test
+	void closeHandsListenersTheRemainingAudioBeforeRelease() throws Exception {
+		WebSocketSession socket = socket("s1");
+		handler.afterConnectionEstablished(socket);
+		audio(socket, 300);
+
+		handler.afterConnectionClosed(socket, CloseStatus.NORMAL);
+
+		assertEquals(AudioStreamEvent.Type.CLOSED, events.get(1).type());
+		assertEquals(300, firstBufferAtEvent.get(1));
+		assertEquals(0, firstBuffer.available());
+		assertFalse(handler.isStreaming("s1"));
+	}
+}
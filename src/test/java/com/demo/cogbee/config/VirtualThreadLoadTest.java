@@ -0,0 +1,204 @@
+package com.demo.cogbee.config;
+
+import com.demo.cogbee.controller.InterviewController;
+import com.demo.cogbee.model.request.FaceCheckRequest;
+import com.demo.cogbee.service.FaceVerificationService;
+import com.demo.cogbee.service.face.FrameDecoder;
+import com.demo.cogbee.service.face.ProctoringScheduler;
+import com.demo.cogbee.service.resilience.ResilienceConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives /frame-check (the controller method, with the app's HttpClient,
+ * Face++ client and {@link com.demo.cogbee.service.resilience.ResilientExecutor})
+ * against a slow stub vendor, on a Tomcat-sized platform pool and on one
+ * virtual thread per request.
+ * <p>
+ * Virtual threads only add headroom up to the provider bulkhead: with the
+ * shipped faceplusplus settings (8 in flight, 32 queued) both modes send the
+ * vendor the same 8 calls at a time and skip the rest, so the gain shows
+ * only when the bulkhead is opened up. The comparison needs Java 21+.
+ */
+class VirtualThreadLoadTest {
+
+	private static final int REQUESTS = 2_000;
+	// server.tomcat.threads.max default
+	private static final int PLATFORM_THREADS = 200;
+	private static final long VENDOR_LATENCY_MS = 100;
+
+	private enum Mode { PLATFORM, VIRTUAL }
+
+	private record Outcome(long elapsedMs, int verified, int skipped) {
+	}
+
+	private HttpServer vendor;
+	private ExecutorService vendorThreads;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private String baseUrl;
+	private Path reference;
+	private String frame;
+	private final List<ProctoringScheduler> schedulers = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		// the stub must not be the bottleneck, so it gets a thread per in-flight call
+		vendorThreads = Executors.newCachedThreadPool();
+		vendor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4_096);
+		vendor.setExecutor(vendorThreads);
+		vendor.createContext("/facepp/v3/compare", exchange -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				exchange.getRequestBody().readAllBytes();
+				Thread.sleep(VENDOR_LATENCY_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			byte[] body = "{\"confidence\": 97.5}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		vendor.start();
+		baseUrl = "http://127.0.0.1:" + vendor.getAddress().getPort();
+
+		reference = Files.createTempFile("reference", ".jpg");
+		Files.write(reference, new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2, (byte) 0xFF, (byte) 0xD9});
+		frame = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(new byte[]{(byte) 0xFF, (byte) 0xD8, 3, 4, (byte) 0xFF, (byte) 0xD9});
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		vendor.stop(0);
+		vendorThreads.shutdownNow();
+		schedulers.forEach(ProctoringScheduler::shutdown);
+		Files.deleteIfExists(reference);
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void virtualThreadsServeMoreFrameChecksWhenTheBulkheadAllows() throws Exception {
+		// warm up connections and JIT on both paths
+		run(Mode.PLATFORM, 4_096, 4_096, 400);
+		run(Mode.VIRTUAL, 4_096, 4_096, 400);
+
+		Outcome platform = run(Mode.PLATFORM, 4_096, 4_096, REQUESTS);
+		Outcome virtual = run(Mode.VIRTUAL, 4_096, 4_096, REQUESTS);
+
+		System.out.println(REQUESTS + " frame checks, bulkhead opened up: platform pool of " + PLATFORM_THREADS
+				+ " took " + platform.elapsedMs() + " ms, virtual threads took " + virtual.elapsedMs() + " ms");
+
+		assertEquals(REQUESTS, platform.verified());
+		assertEquals(REQUESTS, virtual.verified());
+		// the platform pool needs REQUESTS / PLATFORM_THREADS waves of vendor latency
+		assertTrue(platform.elapsedMs() >= REQUESTS / PLATFORM_THREADS * VENDOR_LATENCY_MS);
+		assertTrue(virtual.elapsedMs() * 2 < platform.elapsedMs(), "virtual threads should at least halve the wall time");
+	}
+
+	@Test
+	void shippedBulkheadCapsVendorConcurrencyInEitherMode() throws Exception {
+		List<Mode> modes = Runtime.version().feature() >= 21 ? List.of(Mode.PLATFORM, Mode.VIRTUAL) : List.of(Mode.PLATFORM);
+
+		for (Mode mode : modes) {
+			maxInFlight.set(0);
+			Outcome outcome = run(mode, 8, 32, REQUESTS);
+			System.out.println(mode + ": " + outcome.verified() + " verified, " + outcome.skipped()
+					+ " skipped, " + maxInFlight.get() + " vendor calls in flight at most");
+
+			assertTrue(maxInFlight.get() <= 8, mode + " sent " + maxInFlight.get() + " calls at once");
+			assertTrue(outcome.verified() >= 8 + 32);
+			// everything over the bulkhead is skipped, the frame check's answer while Face++ is saturated
+			assertTrue(outcome.skipped() > 0);
+			assertEquals(REQUESTS, outcome.verified() + outcome.skipped());
+		}
+	}
+
+	private InterviewController controller(Mode mode, int maxConcurrent, int maxQueued) {
+		HttpClient client = new HttpClientConfig().vendorHttpClient(5_000, mode == Mode.VIRTUAL);
+		MockEnvironment env = new MockEnvironment()
+				.withProperty("cogbee.resilience.faceplusplus.max-concurrent", String.valueOf(maxConcurrent))
+				.withProperty("cogbee.resilience.faceplusplus.max-queued", String.valueOf(maxQueued));
+		FaceVerificationService faceVerifier = new FaceVerificationService(client,
+				new ResilienceConfig(env).faceResilience(), baseUrl, 8_000);
+
+		// every request is a different session and the budget is unlimited, so none is skipped by the scheduler
+		ProctoringScheduler scheduler = new ProctoringScheduler(5_000, 20_000, 60_000, 1.5, 3, 0.9, 3,
+				1_000_000, 1_000_000, 0.25, 600_000);
+		schedulers.add(scheduler);
+
+		InterviewController controller = new InterviewController();
+		ReflectionTestUtils.setField(controller, "faceVerifier", faceVerifier);
+		ReflectionTestUtils.setField(controller, "frameDecoder", new FrameDecoder(64 * 1024, 256));
+		ReflectionTestUtils.setField(controller, "proctoringScheduler", scheduler);
+		ReflectionTestUtils.setField(controller, "candidateProfilePath", reference.toString());
+		return controller;
+	}
+
+	private Outcome run(Mode mode, int maxConcurrent, int maxQueued, int requests) throws Exception {
+		InterviewController controller = controller(mode, maxConcurrent, maxQueued);
+		Executor executor = mode == Mode.VIRTUAL
+				? new VirtualThreadTaskExecutor("request-")
+				: Executors.newFixedThreadPool(PLATFORM_THREADS);
+
+		CountDownLatch done = new CountDownLatch(requests);
+		AtomicInteger verified = new AtomicInteger();
+		AtomicInteger skipped = new AtomicInteger();
+		ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			FaceCheckRequest request = new FaceCheckRequest();
+			request.setSessionId("session-" + i);
+			request.setFrame(frame);
+
+			executor.execute(() -> {
+				try {
+					// blocks on Face++ like a Tomcat request thread would
+					ResponseEntity<?> response = controller.checkFrame(request);
+					String body = String.valueOf(response.getBody());
+					if (body.contains("\"samePerson\": true")) {
+						verified.incrementAndGet();
+					} else if (body.contains("face_service_unavailable")) {
+						skipped.incrementAndGet();
+					} else {
+						errors.add(response.getStatusCode() + " " + body);
+					}
+				} catch (Exception e) {
+					errors.add(e.toString());
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(60, TimeUnit.SECONDS), "requests did not finish");
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		if (executor instanceof ExecutorService pool) pool.shutdown();
+		assertTrue(errors.isEmpty(), () -> "failed frame checks: " + errors.peek());
+		return new Outcome(elapsedMs, verified.get(), skipped.get());
+	}
+}
@@ -0,0 +1,67 @@
+package com.demo.cogbee.config.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioRingBufferTest {
+
+	private static byte[] drainAll(AudioRingBuffer buffer) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.drain(view -> {
+			byte[] b = new byte[view.remaining()];
+			view.get(b);
+			out.writeBytes(b);
+		});
+		return out.toByteArray();
+	}
+
+	@Test
+	void dropOldestKeepsNewestBytesAcrossWrap() {
+		AudioRingBuffer buffer = new AudioRingBuffer(new DirectBufferPool(8, 1), AudioRingBuffer.OverflowPolicy.DROP_OLDEST);
+
+		buffer.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6}));
+		assertArrayEquals(new byte[]{1, 2, 3, 4}, drainFirst(buffer, 4));
+		buffer.write(ByteBuffer.wrap(new byte[]{7, 8, 9, 10, 11, 12, 13, 14}));
+
+		assertArrayEquals(new byte[]{7, 8, 9, 10, 11, 12, 13, 14}, drainAll(buffer));
+		assertEquals(2, buffer.getBytesDropped());
+		assertEquals(0, buffer.available());
+	}
+
+	@Test
+	void rejectPolicyAppliesBackpressure() {
+		AudioRingBuffer buffer = new AudioRingBuffer(new DirectBufferPool(4, 1), AudioRingBuffer.OverflowPolicy.REJECT);
+
+		ByteBuffer src = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6});
+		assertEquals(4, buffer.write(src));
+		assertFalse(src.hasRemaining());
+		assertArrayEquals(new byte[]{1, 2, 3, 4}, drainAll(buffer));
+		assertEquals(2, buffer.getBytesDropped());
+	}
+
+	@Test
+	void releaseReturnsMemoryToPool() {
+		DirectBufferPool pool = new DirectBufferPool(16, 4);
+		AudioRingBuffer buffer = new AudioRingBuffer(pool, AudioRingBuffer.OverflowPolicy.DROP_OLDEST);
+		buffer.write(ByteBuffer.wrap(new byte[]{1, 2}));
+
+		buffer.release();
+
+		assertEquals(1, pool.pooledCount());
+		assertEquals(0, buffer.write(ByteBuffer.wrap(new byte[]{3})));
+		assertEquals(0, buffer.drain(b -> fail("released buffer must not drain")));
+	}
+
+	// consumes exactly n bytes by draining everything and writing the rest back
+	private static byte[] drainFirst(AudioRingBuffer buffer, int n) {
+		byte[] all = drainAll(buffer);
+		buffer.write(ByteBuffer.wrap(all, n, all.length - n));
+		byte[] head = new byte[n];
+		System.arraycopy(all, 0, head, 0, n);
+		return head;
+	}
+}
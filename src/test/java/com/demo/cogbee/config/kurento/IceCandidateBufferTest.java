@@ -0,0 +1,93 @@
+package com.demo.cogbee.config.kurento;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kurento.client.IceCandidate;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IceCandidateBufferTest {
+
+	private final IceCandidateBuffer buffer = new IceCandidateBuffer(1_000, 1_000, 0);
+
+	@AfterEach
+	void tearDown() {
+		buffer.shutdown();
+	}
+
+	private static IceCandidate candidate(int i) {
+		return new IceCandidate("candidate:" + i, "0", 0);
+	}
+
+	@Test
+	void noCandidateIsLostWhileEndpointBecomesReady() throws Exception {
+		List<IceCandidate> received = new CopyOnWriteArrayList<>();
+		ExecutorService trickle = Executors.newFixedThreadPool(4);
+		CountDownLatch start = new CountDownLatch(1);
+
+		for (int t = 0; t < 4; t++) {
+			int base = t * 100;
+			trickle.submit(() -> {
+				start.await();
+				for (int i = 0; i < 100; i++) {
+					buffer.offer("s1", candidate(base + i));
+				}
+				return null;
+			});
+		}
+
+		start.countDown();
+		buffer.ready("s1", received::add);
+		trickle.shutdown();
+		assertTrue(trickle.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(400, received.size());
+		assertEquals(400, buffer.getDeliveredCount());
+		assertEquals(0, buffer.getDroppedCount());
+	}
+
+	@Test
+	void sweepExpiresSessionsThatNeverSentAnOffer() {
+		buffer.offer("abandoned", candidate(1));
+		buffer.offer("abandoned", candidate(2));
+		buffer.ready("live", c -> { });
+
+		buffer.sweep(System.currentTimeMillis() + 500);
+		assertEquals(2, buffer.getPendingKeys());
+
+		// the ready key has been idle as long, so it goes too; nothing was queued on it
+		buffer.sweep(System.currentTimeMillis() + 5_000);
+		assertEquals(0, buffer.getPendingKeys());
+		assertEquals(2, buffer.getDroppedCount());
+	}
+
+	@Test
+	void removeSessionClearsSubscriberQueuesToo() {
+		buffer.offer("s1", candidate(1));
+		buffer.offer("s1/pub", candidate(2));
+		buffer.offer("s10", candidate(3));
+
+		buffer.removeSession("s1");
+
+		assertEquals(1, buffer.getPendingKeys());
+	}
+
+	@Test
+	void readyKeysAreSweptOnceIdle() {
+		List<IceCandidate> received = new CopyOnWriteArrayList<>();
+		IceCandidate late = candidate(1);
+		buffer.ready("s1/p1", received::add);
+		buffer.offer("s1/p1", late);
+		long now = System.currentTimeMillis();
+
+		buffer.sweep(now + 500);
+		assertEquals(1, buffer.getPendingKeys());
+
+		buffer.sweep(now + 5_000);
+		assertEquals(0, buffer.getPendingKeys());
+		assertEquals(List.of(late), received);
+	}
+}
@@ -0,0 +1,125 @@
+package com.demo.cogbee.config.kurento;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.ServerManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class KurentoClientPoolTest {
+
+	private static final String KMS_A = "ws://kms-a/kurento";
+	private static final String KMS_B = "ws://kms-b/kurento";
+
+	// stands in for the media servers: one fake client per uri, counting connects
+	private final Map<String, KurentoClient> clients = new ConcurrentHashMap<>();
+	private final AtomicInteger connects = new AtomicInteger();
+	private KurentoClientPool pool;
+
+	private KurentoClient connect(String uri) {
+		connects.incrementAndGet();
+		return clients.computeIfAbsent(uri, u -> {
+			KurentoClient client = mock(KurentoClient.class);
+			when(client.createMediaPipeline()).thenAnswer(inv -> mock(MediaPipeline.class));
+			when(client.getServerManager()).thenReturn(mock(ServerManager.class));
+			return client;
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void spreadsPipelinesOverLeastLoadedServersAndReusesConnections() throws Exception {
+		pool = new KurentoClientPool(List.of(KMS_A, KMS_B), this::connect, 2, 0, 3);
+
+		for (int i = 0; i < 6; i++) {
+			pool.createPipeline("room-" + i).get(5, TimeUnit.SECONDS);
+		}
+
+		assertEquals(3, pool.pipelineCount(KMS_A));
+		assertEquals(3, pool.pipelineCount(KMS_B));
+		assertEquals(2, connects.get());
+	}
+
+	@Test
+	void releaseFreesCapacityWithoutClosingTheClient() throws Exception {
+		pool = new KurentoClientPool(List.of(KMS_A), this::connect, 1, 0, 3);
+
+		KurentoClientPool.PooledPipeline pooled = pool.createPipeline("room").get(5, TimeUnit.SECONDS);
+		pool.release(pooled);
+		pool.release(pooled);
+
+		assertEquals(0, pool.pipelineCount(KMS_A));
+		verify(pooled.getPipeline(), times(1)).release();
+		verify(clients.get(KMS_A), never()).destroy();
+	}
+
+	@Test
+	void failingServerIsSkippedUntilHealthCheckRecoversIt() throws Exception {
+		pool = new KurentoClientPool(List.of(KMS_A, KMS_B), this::connect, 1, 0, 3);
+		pool.createPipeline("warm-up").get(5, TimeUnit.SECONDS);
+
+		KurentoClient a = clients.get(KMS_A);
+		ServerManager broken = mock(ServerManager.class);
+		when(broken.getInfo()).thenThrow(new RuntimeException("connection lost"));
+		when(a.getServerManager()).thenReturn(broken);
+
+		pool.checkHealth();
+		assertFalse(pool.isHealthy(KMS_A));
+		// the warm-up room is still on it
+		verify(a, never()).destroy();
+
+		KurentoClientPool.PooledPipeline next = pool.createPipeline("room").get(5, TimeUnit.SECONDS);
+		assertEquals(KMS_B, next.getServerUri());
+
+		when(a.getServerManager()).thenReturn(mock(ServerManager.class));
+		pool.checkHealth();
+		assertTrue(pool.isHealthy(KMS_A));
+	}
+
+	@Test
+	void connectionIsDroppedOnlyAfterRepeatedFailuresWithNoRoomsLeft() throws Exception {
+		pool = new KurentoClientPool(List.of(KMS_A), this::connect, 1, 0, 2);
+		KurentoClientPool.PooledPipeline room = pool.createPipeline("room").get(5, TimeUnit.SECONDS);
+
+		KurentoClient a = clients.get(KMS_A);
+		ServerManager broken = mock(ServerManager.class);
+		when(broken.getInfo()).thenThrow(new RuntimeException("timeout"));
+		when(a.getServerManager()).thenReturn(broken);
+
+		pool.checkHealth();
+		pool.checkHealth();
+		verify(a, never()).destroy();
+
+		pool.release(room);
+		pool.checkHealth();
+		verify(a).destroy();
+	}
+
+	@Test
+	void placementCountsPipelinesTheServerReports() throws Exception {
+		pool = new KurentoClientPool(List.of(KMS_A, KMS_B), this::connect, 1, 0, 3);
+		pool.createPipeline("a").get(5, TimeUnit.SECONDS);
+		pool.createPipeline("b").get(5, TimeUnit.SECONDS);
+
+		// another app node has two rooms on A
+		ServerManager busy = mock(ServerManager.class);
+		when(busy.getPipelines()).thenReturn(List.of(mock(MediaPipeline.class), mock(MediaPipeline.class)));
+		when(clients.get(KMS_A).getServerManager()).thenReturn(busy);
+		pool.checkHealth();
+
+		assertEquals(KMS_B, pool.createPipeline("next").get(5, TimeUnit.SECONDS).getServerUri());
+	}
+}
@@ -0,0 +1,176 @@
+package com.demo.cogbee.config.kurento;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kurento.client.IceCandidate;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.MediaType;
+import org.kurento.client.WebRtcEndpoint;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class KurentoRoomTest {
+
+	private final KurentoClientPool pool = mock(KurentoClientPool.class);
+	private final KurentoClientPool.PooledPipeline pooled = mock(KurentoClientPool.PooledPipeline.class);
+	private final IceCandidateBuffer candidates = new IceCandidateBuffer(60_000, 100, 0);
+	private final KurentoRoom room;
+
+	KurentoRoomTest() {
+		when(pooled.getPipeline()).thenReturn(mock(MediaPipeline.class));
+		room = new KurentoRoom("room", pool, pooled, candidates);
+	}
+
+	@AfterEach
+	void tearDown() {
+		candidates.shutdown();
+	}
+
+	private static IceCandidate candidate() {
+		return new IceCandidate("candidate:1", "0", 0);
+	}
+
+	@Test
+	void publisherLeavingDropsItsViewersCandidateQueues() {
+		WebRtcEndpoint publisher = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint subscriber = mock(WebRtcEndpoint.class);
+		room.join("pub");
+		room.join("viewer");
+		room.setPublisher("pub", publisher);
+		assertTrue(room.addSubscriber("viewer", "pub", subscriber, false));
+
+		candidates.ready(IceCandidateBuffer.key("pub", null), publisher::addIceCandidate);
+		candidates.ready(IceCandidateBuffer.key("viewer", "pub"), subscriber::addIceCandidate);
+		candidates.offer(IceCandidateBuffer.key("viewer", null), candidate());
+		assertEquals(3, candidates.getPendingKeys());
+
+		room.removeParticipant("pub");
+
+		verify(subscriber).release();
+		verify(publisher).release();
+		// only the viewer's own publisher queue is left
+		assertEquals(1, candidates.getPendingKeys());
+		candidates.offer(IceCandidateBuffer.key("viewer", "pub"), candidate());
+		verify(subscriber, never()).addIceCandidate(any());
+	}
+
+	@Test
+	void subscribeConnectsThePublisherToTheViewersEndpoint() {
+		WebRtcEndpoint publisher = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint video = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint audio = mock(WebRtcEndpoint.class);
+		room.join("pub");
+		room.join("viewer");
+		room.join("panel");
+		room.setPublisher("pub", publisher);
+
+		assertTrue(room.addSubscriber("viewer", "pub", video, false));
+		assertTrue(room.addSubscriber("panel", "pub", audio, true));
+
+		verify(publisher).connect(video);
+		verify(publisher).connect(audio, MediaType.AUDIO);
+		assertSame(video, room.getSubscriber("viewer", "pub"));
+		assertEquals(Set.of("pub"), room.getPublisherIds());
+	}
+
+	@Test
+	void subscribingToSomeoneWhoIsNotPublishingFails() {
+		room.join("viewer");
+		room.join("quiet");
+
+		assertFalse(room.addSubscriber("viewer", "quiet", mock(WebRtcEndpoint.class), false));
+		assertFalse(room.addSubscriber("stranger", "quiet", mock(WebRtcEndpoint.class), false));
+		assertNull(room.getSubscriber("viewer", "quiet"));
+	}
+
+	@Test
+	void unsubscribeReleasesOnlyThatSubscription() {
+		WebRtcEndpoint a = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint b = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint fromA = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint fromB = mock(WebRtcEndpoint.class);
+		room.setPublisher("a", a);
+		room.setPublisher("b", b);
+		room.join("viewer");
+		room.addSubscriber("viewer", "a", fromA, false);
+		room.addSubscriber("viewer", "b", fromB, false);
+
+		room.removeSubscriber("viewer", "a");
+
+		verify(fromA).release();
+		verify(fromB, never()).release();
+		verify(a, never()).release();
+		assertNull(room.getSubscriber("viewer", "a"));
+		assertSame(fromB, room.getSubscriber("viewer", "b"));
+	}
+
+	@Test
+	void viewerLeavingReleasesItsSubscriptionsButNotThePublishers() {
+		WebRtcEndpoint publisher = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint subscriber = mock(WebRtcEndpoint.class);
+		room.setPublisher("pub", publisher);
+		room.join("viewer");
+		room.addSubscriber("viewer", "pub", subscriber, false);
+
+		room.removeParticipant("viewer");
+
+		verify(subscriber).release();
+		verify(publisher, never()).release();
+		assertFalse(room.isEmpty());
+	}
+
+	@Test
+	void closeReleasesEveryEndpointAndThePipeline() {
+		WebRtcEndpoint publisher = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint subscriber = mock(WebRtcEndpoint.class);
+		room.setPublisher("pub", publisher);
+		room.join("viewer");
+		room.addSubscriber("viewer", "pub", subscriber, false);
+		candidates.ready(IceCandidateBuffer.key("viewer", "pub"), subscriber::addIceCandidate);
+
+		room.close();
+
+		verify(publisher).release();
+		verify(subscriber).release();
+		verify(pool).release(pooled);
+		assertTrue(room.isEmpty());
+		assertEquals(0, candidates.getPendingKeys());
+	}
+
+	@Test
+	void closedRoomCanNotBeJoined() {
+		room.join("a");
+		assertFalse(room.closeIfEmpty());
+
+		room.removeParticipant("a");
+		assertTrue(room.closeIfEmpty());
+		// only the first caller gets to close it
+		assertFalse(room.closeIfEmpty());
+
+		assertFalse(room.join("b"));
+		assertTrue(room.isEmpty());
+	}
+
+	@Test
+	void replacingASubscriptionKeepsItsCandidatesForTheNewEndpoint() {
+		WebRtcEndpoint old = mock(WebRtcEndpoint.class);
+		WebRtcEndpoint replacement = mock(WebRtcEndpoint.class);
+		room.join("pub");
+		room.join("viewer");
+		room.setPublisher("pub", mock(WebRtcEndpoint.class));
+		room.addSubscriber("viewer", "pub", old, false);
+		candidates.ready(IceCandidateBuffer.key("viewer", "pub"), old::addIceCandidate);
+
+		assertTrue(room.addSubscriber("viewer", "pub", replacement, false));
+		verify(old).release();
+
+		// trickled before the new endpoint is ready: queued, not sent to the released one
+		candidates.offer(IceCandidateBuffer.key("viewer", "pub"), candidate());
+		assertEquals(1, candidates.ready(IceCandidateBuffer.key("viewer", "pub"), replacement::addIceCandidate));
+		verify(replacement).addIceCandidate(any());
+		verify(old, never()).addIceCandidate(any());
+	}
+}
@@ -0,0 +1,200 @@
+package com.demo.cogbee.config.kurento;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kurento.client.EventListener;
+import org.kurento.client.IceCandidate;
+import org.kurento.client.IceCandidateFoundEvent;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.WebRtcEndpoint;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class KurentoWebRtcHandlerTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final KurentoClientPool pool = mock(KurentoClientPool.class);
+	private final IceCandidateBuffer candidates = new IceCandidateBuffer(60_000, 100, 0);
+	private final ExecutorService sendExecutor = Executors.newFixedThreadPool(4);
+	private final List<WebRtcEndpoint> endpoints = new CopyOnWriteArrayList<>();
+	private final Map<String, List<JsonNode>> received = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> maxConcurrentSends = new ConcurrentHashMap<>();
+	private final KurentoWebRtcHandler handler;
+
+	KurentoWebRtcHandlerTest() {
+		KurentoClientPool.PooledPipeline pooled = mock(KurentoClientPool.PooledPipeline.class);
+		when(pooled.getPipeline()).thenReturn(mock(MediaPipeline.class));
+		when(pooled.getServerUri()).thenReturn("ws://kms/kurento");
+		when(pool.createPipeline(anyString())).thenReturn(CompletableFuture.completedFuture(pooled));
+
+		handler = new KurentoWebRtcHandler(pool, candidates, 1_000, pipeline -> {
+			WebRtcEndpoint endpoint = mock(WebRtcEndpoint.class);
+			when(endpoint.processOffer(anyString())).thenReturn("sdp-answer");
+			endpoints.add(endpoint);
+			return endpoint;
+		}, sendExecutor, 5_000, 1 << 20);
+	}
+
+	@AfterEach
+	void tearDown() {
+		handler.shutdown();
+		candidates.shutdown();
+	}
+
+	// a socket that records what it is sent and how many sends overlap
+	private WebSocketSession connect(String id) throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		List<JsonNode> inbox = new CopyOnWriteArrayList<>();
+		received.put(id, inbox);
+		AtomicInteger concurrentSends = new AtomicInteger();
+		AtomicInteger maxConcurrent = new AtomicInteger();
+		maxConcurrentSends.put(id, maxConcurrent);
+		doAnswer(inv -> {
+			maxConcurrent.accumulateAndGet(concurrentSends.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(1);
+				inbox.add(mapper.readTree(inv.<TextMessage>getArgument(0).getPayload()));
+			} finally {
+				concurrentSends.decrementAndGet();
+			}
+			return null;
+		}).when(session).sendMessage(any());
+
+		handler.afterConnectionEstablished(session);
+		return session;
+	}
+
+	private void message(WebSocketSession session, String json) throws Exception {
+		handler.handleTextMessage(session, new TextMessage(json));
+	}
+
+	// waits for the outbox to deliver a message of the given type
+	private JsonNode await(String sessionId, String type) throws Exception {
+		long deadline = System.currentTimeMillis() + 2_000;
+		while (System.currentTimeMillis() < deadline) {
+			for (JsonNode message : received.get(sessionId)) {
+				if (type.equals(message.path("type").asText())) return message;
+			}
+			Thread.sleep(5);
+		}
+		throw new AssertionError("no " + type + " for " + sessionId + " in " + received.get(sessionId));
+	}
+
+	@Test
+	void publisherJoinedAndLeftReachTheRestOfTheRoom() throws Exception {
+		WebSocketSession pub = connect("pub");
+		WebSocketSession viewer = connect("viewer");
+		message(pub, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		message(viewer, "{\"type\":\"join\",\"roomId\":\"r\"}");
+
+		message(pub, "{\"type\":\"offer\",\"offer\":\"sdp-offer\"}");
+		assertEquals("sdp-answer", await("pub", "answer").path("answer").asText());
+		assertEquals("pub", await("viewer", "publisher_joined").path("publisherId").asText());
+
+		handler.afterConnectionClosed(pub, CloseStatus.NORMAL);
+		assertEquals("pub", await("viewer", "publisher_left").path("publisherId").asText());
+		verify(endpoints.get(0)).release();
+	}
+
+	@Test
+	void subscribeNegotiatesAViewerEndpointAndUnsubscribeReleasesIt() throws Exception {
+		WebSocketSession pub = connect("pub");
+		WebSocketSession viewer = connect("viewer");
+		message(pub, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		message(viewer, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		message(pub, "{\"type\":\"offer\",\"offer\":\"sdp-offer\"}");
+
+		message(viewer, "{\"type\":\"subscribe\",\"publisherId\":\"pub\",\"offer\":\"sdp-offer\"}");
+		JsonNode answer = await("viewer", "answer");
+		assertEquals("pub", answer.path("publisherId").asText());
+		WebRtcEndpoint publisher = endpoints.get(0);
+		WebRtcEndpoint subscriber = endpoints.get(1);
+		verify(publisher).connect(subscriber);
+
+		message(viewer, "{\"type\":\"unsubscribe\",\"publisherId\":\"pub\"}");
+		verify(subscriber).release();
+		verify(publisher, never()).release();
+	}
+
+	@Test
+	void sendsFromKurentoEventsAndRoomNoticesNeverOverlapOnOneSocket() throws Exception {
+		WebSocketSession pub = connect("pub");
+		WebSocketSession viewer = connect("viewer");
+		message(viewer, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		message(pub, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		message(viewer, "{\"type\":\"offer\",\"offer\":\"sdp-offer\"}");
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<EventListener<IceCandidateFoundEvent>> listener = ArgumentCaptor.forClass(EventListener.class);
+		verify(endpoints.get(0)).addIceCandidateFoundListener(listener.capture());
+		IceCandidateFoundEvent event = mock(IceCandidateFoundEvent.class);
+		when(event.getCandidate()).thenReturn(new IceCandidate("candidate:1", "0", 0));
+
+		// the media server's event threads and another client's offer all target the viewer at once
+		ExecutorService kurentoEvents = Executors.newFixedThreadPool(4);
+		List<Future<?>> fired = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			fired.add(kurentoEvents.submit(() -> listener.getValue().onEvent(event)));
+		}
+		message(pub, "{\"type\":\"offer\",\"offer\":\"sdp-offer\"}");
+		for (Future<?> f : fired) f.get(2, TimeUnit.SECONDS);
+		kurentoEvents.shutdown();
+
+		await("viewer", "publisher_joined");
+		long deadline = System.currentTimeMillis() + 2_000;
+		while (received.get("viewer").stream().filter(m -> m.path("type").asText().equals("candidate")).count() < 40
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(40, received.get("viewer").stream().filter(m -> m.path("type").asText().equals("candidate")).count());
+		assertEquals(1, maxConcurrentSends.get("viewer").get());
+	}
+
+	@Test
+	void roomThatArrivesAfterTheSetupTimeoutIsReleased() throws Exception {
+		CompletableFuture<KurentoClientPool.PooledPipeline> slow = new CompletableFuture<>();
+		when(pool.createPipeline("late")).thenReturn(slow);
+		KurentoWebRtcHandler impatient = new KurentoWebRtcHandler(pool, candidates, 100, pipeline -> mock(WebRtcEndpoint.class),
+				sendExecutor, 5_000, 1 << 20);
+		WebSocketSession pub = connect("pub");
+		impatient.afterConnectionEstablished(pub);
+
+		impatient.handleTextMessage(pub, new TextMessage("{\"type\":\"join\",\"roomId\":\"late\"}"));
+		assertEquals("Media server unavailable", await("pub", "error").path("message").asText());
+
+		KurentoClientPool.PooledPipeline pooled = mock(KurentoClientPool.PooledPipeline.class);
+		when(pooled.getPipeline()).thenReturn(mock(MediaPipeline.class));
+		slow.complete(pooled);
+		verify(pool).release(pooled);
+	}
+
+	@Test
+	void joiningAfterTheRoomEmptiedGetsAFreshPipeline() throws Exception {
+		WebSocketSession first = connect("first");
+		message(first, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		await("first", "joined");
+		handler.afterConnectionClosed(first, CloseStatus.NORMAL);
+		verify(pool).release(any());
+
+		WebSocketSession second = connect("second");
+		message(second, "{\"type\":\"join\",\"roomId\":\"r\"}");
+		await("second", "joined");
+		verify(pool, times(2)).createPipeline("r");
+	}
+}
@@ -0,0 +1,103 @@
+package com.demo.cogbee.config.signaling;
+
+import com.demo.cogbee.config.cluster.LoopbackClusterBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicatedRoomRegistryTest {
+
+	private final LoopbackClusterBus.Hub hub = new LoopbackClusterBus.Hub();
+
+	@AfterEach
+	void tearDown() {
+		hub.close();
+	}
+
+	// the first nodes have nobody to sync from and wait out the sync timeout
+	private ReplicatedRoomRegistry registry(String node) {
+		return new ReplicatedRoomRegistry(hub.node(node), 2000, 200);
+	}
+
+	@Test
+	void nodesAgreeOnHostAndMembers() {
+		ReplicatedRoomRegistry a = registry("a");
+		ReplicatedRoomRegistry b = registry("b");
+
+		a.registerSession("u1", "a");
+		b.registerSession("u2", "b");
+
+		RoomRegistry.JoinResult first = a.join("room", "u1");
+		RoomRegistry.JoinResult second = b.join("room", "u2");
+
+		assertEquals("u1", first.hostId());
+		assertEquals("u1", second.hostId());
+		assertEquals(List.of("u1"), second.peers());
+
+		// b's join has been applied everywhere before a's next op comes back
+		a.join("other", "u3");
+		assertEquals(Set.of("u1", "u2"), a.members("room"));
+		assertEquals("b", a.nodeOf("u2"));
+		assertEquals("a", b.nodeOf("u1"));
+	}
+
+	@Test
+	void hostMovesToRemainingMemberOnLeave() {
+		ReplicatedRoomRegistry a = registry("a");
+		ReplicatedRoomRegistry b = registry("b");
+
+		a.join("room", "u1");
+		b.join("room", "u2");
+
+		RoomRegistry.LeaveResult left = a.leave("u1");
+		assertEquals("room", left.roomId());
+		assertEquals("u2", left.newHostId());
+		assertFalse(left.roomEmpty());
+
+		// reads are local: wait for a round trip on b so a's leave has been applied there
+		b.join("other", "u3");
+		assertEquals("u2", b.hostOf("room"));
+
+		RoomRegistry.LeaveResult last = b.leave("u2");
+		assertTrue(last.roomEmpty());
+		assertNull(a.leave("u2"));
+		assertTrue(a.members("room").isEmpty());
+	}
+
+	@Test
+	void lateNodeStartsFromSnapshot() {
+		ReplicatedRoomRegistry a = registry("a");
+		a.registerSession("u1", "a");
+		a.join("room", "u1");
+		a.join("room", "u2");
+
+		ReplicatedRoomRegistry c = registry("c");
+		// c's own op is applied after the snapshot, so the room is there when it comes back
+		RoomRegistry.JoinResult joined = c.join("room", "u3");
+		assertEquals("u1", joined.hostId());
+		assertEquals(List.of("u1", "u2"), joined.peers().stream().sorted().toList());
+		assertEquals(Set.of("u1", "u2", "u3"), c.members("room"));
+		assertEquals("a", c.nodeOf("u1"));
+	}
+
+	@Test
+	void reconnectedNodeCatchesUpOnMissedOps() {
+		ReplicatedRoomRegistry a = registry("a");
+		LoopbackClusterBus busB = hub.node("b");
+		ReplicatedRoomRegistry b = new ReplicatedRoomRegistry(busB, 2000, 200);
+		a.join("room", "u1");
+
+		busB.disconnect();
+		a.join("room", "u2");
+		a.leave("u1");
+
+		busB.reconnect();
+		b.join("other", "u3");
+		assertEquals("u2", b.hostOf("room"));
+		assertEquals(Set.of("u2"), b.members("room"));
+	}
+}
@@ -0,0 +1,148 @@
+package com.demo.cogbee.config.signaling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SessionOutboxTest {
+
+	// drains run only when the test says so, so it controls what is still queued
+	private final Queue<Runnable> drains = new ArrayDeque<>();
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+	private final WebSocketSession session = mock(WebSocketSession.class);
+
+	SessionOutboxTest() throws Exception {
+		when(session.getId()).thenReturn("s1");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(inv -> sent.add(inv.<TextMessage>getArgument(0).getPayload())).when(session).sendMessage(any());
+	}
+
+	private SessionOutbox outbox(int bufferSizeLimit) {
+		return new SessionOutbox(session, drains::add, 5_000, bufferSizeLimit);
+	}
+
+	private void drain() {
+		Runnable next;
+		while ((next = drains.poll()) != null) next.run();
+	}
+
+	@Test
+	void interimMessagesUnderOneKeyCollapseToTheLatest() {
+		SessionOutbox outbox = outbox(1_024);
+
+		outbox.sendLatest("caption:alice", new TextMessage("alice 1"));
+		outbox.sendLatest("caption:alice", new TextMessage("alice 2"));
+		outbox.sendLatest("caption:bob", new TextMessage("bob 1"));
+		outbox.sendLatest("caption:alice", new TextMessage("alice 3"));
+		drain();
+
+		assertEquals(List.of("alice 3", "bob 1"), sent);
+
+		// once sent, the key starts a new slot
+		outbox.sendLatest("caption:alice", new TextMessage("alice 4"));
+		drain();
+		assertEquals(List.of("alice 3", "bob 1", "alice 4"), sent);
+	}
+
+	@Test
+	void plainMessagesKeepTheirOrderAroundCoalescedOnes() {
+		SessionOutbox outbox = outbox(1_024);
+
+		outbox.send(new TextMessage("joined"));
+		outbox.sendLatest("caption:alice", new TextMessage("interim 1"));
+		outbox.send(new TextMessage("final 1"));
+		outbox.sendLatest("caption:alice", new TextMessage("interim 2"));
+		outbox.send(new TextMessage("left"));
+		drain();
+
+		// the latest interim goes out where the first one was queued
+		assertEquals(List.of("joined", "interim 2", "final 1", "left"), sent);
+	}
+
+	@Test
+	void replacedInterimMessagesDoNotCountAgainstTheBuffer() {
+		SessionOutbox outbox = outbox(20);
+
+		for (int i = 0; i < 100; i++) {
+			outbox.sendLatest("caption:alice", new TextMessage("interim " + i));
+		}
+		drain();
+
+		assertEquals(List.of("interim 99"), sent);
+		assertTrue(outbox.isOpen());
+	}
+
+	@Test
+	void backlogOverTheBufferLimitClosesTheSessionAndDropsTheRest() throws Exception {
+		SessionOutbox outbox = outbox(20);
+
+		outbox.send(new TextMessage("0123456789"));
+		outbox.send(new TextMessage("0123456789"));
+		assertTrue(outbox.isOpen());
+		outbox.send(new TextMessage("overflow"));
+
+		verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+		assertFalse(outbox.isOpen());
+
+		outbox.send(new TextMessage("after close"));
+		outbox.sendLatest("caption:alice", new TextMessage("after close"));
+		drain();
+		assertTrue(sent.isEmpty());
+	}
+
+	@Test
+	void sendStuckPastTheTimeLimitClosesTheSession() throws Exception {
+		CountDownLatch stuck = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer(inv -> {
+			stuck.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return null;
+		}).when(session).sendMessage(any());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			SessionOutbox outbox = new SessionOutbox(session, executor, 50, 1_024);
+			outbox.send(new TextMessage("slow"));
+			assertTrue(stuck.await(2, TimeUnit.SECONDS));
+
+			Thread.sleep(100);
+			outbox.send(new TextMessage("next"));
+
+			verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+			assertFalse(outbox.isOpen());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+		verify(session, times(1)).sendMessage(any());
+	}
+
+	@Test
+	void failedSendDoesNotStopTheQueue() throws Exception {
+		SessionOutbox outbox = outbox(1_024);
+		doThrow(new IOException("broken pipe"))
+				.doAnswer(inv -> sent.add(inv.<TextMessage>getArgument(0).getPayload()))
+				.when(session).sendMessage(any());
+
+		outbox.send(new TextMessage("lost"));
+		outbox.send(new TextMessage("delivered"));
+		drain();
+
+		assertEquals(List.of("delivered"), sent);
+	}
+}
@@ -0,0 +1,53 @@
+package com.demo.cogbee.config.signaling;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalMessageCodecTest {
+
+	@Test
+	void decodesCandidateWhateverTheFieldOrder() throws Exception {
+		SignalMessage msg = SignalMessageCodec.decode(
+				"{\"candidate\":{\"sdpMLineIndex\":1,\"candidate\":\"candidate:1 udp\",\"sdpMid\":\"video\"},"
+						+ "\"publisherId\":\"p1\",\"extra\":[1,{\"a\":2}],\"type\":\"candidate\"}");
+
+		SignalMessage.Candidate c = assertInstanceOf(SignalMessage.Candidate.class, msg);
+		assertEquals("candidate:1 udp", c.candidate());
+		assertEquals("video", c.sdpMid());
+		assertEquals(1, c.sdpMLineIndex());
+		assertEquals("p1", c.publisherId());
+	}
+
+	@Test
+	void browserOfferObjectIsRelayedNotParsed() throws Exception {
+		String raw = "{\"type\":\"offer\",\"to\":\"peer\",\"offer\":{\"type\":\"offer\",\"sdp\":\"v=0\"}}";
+
+		SignalMessage.Offer offer = assertInstanceOf(SignalMessage.Offer.class, SignalMessageCodec.decode(raw));
+
+		assertNull(offer.sdp());
+		assertEquals("peer", offer.to());
+		assertSame(raw, offer.raw());
+	}
+
+	@Test
+	void withFromOverridesClientSuppliedSender() throws Exception {
+		String forwarded = SignalMessageCodec.withFrom("{\"type\":\"answer\",\"from\":\"spoofed\"} ", "me\"1");
+
+		JsonNode json = new ObjectMapper().readTree(forwarded);
+		assertEquals("answer", json.get("type").asText());
+		assertEquals("me\"1", json.get("from").asText());
+		assertEquals("x", new ObjectMapper().readTree(SignalMessageCodec.withFrom("{ }", "x")).get("from").asText());
+	}
+
+	@Test
+	void trailingContentAfterTheMessageIsRejected() throws Exception {
+		assertThrows(IOException.class, () -> SignalMessageCodec.decode("{\"type\":\"answer\"} {\"from\":\"x\"}"));
+		assertThrows(IOException.class, () -> SignalMessageCodec.decode("{\"type\":\"answer\"}}"));
+		assertInstanceOf(SignalMessage.Answer.class, SignalMessageCodec.decode("{\"type\":\"answer\"}\n"));
+	}
+}
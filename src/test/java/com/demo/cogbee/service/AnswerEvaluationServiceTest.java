@@ -0,0 +1,177 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.model.request.AnswerEvaluationRequest;
+import com.demo.cogbee.service.resilience.CircuitBreaker;
+import com.demo.cogbee.service.resilience.ResilientExecutor;
+import com.demo.cogbee.util.AsyncLimiter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerEvaluationServiceTest {
+
+	private static final String REPLY = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":"
+			+ "\"```json\\n{\\\"correctness\\\": 85, \\\"feedback\\\": \\\"Clear\\\", \\\"improvementTopic\\\": \\\"\\\"}\\n```\"}]}}]}";
+
+	// answers for pairs 1 and 3 only; pair 2 has to be retried on its own
+	private static final String BATCH_REPLY = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":"
+			+ "\"[{\\\"index\\\": 3, \\\"correctness\\\": 40, \\\"feedback\\\": \\\"Off\\\", \\\"improvementTopic\\\": \\\"Polymorphism\\\"},"
+			+ " {\\\"index\\\": 1, \\\"correctness\\\": 95, \\\"feedback\\\": \\\"Great\\\", \\\"improvementTopic\\\": \\\"\\\"}]\"}]}}]}";
+
+	private HttpServer server;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger batchRequests = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private volatile long delayMs = 50;
+	private volatile String reply = REPLY;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			boolean batch = request.contains("numbered question/answer pairs");
+			if (batch) batchRequests.incrementAndGet();
+
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException ignored) {
+			}
+			active.decrementAndGet();
+
+			byte[] bytes = (batch ? BATCH_REPLY : reply).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	private ResilientExecutor gemini;
+
+	private AnswerEvaluationService service(long callTimeoutMs, int maxConcurrent) {
+		gemini = new ResilientExecutor("gemini", new AsyncLimiter(maxConcurrent),
+				new CircuitBreaker(20, 10, 0.5, 30_000, 1, System::currentTimeMillis), callTimeoutMs);
+		return new AnswerEvaluationService(HttpClient.newHttpClient(),
+				new EvaluationCache(null, 100, 60_000, Duration.ofHours(1)), gemini,
+				"http://127.0.0.1:" + server.getAddress().getPort(), 5000, 10, 8000);
+	}
+
+	@Test
+	void parsesFencedJsonFromModelReply() {
+		EvaluationResult result = service(5000, 4).evaluateAnswer("What is inheritance?", "Reuse of a parent class");
+
+		assertEquals(85.0, result.getCorrectness());
+		assertEquals("Clear", result.getFeedback());
+		assertEquals("", result.getImprovement());
+	}
+
+	@Test
+	void neverExceedsConcurrencyLimit() {
+		AnswerEvaluationService service = service(10_000, 2);
+
+		List<CompletableFuture<EvaluationResult>> calls = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			calls.add(service.evaluateAnswerAsync("q" + i, "a" + i));
+		}
+		calls.forEach(c -> assertEquals(85.0, c.join().getCorrectness()));
+
+		assertTrue(maxActive.get() <= 2, "max concurrent requests was " + maxActive.get());
+		assertEquals(0, gemini.stats().inFlight());
+	}
+
+	@Test
+	void timesOutToFallback() {
+		delayMs = 1000;
+
+		EvaluationResult result = service(100, 1).evaluateAnswer("q", "a");
+
+		assertEquals("Error fallback", result.getImprovement());
+	}
+
+	@Test
+	void unreadableReplyFallsBackWithoutBeingCached() {
+		AnswerEvaluationService service = service(5000, 1);
+		reply = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Sorry, I can't score that.\"}]}}]}";
+
+		assertEquals("Error fallback", service.evaluateAnswer("q", "a").getImprovement());
+
+		reply = REPLY;
+		assertEquals(85.0, service.evaluateAnswer("q", "a").getCorrectness());
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	void batchPacksAnswersAndRetriesMissingItemsAlone() {
+		AnswerEvaluationService service = service(5000, 4);
+		service.evaluateAnswer("cached question", "cached answer");
+		requests.set(0);
+
+		List<EvaluationResult> results = service.evaluateBatchAsync(List.of(
+				new AnswerEvaluationRequest("What is inheritance?", "Reusing a parent class"),
+				new AnswerEvaluationRequest("What is encapsulation?", "Hiding state behind methods"),
+				new AnswerEvaluationRequest("cached question", "cached answer"),
+				new AnswerEvaluationRequest("What is overloading?", "Same class, many parents")
+		)).join();
+
+		assertEquals(List.of(95.0, 85.0, 85.0, 40.0), results.stream().map(EvaluationResult::getCorrectness).toList());
+		assertEquals("Polymorphism", results.get(3).getImprovement());
+		// one batch for the three uncached answers plus one retry for the answer it skipped
+		assertEquals(1, batchRequests.get());
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	void batchWithRepeatedAnswersSendsEachOnce() {
+		AnswerEvaluationService service = service(5000, 4);
+
+		List<EvaluationResult> results = service.evaluateBatchAsync(List.of(
+				new AnswerEvaluationRequest("Q", "I don't know"),
+				new AnswerEvaluationRequest("Q", "I don't know")
+		)).orTimeout(5, TimeUnit.SECONDS).join();
+
+		assertEquals(List.of(85.0, 85.0), results.stream().map(EvaluationResult::getCorrectness).toList());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void concurrentBatchesSharingAnswersDoNotWaitOnEachOther() {
+		AnswerEvaluationService service = service(5000, 4);
+		AnswerEvaluationRequest first = new AnswerEvaluationRequest("What is inheritance?", "Reusing a parent class");
+		AnswerEvaluationRequest second = new AnswerEvaluationRequest("What is encapsulation?", "Hiding state behind methods");
+
+		// the second batch only joins loads the first one started, and must not wait to send them
+		CompletableFuture<List<EvaluationResult>> a = service.evaluateBatchAsync(List.of(first, second));
+		CompletableFuture<List<EvaluationResult>> b = service.evaluateBatchAsync(List.of(second, first));
+
+		assertEquals(2, a.orTimeout(5, TimeUnit.SECONDS).join().size());
+		assertEquals(2, b.orTimeout(5, TimeUnit.SECONDS).join().size());
+		// and nothing is left stuck for later single evaluations
+		assertEquals(85.0, service.evaluateAnswerAsync("What is encapsulation?", "Hiding state behind methods")
+				.orTimeout(5, TimeUnit.SECONDS).join().getCorrectness());
+	}
+}
@@ -0,0 +1,127 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.model.response.AnswerJobUpdate;
+import com.demo.cogbee.model.response.AnswerJobUpdate.Stage;
+import com.demo.cogbee.model.response.InterviewFeedbackResponse;
+import com.demo.cogbee.service.face.ProctoringScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AnswerJobServiceTest {
+
+	private static final ProctoringScheduler.Summary FACES = new ProctoringScheduler.Summary(3, 0, 0.95, true);
+
+	private final InterviewService interviewService = mock(InterviewService.class);
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final List<AnswerJobUpdate> pushed = new CopyOnWriteArrayList<>();
+	private AnswerJobService jobs;
+
+	private AnswerJobService jobs(int workers, int maxQueued) {
+		doAnswer(inv -> pushed.add(inv.getArgument(1)))
+				.when(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+		jobs = new AnswerJobService(interviewService, messagingTemplate, workers, maxQueued, 60_000);
+		return jobs;
+	}
+
+	@AfterEach
+	void tearDown() {
+		jobs.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void pushesEveryStageAndTheResult() throws Exception {
+		InterviewFeedbackResponse result = new InterviewFeedbackResponse(true, 95, 8, "good", "", "text");
+		when(interviewService.analyzeCandidate(eq("q1"), same(FACES), any(File.class), any(Consumer.class))).thenAnswer(inv -> {
+			Consumer<Stage> progress = inv.getArgument(3);
+			progress.accept(Stage.TRANSCRIBING);
+			progress.accept(Stage.EVALUATING);
+			progress.accept(Stage.FACE_SCORE);
+			return result;
+		});
+
+		String jobId = jobs(2, 10).submit("s1", new File("answer.wav"), "q1", FACES);
+
+		awaitFinished(jobId);
+		// the status is stored just before the push goes out
+		verify(messagingTemplate, timeout(1_000).times(5)).convertAndSend(eq(AnswerJobService.TOPIC + "s1"), any(Object.class));
+		assertEquals(List.of(Stage.QUEUED, Stage.TRANSCRIBING, Stage.EVALUATING, Stage.FACE_SCORE, Stage.DONE),
+				pushed.stream().map(AnswerJobUpdate::getStage).toList());
+		assertSame(result, jobs.status(jobId).getResult());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void reportsFailureWithTheError() throws Exception {
+		when(interviewService.analyzeCandidate(anyString(), any(), any(File.class), any(Consumer.class)))
+				.thenThrow(new RuntimeException("STT failed: boom"));
+
+		String jobId = jobs(1, 10).submit("s1", new File("answer.wav"), "q1", FACES);
+
+		AnswerJobUpdate status = awaitFinished(jobId);
+		assertEquals(Stage.FAILED, status.getStage());
+		assertEquals("STT failed: boom", status.getError());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void rejectsWhenWorkersAndQueueAreFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(interviewService.analyzeCandidate(anyString(), any(), any(File.class), any(Consumer.class))).thenAnswer(inv -> {
+			release.await(5, TimeUnit.SECONDS);
+			return null;
+		});
+
+		AnswerJobService service = jobs(1, 1);
+		service.submit("s1", new File("a.wav"), "q1", FACES);
+		String queued = service.submit("s2", new File("b.wav"), "q1", FACES);
+
+		assertThrows(RejectedExecutionException.class, () -> service.submit("s3", new File("c.wav"), "q1", FACES));
+		assertEquals(Stage.QUEUED, service.status(queued).getStage());
+
+		// a client that saw QUEUED for the rejected job also sees it fail, and can poll it
+		List<AnswerJobUpdate> rejected = pushed.stream().filter(u -> u.getSessionId().equals("s3")).toList();
+		assertEquals(List.of(Stage.QUEUED, Stage.FAILED), rejected.stream().map(AnswerJobUpdate::getStage).toList());
+		assertEquals(Stage.FAILED, service.status(rejected.get(0).getJobId()).getStage());
+		release.countDown();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void deletesTheRecordingOnceScored(@TempDir Path dir) throws Exception {
+		when(interviewService.analyzeCandidate(anyString(), any(), any(File.class), any(Consumer.class)))
+				.thenThrow(new RuntimeException("STT failed: boom"));
+		File recording = Files.write(dir.resolve("answer.wav"), new byte[]{1}).toFile();
+
+		awaitFinished(jobs(1, 10).submit("s1", recording, "q1", FACES));
+
+		assertFalse(recording.exists());
+	}
+
+	private AnswerJobUpdate awaitFinished(String jobId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (System.currentTimeMillis() < deadline) {
+			AnswerJobUpdate status = jobs.status(jobId);
+			if (status != null && status.isFinished()) return status;
+			Thread.sleep(10);
+		}
+		fail("job did not finish");
+		return null;
+	}
+}
@@ -0,0 +1,77 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.model.EvaluationResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationCacheTest {
+
+	private final EvaluationCache cache = new EvaluationCache(null, 2, 60_000, Duration.ofHours(1));
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private CompletableFuture<EvaluationResult> load() {
+		loads.incrementAndGet();
+		return CompletableFuture.completedFuture(new EvaluationResult(90, "ok", ""));
+	}
+
+	@Test
+	void nearIdenticalAnswersShareOneEntry() {
+		cache.getOrLoad("What is inheritance?", "Um, a class reuses another class.", this::load).join();
+		cache.getOrLoad("what is inheritance", "a class   REUSES another class", this::load).join();
+
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.stats().hits());
+		assertEquals(1, cache.stats().misses());
+	}
+
+	@Test
+	void symbolsKeepAnswersApart() {
+		assertNotEquals(EvaluationCache.fingerprint("What is C++?", "a"), EvaluationCache.fingerprint("What is C#?", "a"));
+		assertNotEquals(EvaluationCache.fingerprint("What is C++?", "a"), EvaluationCache.fingerprint("What is C?", "a"));
+		assertNotEquals(EvaluationCache.fingerprint("q", "return a < b"), EvaluationCache.fingerprint("q", "return a > b"));
+		assertNotEquals(EvaluationCache.fingerprint("q", "use == here"), EvaluationCache.fingerprint("q", "use = here"));
+		assertNotEquals(EvaluationCache.fingerprint("q", "then i++"), EvaluationCache.fingerprint("q", "then i--"));
+
+		// punctuation that only ends a word still doesn't matter
+		assertEquals(EvaluationCache.fingerprint("What is C++?", "It increments i++."),
+				EvaluationCache.fingerprint("what is c++", "it increments i++"));
+	}
+
+	@Test
+	void concurrentIdenticalRequestsCollapse() {
+		CompletableFuture<EvaluationResult> upstream = new CompletableFuture<>();
+
+		CompletableFuture<EvaluationResult> first = cache.getOrLoad("q", "a", () -> {
+			loads.incrementAndGet();
+			return upstream;
+		});
+		CompletableFuture<EvaluationResult> second = cache.getOrLoad("q", "a", this::load);
+
+		upstream.complete(new EvaluationResult(50, "partial", "topic"));
+
+		assertSame(first.join(), second.join());
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.stats().deduplicated());
+	}
+
+	@Test
+	void failuresAreNotCachedAndLruEvicts() {
+		CompletableFuture<EvaluationResult> failed = cache.getOrLoad("q", "a",
+				() -> CompletableFuture.failedFuture(new IllegalStateException("down")));
+		assertTrue(failed.isCompletedExceptionally());
+
+		cache.getOrLoad("q", "a", this::load).join();
+		cache.getOrLoad("q", "b", this::load).join();
+		cache.getOrLoad("q", "c", this::load).join();
+		cache.getOrLoad("q", "a", this::load).join();
+
+		assertEquals(4, loads.get());
+		assertEquals(2, cache.stats().size());
+		assertTrue(cache.stats().evictions() >= 1);
+	}
+}
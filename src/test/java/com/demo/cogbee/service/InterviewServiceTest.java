@@ -0,0 +1,126 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.model.EvaluationResult;
+import com.demo.cogbee.model.response.InterviewFeedbackResponse;
+import com.demo.cogbee.service.face.ProctoringScheduler;
+import com.demo.cogbee.service.face.VideoIdentityVerifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InterviewServiceTest {
+
+	private final SpeechToTextService stt = mock(SpeechToTextService.class);
+	private final AnswerEvaluationService evaluator = mock(AnswerEvaluationService.class);
+	private final VideoIdentityVerifier identity = mock(VideoIdentityVerifier.class);
+	private final InterviewService service = new InterviewService(null, stt, evaluator, identity,
+			2, 500, 500, 300);
+
+	private final MockMultipartFile photo = new MockMultipartFile("photo", "me.jpg", "image/jpeg", new byte[]{1});
+	private final MockMultipartFile video = new MockMultipartFile("video", "answer.webm", "video/webm", new byte[]{2});
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void identityAndTranscriptionRunSideBySide() throws Exception {
+		// each branch waits for the other to have started, so running them in sequence would hang
+		CountDownLatch faceStarted = new CountDownLatch(1);
+		CountDownLatch sttStarted = new CountDownLatch(1);
+
+		when(identity.verify(anyString(), any(File.class))).thenAnswer(inv -> {
+			faceStarted.countDown();
+			assertTrue(sttStarted.await(1, TimeUnit.SECONDS));
+			return new VideoIdentityVerifier.Result(true, 0.95, 12, 0, true);
+		});
+		when(stt.extractTextAsync(any(File.class))).thenAnswer(inv -> {
+			sttStarted.countDown();
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					assertTrue(faceStarted.await(1, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return "inheritance lets a class reuse another";
+			});
+		});
+		when(evaluator.evaluateAnswerAsync(eq("q"), eq("inheritance lets a class reuse another")))
+				.thenReturn(CompletableFuture.completedFuture(new EvaluationResult(8, "good", "more detail")));
+
+		InterviewFeedbackResponse response = service.analyzeCandidate("q", photo, video);
+
+		assertTrue(response.isSamePersonThroughout());
+		assertEquals(95, response.getAverageFaceMatchScore(), 1e-9);
+		assertEquals(8, response.getCorrectness());
+		assertEquals("inheritance lets a class reuse another", response.getTranscript());
+		assertEquals(List.of(), response.getDegraded());
+	}
+
+	@Test
+	void slowFaceCheckIsInterruptedAndFailsClosed() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		when(identity.verify(anyString(), any(File.class))).thenAnswer(inv -> {
+			try {
+				Thread.sleep(2_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+			return new VideoIdentityVerifier.Result(true, 0.99, 12, 0, true);
+		});
+		when(stt.extractTextAsync(any(File.class))).thenReturn(CompletableFuture.completedFuture("answer"));
+		when(evaluator.evaluateAnswerAsync(anyString(), anyString()))
+				.thenReturn(CompletableFuture.completedFuture(new EvaluationResult(7, "ok", "")));
+
+		long start = System.nanoTime();
+		InterviewFeedbackResponse response = service.analyzeCandidate("q", photo, video);
+
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1_500));
+		assertEquals(List.of("face"), response.getDegraded());
+		assertFalse(response.isSamePersonThroughout());
+		assertEquals(0, response.getAverageFaceMatchScore());
+		assertEquals(7, response.getCorrectness());
+		assertEquals("answer", response.getTranscript());
+		// the verifier gives its thread back instead of running on in the background
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void missingTranscriptSkipsEvaluationButKeepsFaceScore() {
+		when(stt.extractTextAsync(any(File.class))).thenReturn(new CompletableFuture<>());
+		ProctoringScheduler.Summary faces = new ProctoringScheduler.Summary(4, 0, 0.9, true);
+
+		InterviewFeedbackResponse response = service.analyzeCandidate("q", faces, new File("answer.wav"), stage -> { });
+
+		assertTrue(response.getDegraded().containsAll(List.of("transcript", "evaluation")));
+		assertNull(response.getTranscript());
+		assertEquals(0, response.getCorrectness());
+		assertEquals(90, response.getAverageFaceMatchScore(), 1e-9);
+		verifyNoInteractions(evaluator);
+	}
+
+	@Test
+	void answerWithoutFaceChecksIsNotVerified() {
+		when(stt.extractTextAsync(any(File.class))).thenReturn(CompletableFuture.completedFuture("answer"));
+		when(evaluator.evaluateAnswerAsync(any(), eq("answer")))
+				.thenReturn(CompletableFuture.completedFuture(new EvaluationResult(7, "ok", "")));
+		InterviewFeedbackResponse response = service.analyzeCandidate("q", null, new File("answer.wav"), stage -> { });
+
+		assertFalse(response.isSamePersonThroughout());
+		assertEquals(0, response.getAverageFaceMatchScore());
+		assertEquals(List.of("face"), response.getDegraded());
+		assertEquals(7, response.getCorrectness());
+	}
+}
@@ -0,0 +1,121 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.entity.InterviewQuestion;
+import com.demo.cogbee.entity.QuestionKeyword;
+import com.demo.cogbee.repository.InterviewQuestionRepository;
+import com.demo.cogbee.service.live.LiveAnswerScorer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class QuestionBankTest {
+
+	private final InterviewQuestionRepository repository = mock(InterviewQuestionRepository.class);
+
+	private static InterviewQuestion question(long id, String text, boolean active, QuestionKeyword... keywords) {
+		return new InterviewQuestion(id, text, active, new ArrayList<>(List.of(keywords)));
+	}
+
+	private static LiveAnswerScorer.Snapshot score(QuestionBank.Profile profile, String answer) {
+		LiveAnswerScorer scorer = new LiveAnswerScorer(profile.rubric(), -1);
+		scorer.accept(answer, 0);
+		return scorer.snapshot();
+	}
+
+	@Test
+	void compilesKeywordsWithSynonymsAndWeights() {
+		when(repository.findById(1L)).thenReturn(Optional.of(question(1, "What is inheritance?", true,
+				new QuestionKeyword("subclass", "child class, derived class", 3.0),
+				new QuestionKeyword("override", null, 1.0))));
+		QuestionBank bank = new QuestionBank(repository, 8);
+
+		QuestionBank.Profile profile = bank.profile(1L);
+		assertEquals("What is inheritance?", profile.text());
+
+		LiveAnswerScorer.Snapshot s = score(profile, "A derived class reuses its parent");
+		assertEquals(1, s.keywordsMatched());
+		assertEquals(List.of("override"), s.missingKeywords());
+		double expected = (0.6 * 0.75 + 0.25 * (6 / 120.0) + 0.15) * 100;
+		assertEquals(expected, s.score(), 1e-9);
+	}
+
+	@Test
+	void servesHotQuestionsFromCacheAndEvictsLeastRecentlyUsed() {
+		for (long id = 1; id <= 3; id++) {
+			when(repository.findById(id)).thenReturn(Optional.of(question(id, "q" + id, true)));
+		}
+		QuestionBank bank = new QuestionBank(repository, 2);
+
+		QuestionBank.Profile first = bank.profile(1L);
+		bank.profile(2L);
+		// touching 1 makes 2 the eldest
+		assertSame(first, bank.profile(1L));
+		bank.profile(3L);
+		bank.profile(1L);
+
+		verify(repository, times(1)).findById(1L);
+		bank.profile(2L);
+		verify(repository, times(2)).findById(2L);
+
+		QuestionBank.Stats stats = bank.stats();
+		assertEquals(2, stats.hits());
+		assertEquals(4, stats.misses());
+		assertEquals(2, stats.evictions());
+		assertEquals(2, stats.size());
+	}
+
+	@Test
+	void unknownOrInactiveQuestionsFallBackToDefault() {
+		when(repository.findById(anyLong())).thenReturn(Optional.empty());
+		when(repository.findById(5L)).thenReturn(Optional.of(question(5, "retired", false)));
+		QuestionBank bank = new QuestionBank(repository, 8);
+
+		assertNull(bank.profile(5L));
+		assertNull(bank.ask("s1", 9L));
+		assertSame(QuestionBank.DEFAULT, bank.current("s1"));
+		assertSame(QuestionBank.DEFAULT, bank.profileOrDefault(null));
+		// misses are not cached, so the question shows up once it is added
+		verify(repository, never()).findByActiveTrue();
+		assertEquals(0, bank.stats().size());
+	}
+
+	@Test
+	void reloadRecompilesActiveQuestionsAndTracksAskedQuestion() {
+		when(repository.findById(1L)).thenReturn(Optional.of(question(1, "old text", true)));
+		QuestionBank bank = new QuestionBank(repository, 8);
+
+		assertEquals("old text", bank.ask("s1", 1L).text());
+		assertEquals("old text", bank.current("s1").text());
+
+		when(repository.findByActiveTrue()).thenReturn(List.of(question(1, "new text", true,
+				new QuestionKeyword("heap", "", 1.0))));
+		assertEquals(1, bank.reload());
+
+		QuestionBank.Profile reloaded = bank.current("s1");
+		assertEquals("new text", reloaded.text());
+		assertEquals(1, score(reloaded, "on the heap").keywordsMatched());
+		verify(repository, times(1)).findById(1L);
+
+		bank.endSession("s1");
+		assertSame(QuestionBank.DEFAULT, bank.current("s1"));
+	}
+
+	@Test
+	void failedReloadKeepsCompiledQuestions() {
+		when(repository.findById(1L)).thenReturn(Optional.of(question(1, "q1", true)));
+		QuestionBank bank = new QuestionBank(repository, 8);
+		QuestionBank.Profile cached = bank.profile(1L);
+
+		when(repository.findByActiveTrue()).thenThrow(new RuntimeException("connection refused"));
+		assertThrows(IllegalStateException.class, bank::reload);
+
+		assertSame(cached, bank.profile(1L));
+		verify(repository, times(1)).findById(1L);
+	}
+}
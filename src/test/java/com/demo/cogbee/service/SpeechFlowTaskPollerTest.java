@@ -0,0 +1,86 @@
+package com.demo.cogbee.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeechFlowTaskPollerTest {
+
+	private HttpServer server;
+	private SpeechFlowTaskPoller poller;
+	private final Map<String, AtomicInteger> pollsRemaining = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/asr/file/v1/query", exchange -> {
+			String taskId = exchange.getRequestURI().getQuery().replaceAll(".*taskId=([^&]+).*", "$1");
+			AtomicInteger remaining = pollsRemaining.get(taskId);
+
+			String body;
+			if (remaining == null) {
+				body = "{\"code\":11002,\"msg\":\"unknown task\"}";
+			} else if (remaining.decrementAndGet() > 0) {
+				body = "{\"code\":11001}";
+			} else {
+				body = "{\"code\":11000,\"result\":\"transcript of " + taskId + "\"}";
+			}
+
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		server.start();
+
+		poller = new SpeechFlowTaskPoller(HttpClient.newHttpClient(), new ObjectMapper(),
+				"http://127.0.0.1:" + server.getAddress().getPort(), "id", "secret", 4,
+				5, 40, 2.0, Duration.ofSeconds(5), Duration.ofSeconds(2));
+	}
+
+	@AfterEach
+	void stopStub() {
+		poller.close();
+		server.stop(0);
+	}
+
+	@Test
+	void completesEachTaskOnceProviderReportsDone() throws Exception {
+		pollsRemaining.put("a", new AtomicInteger(3));
+		pollsRemaining.put("b", new AtomicInteger(1));
+
+		CompletableFuture<String> a = poller.await("a");
+		CompletableFuture<String> b = poller.await("b");
+
+		assertEquals("transcript of a", a.get(5, TimeUnit.SECONDS));
+		assertEquals("transcript of b", b.get(5, TimeUnit.SECONDS));
+		assertEquals(0, poller.outstandingCount());
+	}
+
+	@Test
+	void sameTaskSharesOneFuture() {
+		pollsRemaining.put("c", new AtomicInteger(2));
+
+		assertSame(poller.await("c"), poller.await("c"));
+	}
+
+	@Test
+	void failsTaskOnProviderError() {
+		CompletableFuture<String> unknown = poller.await("missing");
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> unknown.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause().getMessage().contains("unknown task"));
+	}
+}
@@ -0,0 +1,164 @@
+package com.demo.cogbee.service;
+
+import com.demo.cogbee.service.media.MediaProcessingService;
+import com.demo.cogbee.service.resilience.CircuitBreaker;
+import com.demo.cogbee.service.resilience.ResilientExecutor;
+import com.demo.cogbee.util.AsyncLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeechToTextServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private HttpServer speechFlow;
+	private final AtomicInteger uploads = new AtomicInteger();
+	private final AtomicInteger uploadedBytes = new AtomicInteger();
+	// held by the upload handler until the test lets it answer
+	private final CountDownLatch answerUpload = new CountDownLatch(1);
+	private final CountDownLatch uploadStarted = new CountDownLatch(1);
+
+	private MediaProcessingService media;
+	private SpeechToTextService stt;
+	private Path answer;
+	private Path outputs;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		speechFlow = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		speechFlow.setExecutor(Executors.newCachedThreadPool());
+		speechFlow.createContext("/asr/file/v1/create", exchange -> {
+			uploads.incrementAndGet();
+			uploadedBytes.set(exchange.getRequestBody().readAllBytes().length);
+			uploadStarted.countDown();
+			try {
+				answerUpload.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, "{\"code\":10000,\"taskId\":\"t1\"}");
+		});
+		speechFlow.createContext("/asr/file/v1/query", exchange ->
+				respond(exchange, "{\"code\":11000,\"result\":\"hello world\"}"));
+		speechFlow.start();
+
+		answer = Files.write(dir.resolve("answer.webm"), new byte[]{1, 2, 3});
+		outputs = dir.resolve("outputs.log");
+	}
+
+	@AfterEach
+	void tearDown() {
+		answerUpload.countDown();
+		if (stt != null) stt.shutdown();
+		if (media != null) media.shutdown();
+		speechFlow.stop(0);
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, bytes.length);
+		exchange.getResponseBody().write(bytes);
+		exchange.close();
+	}
+
+	// 16 kHz mono PCM with dataBytes of silence
+	private Path wav(int dataBytes) throws Exception {
+		ByteBuffer b = ByteBuffer.allocate(44 + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+		b.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + dataBytes).put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		b.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+				.putShort((short) 1).putShort((short) 1).putInt(16_000).putInt(32_000).putShort((short) 2).putShort((short) 16);
+		b.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(dataBytes);
+		return Files.write(dir.resolve("source-" + dataBytes + ".wav"), b.array());
+	}
+
+	// stands in for ffmpeg: writes a prepared WAV to stdout, or exits with an error
+	private void fakeFfmpeg(String body) throws Exception {
+		Path script = dir.resolve("ffmpeg");
+		Files.writeString(script, "#!/bin/sh\necho \"$@\" >> " + outputs + "\n" + body + "\n");
+		assertTrue(script.toFile().setExecutable(true));
+
+		media = new MediaProcessingService(script.toString(), 1, 10, 10_000);
+		ResilientExecutor resilience = new ResilientExecutor("speechflow", new AsyncLimiter(1, 4),
+				new CircuitBreaker(20, 10, 0.5, 30_000, 2, System::currentTimeMillis), 10_000);
+		stt = new SpeechToTextService(HttpClient.newHttpClient(), resilience, media,
+				"http://127.0.0.1:" + speechFlow.getAddress().getPort(), 5_000, 5, 20, 1.5, 5_000);
+	}
+
+	private Throwable failure(CompletableFuture<String> result) {
+		ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		return ResilientExecutor.unwrap(e);
+	}
+
+	@Test
+	void transcodedAudioIsStreamedIntoTheUpload() throws Exception {
+		fakeFfmpeg("cat " + wav(32_000));
+
+		CompletableFuture<String> result = stt.extractTextAsync(answer.toFile());
+
+		assertTrue(uploadStarted.await(5, TimeUnit.SECONDS));
+		answerUpload.countDown();
+
+		assertEquals("hello world", result.get(5, TimeUnit.SECONDS));
+		assertEquals(1, uploads.get());
+		assertTrue(uploadedBytes.get() > 32_000);
+		// no intermediate file: ffmpeg writes to its stdout
+		assertTrue(Files.readString(outputs).trim().endsWith("pipe:1"));
+	}
+
+	@Test
+	void ffmpegStartsOnlyOnceTheSpeechFlowPermitIsFree() throws Exception {
+		fakeFfmpeg("cat " + wav(32_000));
+
+		CompletableFuture<String> first = stt.extractTextAsync(answer.toFile());
+		assertTrue(uploadStarted.await(5, TimeUnit.SECONDS));
+
+		// SpeechFlow allows one upload at a time: the second answer waits without taking a transcode slot
+		CompletableFuture<String> second = stt.extractTextAsync(answer.toFile());
+		Thread.sleep(200);
+		assertEquals(1, Files.readAllLines(outputs).size());
+		assertEquals(0, media.stats().queued());
+
+		answerUpload.countDown();
+		assertEquals("hello world", first.get(5, TimeUnit.SECONDS));
+		assertEquals("hello world", second.get(5, TimeUnit.SECONDS));
+		assertEquals(2, Files.readAllLines(outputs).size());
+	}
+
+	@Test
+	void tooShortAudioIsRejectedBeforeUpload() throws Exception {
+		fakeFfmpeg("cat " + wav(1_000));
+
+		Throwable error = failure(stt.extractTextAsync(answer.toFile()));
+
+		assertTrue(error.getMessage().contains("too small"), error.getMessage());
+		assertEquals(0, uploads.get());
+	}
+
+	@Test
+	void ffmpegFailureIsReportedWithoutUpload() throws Exception {
+		fakeFfmpeg("echo 'Invalid data found when processing input' >&2; exit 1");
+
+		Throwable error = failure(stt.extractTextAsync(answer.toFile()));
+
+		assertTrue(error.getMessage().contains("Invalid data"), error.getMessage());
+		assertEquals(0, uploads.get());
+	}
+}
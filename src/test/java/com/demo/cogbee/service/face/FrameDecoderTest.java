@@ -0,0 +1,43 @@
+package com.demo.cogbee.service.face;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameDecoderTest {
+
+	private final FrameDecoder decoder = new FrameDecoder(16, 2);
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] out = new byte[buffer.remaining()];
+		buffer.duplicate().get(out);
+		return out;
+	}
+
+	@Test
+	void decodesDataUrlAndBareBase64IntoReusedBuffer() {
+		byte[] image = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5};
+		String encoded = Base64.getEncoder().encodeToString(image);
+
+		byte[] fromUrl = decoder.decode("data:image/jpeg;base64," + encoded, FrameDecoderTest::bytes);
+		byte[] bare = decoder.decode(encoded, FrameDecoderTest::bytes);
+
+		assertArrayEquals(image, fromUrl);
+		assertArrayEquals(image, bare);
+		assertEquals(1, decoder.pooledCount());
+	}
+
+	@Test
+	void rejectsOversizedAndInvalidFrames() {
+		String tooBig = Base64.getEncoder().encodeToString(new byte[17]);
+
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode(tooBig, b -> b));
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode("data:image/jpeg;base64,", b -> b));
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode("not*base64", b -> b));
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode("AAé=", b -> b));
+		assertEquals(1, decoder.pooledCount());
+	}
+}
@@ -0,0 +1,152 @@
+package com.demo.cogbee.service.face;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFaceVerifierTest {
+
+	@TempDir
+	Path dir;
+
+	private final LocalFaceVerifier verifier = new LocalFaceVerifier(new LbpFaceEmbedder(0.6, 12, 0.05), 0.85, 10);
+
+	private String write(String name, BufferedImage image) throws Exception {
+		File file = dir.resolve(name).toFile();
+		ImageIO.write(image, "png", file);
+		return file.getAbsolutePath();
+	}
+
+	private static BufferedImage face(int shift) {
+		return face(shift, 100, 130, 85, 18, 140);
+	}
+
+	private static BufferedImage face(int shift, int width, int height, int eyeY, int eyeGap, int mouthY) {
+		BufferedImage image = wall();
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(220, 180, 150));
+		g.fillOval(160 - width / 2 + shift, 40, width, height);
+		g.setColor(Color.DARK_GRAY);
+		g.fillOval(160 - eyeGap - 7 + shift, eyeY, 14, 8);
+		g.fillOval(160 + eyeGap - 7 + shift, eyeY, 14, 8);
+		g.drawLine(140 + shift, mouthY, 180 + shift, mouthY);
+		g.dispose();
+		return image;
+	}
+
+	// the empty chair: just the background the faces are drawn on
+	private static BufferedImage wall() {
+		BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(40, 60, 80));
+		g.fillRect(0, 0, 320, 240);
+		g.dispose();
+		return image;
+	}
+
+	// webcam-like sensor noise of a couple of levels per channel
+	private static BufferedImage noisy(BufferedImage image, long seed) {
+		Random random = new Random(seed);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Color c = new Color(image.getRGB(x, y));
+				int d = random.nextInt(5) - 2;
+				image.setRGB(x, y, new Color(clamp(c.getRed() + d), clamp(c.getGreen() + d), clamp(c.getBlue() + d)).getRGB());
+			}
+		}
+		return image;
+	}
+
+	private static int clamp(int v) {
+		return Math.max(0, Math.min(255, v));
+	}
+
+	private static BufferedImage stripes() {
+		BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		for (int x = 0; x < 320; x += 6) {
+			g.setColor(x % 12 == 0 ? Color.WHITE : Color.BLACK);
+			g.fillRect(x, 0, 3, 240);
+		}
+		g.dispose();
+		return image;
+	}
+
+	@Test
+	void sameFaceMatchesAndReferenceIsEmbeddedOnce() throws Exception {
+		String reference = write("ref.png", face(0));
+		String frame = write("frame.png", face(2));
+		String other = write("other.png", stripes());
+
+		FaceVerifier.FaceMatch same = verifier.verify(reference, frame);
+		FaceVerifier.FaceMatch different = verifier.verify(reference, other);
+		verifier.verify(reference, reference);
+
+		assertTrue(same.samePerson(), "score " + same.score());
+		assertFalse(different.samePerson(), "score " + different.score());
+		assertTrue(same.score() > different.score());
+		assertEquals(1, verifier.referenceMisses());
+	}
+
+	@Test
+	void emptyFrameNeverMatches() throws Exception {
+		String reference = write("ref.png", face(0));
+
+		FaceVerifier.FaceMatch empty = verifier.verify(reference, write("empty.png", wall()));
+		FaceVerifier.FaceMatch noisyEmpty = verifier.verify(reference, write("noisy-empty.png", noisy(wall(), 2)));
+
+		assertFalse(empty.samePerson());
+		assertEquals(0, empty.score());
+		assertFalse(noisyEmpty.samePerson(), "score " + noisyEmpty.score());
+	}
+
+	@Test
+	void differentFaceIsRejectedAndNoisySameFaceAccepted() throws Exception {
+		String reference = write("ref.png", face(0));
+
+		FaceVerifier.FaceMatch same = verifier.verify(reference, write("same.png", noisy(face(2), 1)));
+		FaceVerifier.FaceMatch wide = verifier.verify(reference, write("wide.png", face(0, 120, 110, 95, 26, 130)));
+		FaceVerifier.FaceMatch narrow = verifier.verify(reference, write("narrow.png", face(0, 80, 140, 80, 14, 150)));
+
+		assertTrue(same.samePerson(), "score " + same.score());
+		assertFalse(wide.samePerson(), "score " + wide.score());
+		assertFalse(narrow.samePerson(), "score " + narrow.score());
+	}
+
+	@Test
+	void referenceWithoutFaceIsAnError() throws Exception {
+		String reference = write("ref.png", wall());
+		String frame = write("frame.png", face(0));
+
+		assertThrows(RuntimeException.class, () -> verifier.verify(reference, frame));
+	}
+
+	@Test
+	void changedReferenceIsEmbeddedAgain() throws Exception {
+		String reference = write("ref.png", face(0));
+		verifier.verify(reference, reference);
+
+		File file = new File(reference);
+		ImageIO.write(stripes(), "png", file);
+		file.setLastModified(file.lastModified() + 5_000);
+
+		assertTrue(verifier.verify(reference, reference).samePerson());
+		assertEquals(2, verifier.referenceMisses());
+	}
+
+	@Test
+	void embeddingsAreUnitLength() {
+		float[] v = new LbpFaceEmbedder(0.6, 12, 0.05).embed(face(0));
+
+		assertEquals(8 * 8 * 59, v.length);
+		assertEquals(1.0, LocalFaceVerifier.dot(v, v), 1e-4);
+	}
+}
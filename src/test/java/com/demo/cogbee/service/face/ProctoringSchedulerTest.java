@@ -0,0 +1,115 @@
+package com.demo.cogbee.service.face;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProctoringSchedulerTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	private ProctoringScheduler scheduler(double budgetPerSecond, int burst) {
+		return new ProctoringScheduler(5_000, 20_000, 60_000, 2.0, 2, 0.9, 2,
+				budgetPerSecond, burst, 0.25, 600_000, clock::get);
+	}
+
+	private static final FaceVerifier.FaceMatch CONFIDENT = new FaceVerifier.FaceMatch(true, 0.97);
+	private static final FaceVerifier.FaceMatch MISMATCH = new FaceVerifier.FaceMatch(false, 0.3);
+
+	@Test
+	void intervalShrinksOnMismatchAndGrowsAfterConfidentStreak() {
+		ProctoringScheduler s = scheduler(100, 100);
+
+		assertTrue(s.tryAcquire("a").verify());
+		assertEquals(ProctoringScheduler.Outcome.NOT_DUE, s.tryAcquire("a").outcome());
+
+		s.record("a", MISMATCH);
+		assertEquals(5_000, s.intervalOf("a"));
+
+		clock.addAndGet(5_000);
+		assertTrue(s.tryAcquire("a").verify());
+		s.record("a", CONFIDENT);
+		assertEquals(20_000, s.intervalOf("a"));
+
+		clock.addAndGet(20_000);
+		assertTrue(s.tryAcquire("a").verify());
+		s.record("a", CONFIDENT);
+		assertEquals(40_000, s.intervalOf("a"));
+
+		clock.addAndGet(40_000);
+		assertTrue(s.tryAcquire("a").verify());
+		s.record("a", CONFIDENT);
+		assertEquals(60_000, s.intervalOf("a"));
+	}
+
+	@Test
+	void globalBudgetKeepsReserveForSuspiciousSessions() {
+		// 4 tokens, one of them reserved
+		ProctoringScheduler s = scheduler(0.001, 4);
+
+		assertTrue(s.tryAcquire("s1").verify());
+		s.record("s1", MISMATCH);
+
+		assertTrue(s.tryAcquire("r1").verify());
+		assertTrue(s.tryAcquire("r2").verify());
+		ProctoringScheduler.Decision denied = s.tryAcquire("r3");
+		assertEquals(ProctoringScheduler.Outcome.BUDGET_EXHAUSTED, denied.outcome());
+		assertTrue(denied.retryAfterMs() > 0);
+
+		clock.addAndGet(5_000);
+		assertTrue(s.tryAcquire("s1").verify(), "suspicious session may use the reserve");
+		assertEquals(1, s.skippedBudgetCount());
+	}
+
+	@Test
+	void summaryAveragesRecordedChecks() {
+		ProctoringScheduler s = scheduler(100, 100);
+		s.tryAcquire("a");
+		assertNull(s.summary("a"));
+
+		s.record("a", CONFIDENT);
+		s.record("a", MISMATCH);
+
+		ProctoringScheduler.Summary summary = s.summary("a");
+		assertEquals(2, summary.checks());
+		assertEquals(1, summary.mismatches());
+		assertEquals((0.97 + 0.3) / 2, summary.averageScore(), 1e-9);
+	}
+
+	@Test
+	void sessionsAreEvictedOnEndAndWhenIdle() {
+		ProctoringScheduler s = scheduler(100, 100);
+		s.tryAcquire("a");
+		s.tryAcquire("b");
+
+		s.endSession("a");
+		assertEquals(1, s.activeSessions());
+
+		s.sweep(clock.get() + 600_001);
+		assertEquals(0, s.activeSessions());
+	}
+
+	@Test
+	void summaryCoversOnlyTheCurrentAnswer() {
+		ProctoringScheduler s = scheduler(100, 100);
+		s.tryAcquire("a");
+		s.record("a", MISMATCH);
+		s.record("a", MISMATCH);
+		assertFalse(s.summary("a").samePerson());
+
+		s.startAnswer("a");
+		assertNull(s.summary("a"));
+
+		s.record("a", CONFIDENT);
+		s.record("a", MISMATCH);
+		ProctoringScheduler.Summary summary = s.summary("a");
+		assertEquals(2, summary.checks());
+		assertEquals(1, summary.mismatches());
+		// one miss is within the tolerance of 2
+		assertTrue(summary.samePerson());
+		// the schedule itself carries over: the last miss keeps checks frequent
+		assertEquals(5_000, s.intervalOf("a"));
+	}
+}
@@ -0,0 +1,95 @@
+package com.demo.cogbee.service.face;
+
+import com.demo.cogbee.service.media.MediaProcessingService;
+import com.demo.cogbee.util.FFmpegPipe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VideoIdentityVerifierTest {
+
+	private final FaceVerifier faceVerifier = mock(FaceVerifier.class);
+	private final MediaProcessingService media = mock(MediaProcessingService.class);
+	private VideoIdentityVerifier verifier;
+
+	// ffmpeg stands in as a pipe serving tiny JPEGs whose only data byte is the frame number
+	private void frames(int count) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < count; i++) {
+			out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) i, (byte) 0xFF, (byte) 0xD9});
+		}
+		FFmpegPipe pipe = mock(FFmpegPipe.class);
+		when(pipe.stdout()).thenReturn(new ByteArrayInputStream(out.toByteArray()));
+		when(media.open(any(), anyString(), anyList(), isNull())).thenReturn(CompletableFuture.completedFuture(pipe));
+	}
+
+	private static int frameNumber(ByteBuffer image) {
+		return image.get(image.position() + 2);
+	}
+
+	private VideoIdentityVerifier verifier(int parallelism, int earlyStopMatches, int maxMismatches) {
+		verifier = new VideoIdentityVerifier(faceVerifier, media, parallelism, 20, 2,
+				earlyStopMatches, maxMismatches, 0.9, 640);
+		return verifier;
+	}
+
+	@AfterEach
+	void tearDown() {
+		verifier.shutdown();
+	}
+
+	@Test
+	void stopsOnceEnoughConfidentMatches() {
+		frames(40);
+		when(faceVerifier.verify(anyString(), any(ByteBuffer.class))).thenReturn(new FaceVerifier.FaceMatch(true, 0.95));
+
+		VideoIdentityVerifier.Result result = verifier(1, 5, 3).verify("ref.jpg", new File("answer.webm"));
+
+		assertTrue(result.samePersonThroughout());
+		assertTrue(result.stoppedEarly());
+		assertTrue(result.framesChecked() >= 5 && result.framesChecked() < 40, "checked " + result.framesChecked());
+		assertEquals(0, result.mismatches());
+	}
+
+	@Test
+	void tallyCountsMismatchesAndSkipsFailedFrames() {
+		frames(10);
+		when(faceVerifier.verify(anyString(), any(ByteBuffer.class))).thenAnswer(inv -> {
+			int frame = frameNumber(inv.getArgument(1));
+			if (frame == 5) throw new IllegalStateException("decode failed");
+			return frame == 3 || frame == 7
+					? new FaceVerifier.FaceMatch(false, 0.2)
+					: new FaceVerifier.FaceMatch(true, 0.8);
+		});
+
+		VideoIdentityVerifier.Result result = verifier(2, 100, 3).verify("ref.jpg", new File("answer.webm"));
+
+		assertEquals(9, result.framesChecked());
+		assertEquals(2, result.mismatches());
+		assertTrue(result.samePersonThroughout());
+		assertFalse(result.stoppedEarly());
+		assertEquals((7 * 0.8 + 2 * 0.2) / 9, result.averageScore(), 1e-9);
+	}
+
+	@Test
+	void failsOnceMismatchesReachTheLimit() {
+		frames(30);
+		when(faceVerifier.verify(anyString(), any(ByteBuffer.class))).thenReturn(new FaceVerifier.FaceMatch(false, 0.1));
+
+		VideoIdentityVerifier.Result result = verifier(1, 100, 3).verify("ref.jpg", new File("answer.webm"));
+
+		assertFalse(result.samePersonThroughout());
+		assertTrue(result.stoppedEarly());
+		assertTrue(result.mismatches() >= 3);
+		assertTrue(result.framesChecked() < 30);
+	}
+}
@@ -0,0 +1,105 @@
+package com.demo.cogbee.service.live;
+
+import com.demo.cogbee.service.QuestionBank;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LiveAnswerScorerTest {
+
+	private static List<Integer> matches(KeywordAutomaton automaton, String text) {
+		KeywordAutomaton.Cursor cursor = automaton.cursor();
+		List<Integer> ids = new ArrayList<>();
+		KeywordAutomaton.tokenize(text, word -> {
+			for (int id : cursor.step(word)) ids.add(id);
+		});
+		return ids;
+	}
+
+	@Test
+	void matchesWholeWordsAndOverlappingPhrases() {
+		KeywordAutomaton automaton = new KeywordAutomaton(Map.of(
+				"like", 1,
+				"load balancer", 2,
+				"balancer", 3,
+				"read replica set", 4,
+				"replica", 5));
+
+		assertEquals(List.of(), matches(automaton, "Likely unlike alike"));
+		assertEquals(List.of(1), matches(automaton, "it's, like, fine"));
+		// the suffix pattern is reported at the same word as the longer phrase
+		assertEquals(List.of(2, 3), matches(automaton, "a LOAD balancer").stream().sorted().toList());
+		// a failed long phrase falls back to what its suffix still matches
+		assertEquals(List.of(2, 3, 5), matches(automaton, "read replica load balancer").stream().sorted().toList());
+	}
+
+	@Test
+	void carriesPhraseMatchesAcrossDeltas() {
+		ScoringRubric rubric = new ScoringRubric(List.of(
+				new ScoringRubric.Keyword("load balancing", List.of("load balancer", "reverse proxy"), 2.0),
+				ScoringRubric.Keyword.of("cache")), List.of("um", "you know"));
+		LiveAnswerScorer scorer = new LiveAnswerScorer(rubric, 0);
+
+		assertTrue(scorer.accept("Um, we put a reverse", 10_000));
+		assertTrue(scorer.accept("proxy in front, you", 20_000));
+		assertFalse(scorer.accept(" ... ", 25_000));
+		assertTrue(scorer.accept("know, and a proxy cache", 30_000));
+
+		LiveAnswerScorer.Snapshot s = scorer.snapshot();
+		assertEquals(2, s.keywordsMatched());
+		assertEquals(List.of(), s.missingKeywords());
+		assertEquals(2, s.fillers());
+		assertEquals(14, s.words());
+		// 14 words over the 30 s up to the last one
+		assertEquals(28.0, s.wordsPerMinute(), 1e-9);
+	}
+
+	@Test
+	void weightsKeywordCoverage() {
+		ScoringRubric rubric = new ScoringRubric(List.of(
+				new ScoringRubric.Keyword("sharding", List.of("partitioning"), 3.0),
+				ScoringRubric.Keyword.of("index")), List.of());
+		LiveAnswerScorer scorer = new LiveAnswerScorer(rubric, -1);
+		scorer.accept("partitioning", 0);
+
+		LiveAnswerScorer.Snapshot s = scorer.snapshot();
+		assertEquals(List.of("index"), s.missingKeywords());
+		assertEquals(-1, s.wordsPerMinute());
+		double expected = (0.6 * 0.75 + 0.25 * (1 / 120.0) + 0.15) * 100;
+		assertEquals(expected, s.score(), 1e-9);
+	}
+
+	@Test
+	void transcriptScoreIgnoresWordsContainingFillers() {
+		QuestionBank questionBank = mock(QuestionBank.class);
+		when(questionBank.profileOrDefault(null)).thenReturn(QuestionBank.DEFAULT);
+		EvaluationService service = new EvaluationService(null, questionBank, 60_000);
+		try {
+			String feedback = service.evaluateTranscript("Likely the database design hums along").getFeedback();
+			assertTrue(feedback.startsWith("Keywords matched: 2/5. Filler words: 0."), feedback);
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void defaultRubricMatchesInflectedKeywords() {
+		LiveAnswerScorer scorer = new LiveAnswerScorer(QuestionBank.DEFAULT.rubric(), -1);
+		scorer.accept("I designed it with two databases so it stays scalable, "
+				+ "and an architectural split keeps latencies down", 0);
+
+		LiveAnswerScorer.Snapshot s = scorer.snapshot();
+		assertEquals(5, s.keywordsMatched());
+		assertEquals(List.of(), s.missingKeywords());
+		// still whole words only
+		scorer = new LiveAnswerScorer(QuestionBank.DEFAULT.rubric(), -1);
+		scorer.accept("redesigned the databaseless upscaled thing", 0);
+		assertEquals(0, scorer.snapshot().keywordsMatched());
+	}
+}
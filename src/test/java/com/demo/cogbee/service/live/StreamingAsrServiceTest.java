@@ -0,0 +1,96 @@
+package com.demo.cogbee.service.live;
+
+import com.demo.cogbee.config.WebRtcSignalingHandler;
+import com.demo.cogbee.config.audio.AudioRingBuffer;
+import com.demo.cogbee.config.audio.AudioStreamEvent;
+import com.demo.cogbee.config.audio.DirectBufferPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StreamingAsrServiceTest {
+
+	// one second of 16 kHz 16-bit mono
+	private static final int SECOND = 32_000;
+
+	private final DirectBufferPool pool = new DirectBufferPool(4 * SECOND, 4);
+	private final WebRtcSignalingHandler signaling = mock(WebRtcSignalingHandler.class);
+	private final EvaluationService evaluation = mock(EvaluationService.class);
+
+	private final StreamingAsrService service = new StreamingAsrService(signaling,
+			new StubSpeechRecognizer(), evaluation, 50);
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	private AudioRingBuffer buffer() {
+		return new AudioRingBuffer(pool, AudioRingBuffer.OverflowPolicy.DROP_OLDEST);
+	}
+
+	private static void write(AudioRingBuffer buffer, int bytes) {
+		buffer.write(ByteBuffer.allocate(bytes));
+	}
+
+	@Test
+	void windowsProducePartialsAndStopEmitsTheFinal() {
+		AudioRingBuffer audio = buffer();
+		service.start("s1", "room1", audio);
+		assertTrue(service.isActive("s1"));
+		verify(evaluation).startLive("s1", "room1");
+
+		write(audio, SECOND);
+		verify(signaling, timeout(1_000)).sendSubtitle("room1", "s1", "[1.0s of audio]", false);
+		write(audio, SECOND / 2);
+		verify(signaling, timeout(1_000)).sendSubtitle("room1", "s1", "[1.5s of audio]", false);
+
+		// audio still buffered at stop is recognized before the final
+		write(audio, SECOND / 2);
+		service.stop("s1", audio);
+
+		assertFalse(service.isActive("s1"));
+		verify(signaling).sendSubtitle("room1", "s1", "[2.0s of audio]", true);
+		verify(evaluation).onTranscript("s1", "[2.0s of audio]", true);
+		verify(evaluation).stopLive("s1");
+	}
+
+	@Test
+	void restartFinishesThePreviousStreamFirst() {
+		AudioRingBuffer first = buffer();
+		service.start("s1", null, first);
+		write(first, SECOND);
+		service.start("s1", null, buffer());
+
+		// no room: nothing to subtitle, but the final still reaches the scorer before the new answer starts
+		verify(signaling, never()).sendSubtitle(any(), any(), any(), anyBoolean());
+		var order = inOrder(evaluation);
+		order.verify(evaluation).startLive("s1", null);
+		order.verify(evaluation).onTranscript("s1", "[1.0s of audio]", true);
+		order.verify(evaluation).startLive("s1", null);
+	}
+
+	@Test
+	void lateCloseOfAReplacedSocketLeavesTheNewStreamRunning() {
+		AudioRingBuffer old = buffer();
+		AudioRingBuffer reconnected = buffer();
+		service.onAudioStream(new AudioStreamEvent("s1", "room1", AudioStreamEvent.Type.OPENED, old));
+		service.onAudioStream(new AudioStreamEvent("s1", "room1", AudioStreamEvent.Type.OPENED, reconnected));
+
+		service.onAudioStream(new AudioStreamEvent("s1", "room1", AudioStreamEvent.Type.CLOSED, old));
+
+		assertTrue(service.isActive("s1"));
+		verify(evaluation, never()).stopLive("s1");
+		write(reconnected, SECOND);
+		verify(signaling, timeout(1_000)).sendSubtitle("room1", "s1", "[1.0s of audio]", false);
+
+		service.onAudioStream(new AudioStreamEvent("s1", "room1", AudioStreamEvent.Type.CLOSED, reconnected));
+		assertFalse(service.isActive("s1"));
+		verify(evaluation).stopLive("s1");
+	}
+}
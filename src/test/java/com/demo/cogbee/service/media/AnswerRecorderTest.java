@@ -0,0 +1,93 @@
+package com.demo.cogbee.service.media;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerRecorderTest {
+
+	@TempDir
+	Path dir;
+
+	private AnswerRecorder recorder;
+
+	@AfterEach
+	void tearDown() {
+		if (recorder != null) recorder.shutdown();
+	}
+
+	private AnswerRecorder recorder(long idleCloseMs) {
+		recorder = new AnswerRecorder(dir.toString(), 16_000, 1, 16, idleCloseMs);
+		return recorder;
+	}
+
+	private void pcm(String sessionId, int bytes) throws Exception {
+		recorder.append(sessionId, new ByteArrayInputStream(new byte[bytes]));
+	}
+
+	@Test
+	void eachAnswerGetsItsOwnFile() throws Exception {
+		recorder(60_000);
+		pcm("s1", 4_000);
+		AnswerRecorder.Recording first = recorder.finish("s1");
+
+		// the next answer finishes before the first one was scored
+		pcm("s1", 6_000);
+		AnswerRecorder.Recording second = recorder.finish("s1");
+
+		assertNotEquals(first.file(), second.file());
+		assertEquals(4_000, first.dataBytes());
+		assertEquals(44 + 4_000, Files.size(first.file().toPath()));
+		assertEquals(44 + 6_000, Files.size(second.file().toPath()));
+		assertNull(recorder.finish("s1"));
+	}
+
+	@Test
+	void recordingGivenBackIsReturnedByTheNextFinish() throws Exception {
+		recorder(60_000);
+		pcm("s1", 4_000);
+		AnswerRecorder.Recording recording = recorder.finish("s1");
+
+		recorder.giveBack("s1", recording);
+
+		assertEquals(recording, recorder.finish("s1"));
+		assertTrue(recording.file().exists());
+	}
+
+	@Test
+	void newAnswerReplacesAnUnclaimedOne() throws Exception {
+		recorder(60_000);
+		pcm("s1", 4_000);
+		AnswerRecorder.Recording stale = recorder.finish("s1");
+		recorder.giveBack("s1", stale);
+
+		pcm("s1", 6_000);
+		AnswerRecorder.Recording fresh = recorder.finish("s1");
+
+		assertEquals(6_000, fresh.dataBytes());
+		assertFalse(stale.file().exists());
+		assertNull(recorder.finish("s1"));
+	}
+
+	@Test
+	void idleRecordingIsKeptForALateFinish() throws Exception {
+		recorder(100);
+		pcm("s1", 4_000);
+
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (recorder.openRecordings() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, recorder.openRecordings());
+
+		AnswerRecorder.Recording recording = recorder.finish("s1");
+		assertNotNull(recording);
+		assertEquals(4_000, recording.dataBytes());
+	}
+}
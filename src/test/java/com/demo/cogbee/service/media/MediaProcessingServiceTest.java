@@ -0,0 +1,125 @@
+package com.demo.cogbee.service.media;
+
+import com.demo.cogbee.service.media.MediaProcessingService.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaProcessingServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private Path fakeFfmpeg;
+	private Path log;
+	private MediaProcessingService media;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		// stands in for ffmpeg: drops the global flags and runs the rest as a shell command
+		fakeFfmpeg = dir.resolve("ffmpeg");
+		Files.writeString(fakeFfmpeg, "#!/bin/sh\nshift 2\nexec sh -c \"$1\"\n");
+		assertTrue(fakeFfmpeg.toFile().setExecutable(true));
+		log = dir.resolve("started.log");
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (media != null) media.shutdown();
+	}
+
+	private List<String> job(String name, double seconds) {
+		return List.of("echo " + name + " >> " + log + "; sleep " + seconds);
+	}
+
+	private List<String> started() throws Exception {
+		return Files.exists(log) ? Files.readAllLines(log) : List.of();
+	}
+
+	@Test
+	void liveJobsStartAheadOfQueuedBatchJobs() throws Exception {
+		media = new MediaProcessingService(fakeFfmpeg.toString(), 1, 10, 10_000);
+
+		CompletableFuture<Void> first = media.run(Priority.BATCH, "batch", job("first", 0.3));
+		CompletableFuture<Void> batch = media.run(Priority.BATCH, "batch", job("batch", 0));
+		CompletableFuture<Void> live = media.run(Priority.LIVE, "live", job("live", 0));
+
+		assertEquals(2, media.stats().queued());
+		CompletableFuture.allOf(first, batch, live).get(5, TimeUnit.SECONDS);
+
+		assertEquals(List.of("first", "live", "batch"), started());
+		// metrics are recorded when the process exit is observed, just after the job completes
+		Thread.sleep(100);
+		assertEquals(2, media.stats().jobs().get("batch").completed());
+	}
+
+	@Test
+	void neverRunsMoreProcessesThanWorkers() throws Exception {
+		media = new MediaProcessingService(fakeFfmpeg.toString(), 2, 10, 10_000);
+
+		List<CompletableFuture<Void>> jobs = List.of(
+				media.run(Priority.BATCH, "convert", job("a", 0.3)),
+				media.run(Priority.BATCH, "convert", job("b", 0.3)),
+				media.run(Priority.BATCH, "convert", job("c", 0.3)));
+
+		Thread.sleep(150);
+		assertEquals(2, media.stats().running());
+		assertEquals(1, media.stats().queued());
+
+		CompletableFuture.allOf(jobs.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+		assertEquals(3, started().size());
+	}
+
+	@Test
+	void killsJobsPastTheirDeadline() throws Exception {
+		media = new MediaProcessingService(fakeFfmpeg.toString(), 1, 10, 200);
+
+		long start = System.nanoTime();
+		CompletableFuture<Void> slow = media.run(Priority.BATCH, "slow", job("slow", 10));
+
+		CompletionException error = assertThrows(CompletionException.class, slow::join);
+		assertTrue(error.getCause().getMessage().contains("killed"));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		Thread.sleep(100);
+		assertEquals(1, media.stats().jobs().get("slow").timedOut());
+	}
+
+	@Test
+	void cancelledQueuedJobNeverStarts() throws Exception {
+		media = new MediaProcessingService(fakeFfmpeg.toString(), 1, 10, 10_000);
+
+		CompletableFuture<Void> running = media.run(Priority.BATCH, "batch", job("running", 0.3));
+		CompletableFuture<Void> queued = media.run(Priority.BATCH, "batch", job("queued", 0));
+
+		queued.cancel(true);
+		running.get(5, TimeUnit.SECONDS);
+		Thread.sleep(100);
+
+		assertEquals(List.of("running"), started());
+		assertEquals(0, media.stats().queued());
+	}
+
+	@Test
+	void rejectsWhenQueueIsFull() {
+		media = new MediaProcessingService(fakeFfmpeg.toString(), 1, 1, 10_000);
+
+		media.run(Priority.BATCH, "batch", job("a", 0.3));
+		media.run(Priority.BATCH, "batch", job("b", 0));
+		CompletableFuture<Void> rejected = media.run(Priority.LIVE, "live", job("c", 0));
+
+		CompletionException error = assertThrows(CompletionException.class, rejected::join);
+		assertInstanceOf(RejectedExecutionException.class, error.getCause());
+		assertEquals(1, media.stats().rejected());
+	}
+}
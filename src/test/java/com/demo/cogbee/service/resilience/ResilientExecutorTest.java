@@ -0,0 +1,167 @@
+package com.demo.cogbee.service.resilience;
+
+import com.demo.cogbee.util.AsyncLimiter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientExecutorTest {
+
+	private HttpServer server;
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicInteger received = new AtomicInteger();
+	private volatile long latencyMs;
+	private volatile CountDownLatch gate;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			received.incrementAndGet();
+			try {
+				if (gate != null) gate.await(5, TimeUnit.SECONDS);
+				Thread.sleep(latencyMs);
+			} catch (InterruptedException ignored) {
+			}
+			byte[] ok = "ok".getBytes();
+			exchange.sendResponseHeaders(200, ok.length);
+			exchange.getResponseBody().write(ok);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		if (gate != null) gate.countDown();
+		server.stop(0);
+	}
+
+	private CompletableFuture<String> get() {
+		HttpRequest request = HttpRequest.newBuilder(
+				URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/")).build();
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body);
+	}
+
+	private ResilientExecutor executor(int maxConcurrent, int maxQueued, long timeoutMs) {
+		return new ResilientExecutor("stub", new AsyncLimiter(maxConcurrent, maxQueued),
+				new CircuitBreaker(4, 4, 0.5, 1_000, 1, clock::get), timeoutMs);
+	}
+
+	private static Throwable failureOf(CompletableFuture<?> future) {
+		CompletionException e = assertThrows(CompletionException.class, future::join);
+		return ResilientExecutor.unwrap(e);
+	}
+
+	@Test
+	void slowProviderOpensCircuitThenHalfOpenProbeClosesIt() {
+		// wide enough that the probe's connection setup fits, even on a slow machine
+		ResilientExecutor executor = executor(4, 4, 300);
+		latencyMs = 1_000;
+
+		for (int i = 0; i < 4; i++) {
+			assertInstanceOf(TimeoutException.class, failureOf(executor.execute(this::get)));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, executor.state());
+
+		// rejected without touching the stub
+		long start = System.nanoTime();
+		assertInstanceOf(ProviderUnavailableException.class, failureOf(executor.execute(this::get)));
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(1, executor.stats().shortCircuited());
+
+		latencyMs = 0;
+		clock.addAndGet(1_000);
+		assertEquals("ok", executor.execute(this::get).join());
+		assertEquals(CircuitBreaker.State.CLOSED, executor.state());
+	}
+
+	@Test
+	void fullBulkheadRejectsInsteadOfQueueingForever() {
+		ResilientExecutor executor = executor(2, 1, 5_000);
+		gate = new CountDownLatch(1);
+
+		List<CompletableFuture<String>> admitted = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			admitted.add(executor.execute(this::get));
+		}
+
+		assertInstanceOf(ProviderUnavailableException.class, failureOf(executor.execute(this::get)));
+		assertEquals(1, executor.stats().rejected());
+
+		gate.countDown();
+		admitted.forEach(f -> assertEquals("ok", f.join()));
+		assertEquals(CircuitBreaker.State.CLOSED, executor.state());
+	}
+
+	@Test
+	void fallbackReplacesFailure() {
+		ResilientExecutor executor = executor(1, 1, 50);
+		latencyMs = 300;
+
+		String result = executor.execute(this::get, e -> "fallback:" + e.getClass().getSimpleName()).join();
+
+		assertEquals("fallback:TimeoutException", result);
+		assertEquals(1, executor.stats().fallbacks());
+	}
+
+	@Test
+	void timeoutCountsTheWaitForABulkheadSlot() {
+		AsyncLimiter bulkhead = new AsyncLimiter(1, 4);
+		ResilientExecutor executor = new ResilientExecutor("stub", bulkhead,
+				new CircuitBreaker(4, 4, 0.5, 1_000, 1, clock::get), 200);
+
+		// another caller of the same bulkhead holds its only slot
+		CompletableFuture<String> blocker = new CompletableFuture<>();
+		bulkhead.submit(() -> blocker);
+
+		long start = System.nanoTime();
+		CompletableFuture<String> queued = executor.execute(this::get);
+
+		assertInstanceOf(TimeoutException.class, failureOf(queued));
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1_000));
+		assertEquals(1, executor.stats().timeouts());
+
+		// the timed-out call is skipped when the slot frees, never sent
+		blocker.complete("done");
+		assertEquals("ok", executor.execute(this::get).join());
+		assertEquals(1, received.get());
+		assertEquals(1, executor.stats().calls());
+		assertEquals(0, bulkhead.queued());
+	}
+
+	@Test
+	void badInputIsNotHeldAgainstTheProvider() {
+		ResilientExecutor executor = executor(4, 4, 1_000);
+
+		for (int i = 0; i < 8; i++) {
+			Throwable error = failureOf(executor.execute(() ->
+					CompletableFuture.<String>failedFuture(new IllegalArgumentException("too short"))));
+			assertInstanceOf(IllegalArgumentException.class, error);
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, executor.state());
+		assertEquals(0, executor.stats().failures());
+	}
+}
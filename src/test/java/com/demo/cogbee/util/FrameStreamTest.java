@@ -0,0 +1,68 @@
+package com.demo.cogbee.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FrameStreamTest {
+
+	private static byte[] jpeg(int... body) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0xFF);
+		out.write(0xD8);
+		for (int b : body) out.write(b);
+		out.write(0xFF);
+		out.write(0xD9);
+		return out.toByteArray();
+	}
+
+	private static FFmpegUtil.FrameStream stream(byte[]... chunks) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] chunk : chunks) out.writeBytes(chunk);
+		FFmpegPipe pipe = mock(FFmpegPipe.class);
+		when(pipe.stdout()).thenReturn(new ByteArrayInputStream(out.toByteArray()));
+		return new FFmpegUtil.FrameStream(pipe);
+	}
+
+	@Test
+	void splitsImagesAtTheirMarkers() throws Exception {
+		// stuffed 0xFF00 and a restart marker inside the data are not the end of the image
+		byte[] first = jpeg(0xFF, 0xE0, 1, 0xFF, 0x00, 0xFF, 0xD0, 2);
+		byte[] second = jpeg(3, 4, 5);
+
+		try (FFmpegUtil.FrameStream frames = stream(new byte[]{9, 9}, first, second, new byte[]{(byte) 0xFF})) {
+			assertArrayEquals(first, frames.next());
+			assertArrayEquals(second, frames.next());
+			assertNull(frames.next());
+		}
+	}
+
+	@Test
+	void dropsRepeatedImages() throws Exception {
+		byte[] keyframe = jpeg(1, 2, 3);
+		byte[] next = jpeg(4, 5, 6);
+
+		try (FFmpegUtil.FrameStream frames = stream(keyframe, keyframe, keyframe, next, keyframe)) {
+			assertArrayEquals(keyframe, frames.next());
+			assertArrayEquals(next, frames.next());
+			// only back-to-back copies are repeats
+			assertArrayEquals(keyframe, frames.next());
+			assertNull(frames.next());
+			assertEquals(2, frames.repeats());
+		}
+	}
+
+	@Test
+	void truncatedImageIsNotReturned() throws Exception {
+		byte[] whole = jpeg(1, 2);
+
+		try (FFmpegUtil.FrameStream frames = stream(whole, new byte[]{(byte) 0xFF, (byte) 0xD8, 7, 8})) {
+			assertArrayEquals(whole, frames.next());
+			assertNull(frames.next());
+		}
+	}
+}
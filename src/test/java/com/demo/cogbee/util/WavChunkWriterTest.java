@@ -0,0 +1,111 @@
+package com.demo.cogbee.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavChunkWriterTest {
+
+	private static final WavChunkWriter.Format SPEECH = new WavChunkWriter.Format(16000, 1, 16);
+
+	@TempDir
+	Path dir;
+
+	private static byte[] pcm(int bytes, int seed) {
+		byte[] data = new byte[bytes];
+		for (int i = 0; i < bytes; i++) data[i] = (byte) (seed + i);
+		return data;
+	}
+
+	private static byte[] wav(WavChunkWriter.Format f, byte[] data, boolean withListChunk, int declaredDataSize) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer b = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+		b.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(0).put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		b.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16).putShort((short) 1)
+				.putShort((short) f.channels()).putInt(f.sampleRate()).putInt(f.sampleRate() * f.blockAlign())
+				.putShort((short) f.blockAlign()).putShort((short) f.bitsPerSample());
+		out.write(b.array(), 0, b.position());
+
+		if (withListChunk) {
+			// odd-sized chunk, so the pad byte has to be skipped too
+			out.writeBytes("LIST".getBytes(StandardCharsets.US_ASCII));
+			out.writeBytes(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(3).array());
+			out.writeBytes(new byte[]{1, 2, 3, 0});
+		}
+
+		out.writeBytes("data".getBytes(StandardCharsets.US_ASCII));
+		out.writeBytes(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(declaredDataSize).array());
+		out.writeBytes(data);
+		return out.toByteArray();
+	}
+
+	@Test
+	void stripsChunkHeadersAndPatchesSizesOnFinish() throws Exception {
+		Path file = dir.resolve("answer.wav");
+		byte[] first = pcm(1000, 0);
+		byte[] second = pcm(600, 50);
+		byte[] raw = pcm(400, 90);
+
+		try (WavChunkWriter writer = new WavChunkWriter(file, SPEECH)) {
+			writer.append(new ByteArrayInputStream(wav(SPEECH, first, true, first.length)));
+			// streaming recorders leave the data size at 0
+			writer.append(new ByteArrayInputStream(wav(SPEECH, second, false, 0)));
+			writer.append(new ByteArrayInputStream(raw));
+			assertEquals(SPEECH, writer.finish());
+		}
+
+		byte[] written = Files.readAllBytes(file);
+		assertEquals(WavChunkWriter.HEADER_BYTES + 2000, written.length);
+
+		ByteBuffer header = ByteBuffer.wrap(written).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(36 + 2000, header.getInt(4));
+		assertEquals(2000, header.getInt(40));
+
+		byte[] data = Arrays.copyOfRange(written, WavChunkWriter.HEADER_BYTES, written.length);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.writeBytes(first);
+		expected.writeBytes(second);
+		expected.writeBytes(raw);
+		assertArrayEquals(expected.toByteArray(), data);
+
+		WavChunkWriter.Header probed = WavChunkWriter.probe(file);
+		assertEquals(SPEECH, probed.format());
+		assertEquals(2000, probed.dataBytes());
+		assertTrue(probed.format().isSpeechReady());
+	}
+
+	@Test
+	void takesFormatFromFirstWavChunkAndRejectsMismatches() throws Exception {
+		WavChunkWriter.Format stereo = new WavChunkWriter.Format(48000, 2, 16);
+		Path file = dir.resolve("stereo.wav");
+
+		try (WavChunkWriter writer = new WavChunkWriter(file, SPEECH)) {
+			writer.append(new ByteArrayInputStream(wav(stereo, pcm(800, 0), false, 800)));
+			assertThrows(IllegalArgumentException.class,
+					() -> writer.append(new ByteArrayInputStream(wav(SPEECH, pcm(100, 0), false, 100))));
+			writer.finish();
+		}
+
+		WavChunkWriter.Header probed = WavChunkWriter.probe(file);
+		assertEquals(stereo, probed.format());
+		assertEquals(800, probed.dataBytes());
+		assertFalse(probed.format().isSpeechReady());
+	}
+
+	@Test
+	void probeRejectsNonWav() throws Exception {
+		Path file = dir.resolve("clip.webm");
+		Files.write(file, new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+		assertNull(WavChunkWriter.probe(file));
+	}
+}